@@ -1,21 +1,56 @@
 package home.aspect;
 
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.stereotype.Component;
 
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Aspect for measuring the execution time of public methods in the application.
- * This aspect intercepts all public methods within the `home` package and logs
- * their execution time if debug logging is enabled.
+ * This aspect intercepts all public methods within the `home` package and
+ * records their latency, measured with {@link System#nanoTime()}, in a
+ * {@link LatencyHistogram} per method, with the calls that threw counted as
+ * errors. Nothing is logged per call, so it can stay enabled in production:
+ * <ul>
+ * <li>only a fraction of the calls is measured, see
+ * {@link #setSampleRate(double)};</li>
+ * <li>only the methods of an allow-list of type and method name prefixes are
+ * measured, see {@link #setAllowList(List)};</li>
+ * <li>the statistics are read with {@link #snapshot()} or logged
+ * periodically, see {@link #startReporter(Duration)}.</li>
+ * </ul>
  */
 @Aspect
 @Component
 @Slf4j
-public class ExecutionTimeAspect { // NOPMD AtLeastOneConstructor
+public class ExecutionTimeAspect implements DisposableBean { // NOPMD AtLeastOneConstructor
+    /** Histogram of every measured method, or empty for a method not allowed. */
+    private final Map<Method, Optional<LatencyHistogram>> histograms = new ConcurrentHashMap<>();
+    /** Fraction of the calls measured, from 0 to 1. */
+    @Getter
+    private volatile double sampleRate = 1;
+    /** Prefixes of the “type.method” names measured, empty for every method. */
+    @Getter
+    private volatile List<String> allowList = List.of();
+    /** Thread of the periodic reporter, {@code null} when stopped. */
+    private ScheduledExecutorService reporter;
 
     /**
      * Measures the execution time of public methods in the `home` package.
@@ -26,13 +61,136 @@ public class ExecutionTimeAspect { // NOPMD AtLeastOneConstructor
      */
     @Around("execution(public * home..*(..))")
     public Object measureExecutionTime(final ProceedingJoinPoint joinPoint) throws Throwable {
-        final long startTime = System.currentTimeMillis();
-        final Object result = joinPoint.proceed();
-        final long endTime = System.currentTimeMillis();
-        if (log.isDebugEnabled()) {
-            log.debug("Method {} executed in {} ms", joinPoint.getSignature(), endTime - startTime);
+        final double rate = sampleRate;
+        if (rate <= 0 || rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate) {
+            return joinPoint.proceed();
+        }
+        final Optional<LatencyHistogram> histogram = histogram(((MethodSignature) joinPoint.getSignature())
+                .getMethod());
+        if (histogram.isEmpty()) {
+            return joinPoint.proceed();
+        }
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final Object result = joinPoint.proceed();
+            failed = false;
+            return result;
+        } finally {
+            histogram.get().record(System.nanoTime() - start, failed);
+        }
+    }
+
+    private Optional<LatencyHistogram> histogram(final Method method) {
+        return histograms.computeIfAbsent(method, key -> allowed(name(key)) ? Optional.of(new LatencyHistogram())
+                : Optional.empty());
+    }
+
+    private boolean allowed(final String name) {
+        final List<String> prefixes = allowList;
+        return prefixes.isEmpty() || prefixes.stream().anyMatch(name::startsWith);
+    }
+
+    private static String name(final Method method) {
+        return method.getDeclaringClass().getName() + "." + method.getName();
+    }
+
+    /**
+     * Changes the fraction of the calls measured. The counts of the snapshots
+     * are then counts of measured calls.
+     *
+     * @param sampleRate the fraction, from 0 for none to 1 for every call.
+     */
+    public void setSampleRate(final double sampleRate) {
+        if (!(sampleRate >= 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("The sample rate must be between 0 and 1: " + sampleRate);
         }
-        return result;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Changes the methods measured and discards the statistics collected so
+     * far.
+     *
+     * @param allowList prefixes of the fully qualified “type.method” names,
+     *                  such as {@code home.polynomial.PolynomialService} or
+     *                  {@code home.polynomial.Polynomial.multiply}; empty for
+     *                  every public method of the application.
+     */
+    public void setAllowList(final List<String> allowList) {
+        this.allowList = List.copyOf(allowList);
+        histograms.clear();
+    }
+
+    /**
+     * Returns the statistics of every measured method that has been called.
+     *
+     * @return the snapshots by “type.method(parameters)” name, sorted.
+     */
+    public Map<String, LatencyHistogram.Snapshot> snapshot() {
+        final Map<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        histograms.forEach((method, histogram) -> histogram.ifPresent(measured -> {
+            final LatencyHistogram.Snapshot snapshot = measured.snapshot();
+            if (snapshot.count() > 0) {
+                snapshots.put(name(method) + parameters(method), snapshot);
+            }
+        }));
+        return snapshots;
+    }
+
+    private static String parameters(final Method method) {
+        final StringBuilder parameters = new StringBuilder("(");
+        for (final Class<?> type : method.getParameterTypes()) {
+            parameters.append(parameters.length() > 1 ? "," : "").append(type.getSimpleName());
+        }
+        return parameters.append(')').toString();
+    }
+
+    /**
+     * Logs the statistics of every measured method periodically, replacing a
+     * running reporter.
+     *
+     * @param period the time between two reports.
+     */
+    public synchronized void startReporter(final Duration period) {
+        stopReporter();
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "execution-time-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(this::report, period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic reporter, if running.
+     */
+    public synchronized void stopReporter() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    /**
+     * Logs the statistics of every measured method, one line each.
+     */
+    public void report() {
+        if (log.isInfoEnabled()) {
+            snapshot().forEach((method, snapshot) -> log.info(
+                    "{} calls={} errors={} mean={}µs p50={}µs p90={}µs p99={}µs p99.9={}µs max={}µs", method,
+                    snapshot.count(), snapshot.errors(), Math.round(snapshot.mean() / 1000), micros(snapshot.p50()),
+                    micros(snapshot.p90()), micros(snapshot.p99()), micros(snapshot.p999()), micros(snapshot.max())));
+        }
+    }
+
+    private static long micros(final long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    @Override
+    public void destroy() {
+        stopReporter();
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,131 @@
+package home.aspect;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds. The buckets are
+ * log-linear: every power of two is split in {@value #SUB_BUCKETS} buckets of
+ * the same width, so a percentile is reported with a relative error below
+ * 1/{@value #SUB_BUCKETS} over the whole range of a {@code long}, with a fixed
+ * array of counters and no allocation per value.
+ */
+public final class LatencyHistogram {
+    /** Bits of the sub-bucket of a value. */
+    private static final int SUB_BITS = 3;
+    /** Buckets per power of two. */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    /** Number of buckets, enough for any positive {@code long}. */
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS + 1) * SUB_BUCKETS;
+
+    /** Count of every bucket. */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    /** Number of values. */
+    private final LongAdder count = new LongAdder();
+    /** Number of values of failed calls. */
+    private final LongAdder errors = new LongAdder();
+    /** Sum of the values. */
+    private final LongAdder total = new LongAdder();
+    /** Largest value. */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos  the latency in nanoseconds.
+     * @param failed whether the call failed.
+     */
+    public void record(final long nanos, final boolean failed) {
+        final long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        total.add(value);
+        if (failed) {
+            errors.increment();
+        }
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Returns the statistics of the latencies recorded so far. Values recorded
+     * while the snapshot is taken may be counted in some statistics only.
+     *
+     * @return the snapshot.
+     */
+    public Snapshot snapshot() {
+        final long[] buckets = new long[BUCKETS];
+        long sum = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = counts.get(i);
+            sum += buckets[i];
+        }
+        final long largest = max.get();
+        return new Snapshot(count.sum(), errors.sum(), total.sum(), largest, percentile(buckets, sum, 0.5, largest),
+                percentile(buckets, sum, 0.9, largest), percentile(buckets, sum, 0.99, largest),
+                percentile(buckets, sum, 0.999, largest));
+    }
+
+    /**
+     * Returns the upper bound of the bucket that holds a percentile.
+     */
+    private static long percentile(final long[] buckets, final long sum, final double quantile, final long max) {
+        if (sum == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(quantile * sum));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /* default */ static int bucketOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int sub = (int) (value >>> exponent - SUB_BITS) & SUB_BUCKETS - 1;
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /* default */ static long upperBound(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Statistics of the latencies of a method, in nanoseconds.
+     *
+     * @param count  the number of calls.
+     * @param errors the number of calls that threw.
+     * @param total  the sum of the latencies.
+     * @param max    the largest latency.
+     * @param p50    the median.
+     * @param p90    the 90th percentile.
+     * @param p99    the 99th percentile.
+     * @param p999   the 99.9th percentile.
+     */
+    public record Snapshot(long count, long errors, long total, long max, long p50, long p90, long p99, long p999) {
+
+        /**
+         * Returns the mean latency.
+         *
+         * @return the mean in nanoseconds, zero without calls.
+         */
+        public double mean() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+    }
+
+}
@@ -0,0 +1,449 @@
+package home.polynomial;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Codec of the blocks of a compressed term file, see {@link TermFormat}.
+ * <p>
+ * A block holds up to {@value #BLOCK_TERMS} consecutive terms, encoded
+ * independently of the other blocks so any block can be read on its own:
+ * <ul>
+ * <li>every exponent is stored as the zig-zag varint of its difference with
+ * the same exponent of the previous term, so the terms of a sorted file,
+ * which share most of their exponents, take about a byte per field;</li>
+ * <li>every coefficient is stored as a varint code into a dictionary of the
+ * coefficients already seen in the block, or as code zero followed by the
+ * eight bytes of a new one, so the few distinct coefficients of a typical
+ * product take a byte or two;</li>
+ * <li>the encoded block is compressed with {@link Deflater#BEST_SPEED}.</li>
+ * </ul>
+ * The frame of a block is its number of terms, its exponent words, its
+ * encoded length and its compressed length, four ints, followed by the
+ * compressed bytes. The index of the file lists the offset and the first
+ * term of every block, which makes the file seekable.
+ */
+final class BlockCodec {
+    /** Maximum number of terms of a block. */
+    /* default */ static final int BLOCK_TERMS = 16_384;
+    /** Size of the frame of a block before the compressed bytes. */
+    /* default */ static final int FRAME_BYTES = 4 * Integer.BYTES;
+    /** Maximum number of coefficients in the dictionary of a block. */
+    private static final int DICTIONARY_SIZE = 4096;
+    /** Size of an index entry: the offset and the first term of a block. */
+    private static final int ENTRY_BYTES = 2 * Long.BYTES;
+
+    private BlockCodec() {
+        // Utility class, not meant to be instantiated.
+    }
+
+    /**
+     * Returns the size of the index of a number of blocks.
+     *
+     * @param blocks the number of blocks.
+     * @return the size in bytes.
+     */
+    /* default */ static long indexBytes(final int blocks) {
+        return Integer.BYTES + (long) blocks * ENTRY_BYTES;
+    }
+
+    private static long zigZag(final long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    private static long unZigZag(final long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    private static int slot(final long value, final int mask) {
+        final long mixed = value * 0x9E37_79B9_7F4A_7C15L;
+        return (int) (mixed ^ mixed >>> 32) & mask;
+    }
+
+    /**
+     * Encoder of the blocks of a writer.
+     */
+    /* default */ static final class Encoder {
+        /** Compressor, reset for every block. */
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        /** Coefficients of the dictionary, by hash slot. */
+        private final long[] keys = new long[DICTIONARY_SIZE * 2];
+        /** Code of every slot of the dictionary, zero for an empty slot. */
+        private final int[] codes = new int[DICTIONARY_SIZE * 2];
+        /** Encoded terms of the block. */
+        private byte[] encoded = new byte[1 << 16];
+        /** Length of the encoded terms. */
+        private int length;
+        /** Number of terms of the block. */
+        private int terms;
+        /** Exponent words of the block. */
+        private int words;
+        /** Exponents of the previous term. */
+        private int[] previous = new int[0];
+        /** Number of coefficients in the dictionary. */
+        private int entries;
+
+        /**
+         * Returns the number of terms of the block.
+         *
+         * @return the number of terms.
+         */
+        /* default */ int terms() {
+            return terms;
+        }
+
+        /**
+         * Returns the exponent words of the block.
+         *
+         * @return the number of words, fixed by the first term.
+         */
+        /* default */ int words() {
+            return words;
+        }
+
+        /**
+         * Adds a term to the block.
+         *
+         * @param monomial    the monomial, of at most {@code blockWords}
+         *                    words.
+         * @param coefficient the coefficient.
+         * @param blockWords  the exponent words of the block, used by the
+         *                    first term only.
+         */
+        /* default */ void add(final Monomial monomial, final long coefficient, final int blockWords) {
+            if (terms == 0) {
+                words = blockWords;
+                previous = new int[words * Monomial.FIELDS_PER_WORD];
+            }
+            for (int field = 0; field < previous.length; field++) {
+                final int exponent = monomial.exponent(field);
+                putVarLong(zigZag(exponent - previous[field]));
+                previous[field] = exponent;
+            }
+            final int mask = codes.length - 1;
+            int slot = slot(coefficient, mask);
+            while (codes[slot] != 0 && keys[slot] != coefficient) {
+                slot = slot + 1 & mask;
+            }
+            if (codes[slot] == 0) {
+                putVarLong(0);
+                putLong(coefficient);
+                if (entries < DICTIONARY_SIZE) {
+                    keys[slot] = coefficient;
+                    codes[slot] = ++entries;
+                }
+            } else {
+                putVarLong(codes[slot]);
+            }
+            terms++;
+        }
+
+        /**
+         * Compresses the block into its frame and starts a new block.
+         *
+         * @return the frame, ready to be written.
+         */
+        /* default */ ByteBuffer finish() {
+            deflater.reset();
+            deflater.setInput(encoded, 0, length);
+            deflater.finish();
+            byte[] compressed = new byte[Math.max(64, length / 2)];
+            int size = 0;
+            while (!deflater.finished()) {
+                if (size == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                size += deflater.deflate(compressed, size, compressed.length - size);
+            }
+            final ByteBuffer frame = ByteBuffer.allocate(FRAME_BYTES + size).order(TermFormat.BYTE_ORDER);
+            frame.putInt(terms).putInt(words).putInt(length).putInt(size).put(compressed, 0, size).flip();
+            length = 0;
+            terms = 0;
+            entries = 0;
+            Arrays.fill(codes, 0);
+            return frame;
+        }
+
+        /** Releases the compressor. */
+        /* default */ void end() {
+            deflater.end();
+        }
+
+        private void putVarLong(final long value) {
+            ensure(10);
+            long rest = value;
+            while ((rest & ~0x7FL) != 0) {
+                encoded[length++] = (byte) (rest & 0x7F | 0x80);
+                rest >>>= 7;
+            }
+            encoded[length++] = (byte) rest;
+        }
+
+        private void putLong(final long value) {
+            ensure(Long.BYTES);
+            for (int i = 0; i < Long.BYTES; i++) {
+                encoded[length++] = (byte) (value >>> 8 * i);
+            }
+        }
+
+        private void ensure(final int bytes) {
+            if (length + bytes > encoded.length) {
+                encoded = Arrays.copyOf(encoded, Math.multiplyExact(encoded.length, 2));
+            }
+        }
+    }
+
+    /**
+     * Decoder of the blocks of a reader.
+     */
+    /* default */ static final class Decoder {
+        /** Decompressor, reset for every block. */
+        private final Inflater inflater = new Inflater();
+        /** Coefficients of the dictionary, by code minus one. */
+        private final long[] dictionary = new long[DICTIONARY_SIZE];
+        /** Encoded terms of the block. */
+        private byte[] encoded = new byte[0];
+        /** Position of the next term. */
+        private int position;
+        /** Terms of the block not decoded yet. */
+        private int remaining;
+        /** Number of coefficients in the dictionary. */
+        private int entries;
+        /** Exponents of the current term. */
+        private int[] exponents = new int[0];
+        /** Exponent words of the block. */
+        private int words;
+        /** Coefficient of the current term. */
+        private long coefficient;
+
+        /**
+         * Reads and decompresses a block.
+         *
+         * @param channel the channel of the file.
+         * @param offset  the offset of the frame of the block.
+         * @throws IOException if the block cannot be read or is corrupt.
+         */
+        /* default */ void load(final FileChannel channel, final long offset) throws IOException {
+            final ByteBuffer frame = TermFormat.read(channel, offset, FRAME_BYTES);
+            final int terms = frame.getInt();
+            words = frame.getInt();
+            final int length = frame.getInt();
+            final ByteBuffer compressed = TermFormat.read(channel, offset + FRAME_BYTES, frame.getInt());
+            if (encoded.length < length) {
+                encoded = new byte[length];
+            }
+            inflater.reset();
+            inflater.setInput(compressed);
+            try {
+                int size = 0;
+                while (size < length && !inflater.finished()) {
+                    size += inflater.inflate(encoded, size, length - size);
+                }
+                if (size != length) {
+                    throw new IOException("Corrupt term block at " + offset);
+                }
+            } catch (final DataFormatException e) {
+                throw new IOException("Corrupt term block at " + offset, e);
+            }
+            exponents = new int[words * Monomial.FIELDS_PER_WORD];
+            position = 0;
+            remaining = terms;
+            entries = 0;
+        }
+
+        /** Drops the rest of the block. */
+        /* default */ void clear() {
+            remaining = 0;
+        }
+
+        /**
+         * Decodes the next term of the block.
+         *
+         * @return {@code false} at the end of the block.
+         */
+        /* default */ boolean next() {
+            if (remaining == 0) {
+                return false;
+            }
+            for (int field = 0; field < exponents.length; field++) {
+                exponents[field] += (int) unZigZag(getVarLong());
+            }
+            final int code = (int) getVarLong();
+            if (code == 0) {
+                coefficient = getLong();
+                if (entries < DICTIONARY_SIZE) {
+                    dictionary[entries++] = coefficient;
+                }
+            } else {
+                coefficient = dictionary[code - 1];
+            }
+            remaining--;
+            return true;
+        }
+
+        /**
+         * Returns the monomial of the current term.
+         *
+         * @return the monomial.
+         */
+        /* default */ Monomial monomial() {
+            final long[] packed = new long[words];
+            for (int field = 0; field < exponents.length; field++) {
+                packed[field / Monomial.FIELDS_PER_WORD] |= (long) exponents[field] << field
+                        % Monomial.FIELDS_PER_WORD * Monomial.FIELD_BITS;
+            }
+            return Monomial.ofWords(packed);
+        }
+
+        /**
+         * Returns the coefficient of the current term.
+         *
+         * @return the coefficient.
+         */
+        /* default */ long coefficient() {
+            return coefficient;
+        }
+
+        /** Releases the decompressor. */
+        /* default */ void end() {
+            inflater.end();
+        }
+
+        private long getVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte next;
+            do {
+                next = encoded[position++];
+                value |= (long) (next & 0x7F) << shift;
+                shift += 7;
+            } while (next < 0);
+            return value;
+        }
+
+        private long getLong() {
+            long value = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                value |= (encoded[position++] & 0xFFL) << 8 * i;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Index of the blocks of a file: the offset and the first term of every
+     * block.
+     */
+    /* default */ static final class Index {
+        /** Offset of every block. */
+        private long[] offsets = new long[16];
+        /** First term of every block. */
+        private long[] firstTerms = new long[16];
+        /** Number of blocks. */
+        private int size;
+
+        /**
+         * Reads the index of a compressed file.
+         *
+         * @param channel the channel of the file.
+         * @param header  the header of the file.
+         * @return the index.
+         * @throws IOException if an error occurs while reading the file.
+         */
+        /* default */ static Index read(final FileChannel channel, final TermFormat.Header header)
+                throws IOException {
+            final Index index = new Index();
+            final int blocks = TermFormat.read(channel, header.tableOffset(), Integer.BYTES).getInt();
+            final ByteBuffer entries = TermFormat.read(channel, header.tableOffset() + Integer.BYTES,
+                    blocks * ENTRY_BYTES);
+            for (int i = 0; i < blocks; i++) {
+                index.add(entries.getLong(), entries.getLong());
+            }
+            return index;
+        }
+
+        /**
+         * Adds a block.
+         *
+         * @param offset    the offset of its frame.
+         * @param firstTerm the index of its first term in the file.
+         */
+        /* default */ void add(final long offset, final long firstTerm) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                firstTerms = Arrays.copyOf(firstTerms, size * 2);
+            }
+            offsets[size] = offset;
+            firstTerms[size] = firstTerm;
+            size++;
+        }
+
+        /**
+         * Returns the number of blocks.
+         *
+         * @return the number of blocks.
+         */
+        /* default */ int size() {
+            return size;
+        }
+
+        /**
+         * Returns the offset of a block.
+         *
+         * @param block the index of the block.
+         * @return the offset of its frame.
+         */
+        /* default */ long offset(final int block) {
+            return offsets[block];
+        }
+
+        /**
+         * Returns the first term of a block.
+         *
+         * @param block the index of the block.
+         * @return the index of its first term in the file.
+         */
+        /* default */ long firstTerm(final int block) {
+            return firstTerms[block];
+        }
+
+        /**
+         * Returns the block that holds a term.
+         *
+         * @param term the index of the term in the file.
+         * @return the index of the last block starting at or before it.
+         */
+        /* default */ int blockOf(final long term) {
+            final int found = Arrays.binarySearch(firstTerms, 0, size, term);
+            return found >= 0 ? found : -found - 2;
+        }
+
+        /**
+         * Writes the index.
+         *
+         * @param channel  the channel of the file.
+         * @param position the offset of the index.
+         * @return the offset right after the index.
+         * @throws IOException if an error occurs while writing the file.
+         */
+        /* default */ long write(final FileChannel channel, final long position) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.allocate((int) indexBytes(size)).order(TermFormat.BYTE_ORDER);
+            buffer.putInt(size);
+            for (int i = 0; i < size; i++) {
+                buffer.putLong(offsets[i]).putLong(firstTerms[i]);
+            }
+            buffer.flip();
+            long offset = position;
+            while (buffer.hasRemaining()) {
+                offset += channel.write(buffer, offset);
+            }
+            return offset;
+        }
+    }
+
+}
@@ -0,0 +1,296 @@
+package home.polynomial;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Accumulating multiplication split in blocks of terms. One operand is kept
+ * parsed in memory by a {@link ResidentOperand} and the other one is streamed
+ * past it in blocks of {@link MultiplyOptions#getBlockTerms()} terms. Every
+ * block is multiplied into its own {@link TermAccumulator}, on its own worker
+ * when running in parallel, and the block results are merged in block order
+ * on the calling thread. Since neither the blocks nor the merge order depend
+ * on the number of workers, the result is exactly the same for any
+ * parallelism, including the sequential one.
+ * <p>
+ * Memory is bounded by one accumulator per worker plus the merge one, each of
+ * at most {@link MultiplyOptions#getAccumulatorTerms()} terms; a block whose
+ * accumulator fills up spills it to a scratch file that is merged later. The
+ * accumulators are cleared and reused from block to block instead of being
+ * allocated again, and a block merged into an empty merge accumulator takes
+ * its place instead of being copied.
+ * <p>
+ * The workers of a parallelism are shared by every product and created on
+ * first use, instead of starting and stopping a pool of threads per product;
+ * idle workers end by themselves.
+ */
+@Slf4j
+final class BlockMultiplier {
+    /** Shared workers, by parallelism. */
+    private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    /** First operand. */
+    private final Polynomial first;
+    /** Second operand. */
+    private final Polynomial other;
+    /** Polynomial that receives the merged terms. */
+    private final Polynomial result;
+    /** Multiplication options. */
+    private final MultiplyOptions options;
+    /** Window of the kept terms. */
+    private final DegreeWindow window;
+    /** Ring of the coefficients. */
+    private final CoefficientRing ring;
+    /** Counters of the product. */
+    private final ProductProgress progress;
+    /** Cleared accumulators ready for the next block. */
+    private final Queue<TermAccumulator> accumulators = new ConcurrentLinkedQueue<>();
+    /** Accumulator of the merged blocks, used by the calling thread only. */
+    private TermAccumulator merged;
+    /** Set when the multiplication fails, so the running blocks stop. */
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a block multiplier.
+     *
+     * @param first   the first operand.
+     * @param other   the second operand.
+     * @param result  the polynomial that receives the merged terms.
+     * @param options the multiplication options.
+     */
+    /* default */ BlockMultiplier(final Polynomial first, final Polynomial other, final Polynomial result,
+            final MultiplyOptions options) {
+        this.first = first;
+        this.other = other;
+        this.result = result;
+        this.options = options;
+        this.window = DegreeWindow.of(options);
+        this.ring = result.getRing();
+        this.progress = result.sink().progress();
+    }
+
+    /**
+     * Multiplies the operands and writes the merged terms to the result.
+     *
+     * @throws IOException if an error occurs while reading or writing a file.
+     */
+    /* default */ void run() throws IOException {
+        final int parallelism = Math.max(1, options.getParallelism());
+        final ForkJoinPool executor = parallelism > 1 ? POOLS.computeIfAbsent(parallelism, ForkJoinPool::new) : null;
+        final Deque<Future<BlockResult>> pending = new ArrayDeque<>();
+        merged = new TermAccumulator(ring, options.isOffHeapAccumulator());
+        boolean spilled = false;
+        try (ResidentOperand resident = ResidentOperand.choose(first, other, options.getResidentTerms(), window)) {
+            do {
+                final TermBlock chunk = resident.chunk();
+                try (TermReader reader = new TermReader(resident.streamed().termFile())) {
+                    TermBlock block = TermBlock.read(reader, options.getBlockTerms());
+                    while (block.size() > 0) {
+                        if (executor == null) {
+                            spilled |= merge(multiply(block, chunk));
+                        } else {
+                            final TermBlock task = block;
+                            pending.add(executor.submit(() -> multiply(task, chunk)));
+                            if (pending.size() >= parallelism) {
+                                spilled |= merge(await(pending.poll()));
+                            }
+                        }
+                        block = TermBlock.read(reader, options.getBlockTerms());
+                    }
+                }
+                while (!pending.isEmpty()) {
+                    spilled |= merge(await(pending.poll()));
+                }
+            } while (resident.nextChunk());
+        } finally {
+            if (!pending.isEmpty()) {
+                // The running blocks stop at their next term and are awaited, so none outlives the product
+                cancelled = true;
+                for (final Future<BlockResult> future : pending) {
+                    discard(future);
+                }
+            }
+        }
+        merged.drainTo(result);
+        if (spilled) {
+            // Terms of different flushes may still share monomials
+            PolynomialUtils.simplify(result, options.getAccumulatorTerms(), options.isOffHeapAccumulator());
+        }
+    }
+
+    /**
+     * Multiplies a block of streamed terms by a chunk of the resident operand.
+     */
+    private BlockResult multiply(final TermBlock block, final TermBlock chunk) throws IOException {
+        final TermAccumulator accumulator = borrow();
+        final List<ScratchSpace.Lease> spills = new ArrayList<>();
+        try {
+            for (int i = 0; i < block.size(); i++) {
+                progress.advance(1, chunk.size());
+                final Monomial monomial1 = block.monomial(i);
+                final long coefficient1 = block.coefficient(i);
+                if (!window.admits(monomial1)) {
+                    continue;
+                }
+                final int end = window.isUnbounded() ? chunk.size()
+                        : chunk.upperBound(window.maxDegree() - monomial1.degree());
+                for (int j = 0; j < end; j++) {
+                    final Monomial product = monomial1.multiply(chunk.monomial(j));
+                    if (window.hasCaps() && !window.admits(product)) {
+                        continue;
+                    }
+                    accumulator.add(product, ring.multiply(coefficient1, chunk.coefficient(j)));
+                    if (accumulator.size() >= options.getAccumulatorTerms()) {
+                        spills.add(spill(accumulator));
+                    }
+                }
+                if (cancelled) {
+                    throw new IOException("Multiplication cancelled");
+                }
+                Cancellation.check();
+            }
+        } catch (IOException | RuntimeException e) {
+            delete(spills);
+            giveBack(accumulator);
+            throw e;
+        }
+        return new BlockResult(spills, accumulator);
+    }
+
+    /** Takes a cleared accumulator, a new one if none is free. */
+    private TermAccumulator borrow() {
+        final TermAccumulator accumulator = accumulators.poll();
+        return accumulator == null ? new TermAccumulator(ring, options.isOffHeapAccumulator()) : accumulator;
+    }
+
+    /** Clears an accumulator and keeps it for the next block. */
+    private void giveBack(final TermAccumulator accumulator) {
+        accumulator.clear();
+        accumulators.add(accumulator);
+    }
+
+    private ScratchSpace.Lease spill(final TermAccumulator accumulator) throws IOException {
+        // Charged to the quota of the product
+        final ScratchSpace.Lease spill = result.lease.quota().space().lease("polynomial-block",
+                result.lease.quota());
+        try (TermWriter writer = TermWriter.create(spill.file(), ring, options.isCompressed())) {
+            writer.throttle(options.getIoThrottle());
+            writer.account(spill);
+            accumulator.drainTo(writer);
+        } catch (IOException | RuntimeException e) {
+            spill.release(true);
+            throw e;
+        }
+        return spill;
+    }
+
+    /**
+     * Merges the result of a block into the merge accumulator, flushing it to
+     * the result polynomial when it fills up.
+     *
+     * @return {@code true} if the merge accumulator was flushed.
+     */
+    private boolean merge(final BlockResult block) throws IOException {
+        boolean flushed = false;
+        try {
+            for (final ScratchSpace.Lease spill : block.spills) {
+                try (TermReader reader = new TermReader(spill.file())) {
+                    while (reader.next()) {
+                        merged.add(reader.monomial(), reader.coefficient());
+                        flushed |= flushIfFull();
+                    }
+                }
+            }
+        } finally {
+            delete(block.spills);
+        }
+        if (merged.size() == 0) {
+            // Same terms in the same order as adding them all, without hashing them again
+            giveBack(merged);
+            merged = block.accumulator;
+        } else {
+            merged.addAll(block.accumulator);
+            giveBack(block.accumulator);
+        }
+        flushed |= flushIfFull();
+        progress.accumulator(merged.size());
+        return flushed;
+    }
+
+    private boolean flushIfFull() throws IOException {
+        if (merged.size() < options.getAccumulatorTerms()) {
+            return false;
+        }
+        merged.drainTo(result);
+        return true;
+    }
+
+    private static BlockResult await(final Future<BlockResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Multiplication interrupted", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Waits for a pending block of a failed product and gives back what it
+     * holds: its spills are deleted and its accumulator is kept for reuse. A
+     * block that failed has already done so itself.
+     */
+    private void discard(final Future<BlockResult> future) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    final BlockResult block = future.get();
+                    delete(block.spills);
+                    giveBack(block.accumulator);
+                    return;
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                } catch (final ExecutionException e) {
+                    log.trace("Discarded block failed: {}", e.getCause().getMessage());
+                    return;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void delete(final List<ScratchSpace.Lease> spills) {
+        for (final ScratchSpace.Lease spill : spills) {
+            spill.release(true);
+        }
+    }
+
+    /** Terms produced by a block: spilled files plus the in-memory remainder. */
+    private record BlockResult(List<ScratchSpace.Lease> spills, TermAccumulator accumulator) {
+    }
+
+}
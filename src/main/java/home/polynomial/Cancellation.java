@@ -0,0 +1,30 @@
+package home.polynomial;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Cooperative cancellation of the long loops. A product is cancelled by
+ * interrupting its thread, see {@link ProductScheduler}; the loops call
+ * {@link #check()} once per outer term, the scans of the operands once per
+ * term, and the dense transforms once per stage, and the temporary files of
+ * a failed product are deleted on the way out.
+ */
+final class Cancellation {
+
+    private Cancellation() {
+        // Utility class, not meant to be instantiated.
+    }
+
+    /**
+     * Fails if the current thread has been interrupted.
+     *
+     * @throws InterruptedIOException if the thread has been interrupted; the
+     *                                interrupt status is kept.
+     */
+    /* default */ static void check() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Multiplication cancelled");
+        }
+    }
+
+}
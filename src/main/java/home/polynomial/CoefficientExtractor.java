@@ -0,0 +1,229 @@
+package home.polynomial;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
+
+/**
+ * Extraction of a single coefficient of a product of factors without
+ * expanding the product. A truncated convolution keeps only the coefficients
+ * that can still reach the target, so memory and time are proportional to the
+ * target instead of the size of the product.<br/>
+ * For the mixing problem the coefficient of degree A of the product of the
+ * {@link PolynomialBuilder#build(int, int, String)} factors is the number of
+ * ways to dispense the amount A.
+ */
+public final class CoefficientExtractor {
+
+    private CoefficientExtractor() {
+        // Utility class, not meant to be instantiated.
+    }
+
+    /**
+     * Counts exactly the coefficient of {@code x^degree} of the product of
+     * univariate factors with integer coefficients, such as the ones built by
+     * {@link PolynomialBuilder}.
+     *
+     * @param factors the factors.
+     * @param degree  the degree of the coefficient (example: the amount).
+     * @return the coefficient.
+     * @throws ArithmeticException      if the count overflows a {@code long}.
+     * @throws IllegalArgumentException if a coefficient is not an integer.
+     */
+    public static long exactCoefficientOf(final List<PolynomialFunction> factors, final int degree) {
+        if (degree < 0) {
+            return 0;
+        }
+        long[] ways = new long[degree + 1];
+        ways[0] = 1;
+        for (final PolynomialFunction factor : factors) {
+            final double[] coefficients = factor.getCoefficients();
+            final long[] exact = DenseMultiplier.toExact(
+                    Arrays.copyOf(coefficients, Math.min(coefficients.length, degree + 1)));
+            final long[] next = new long[degree + 1];
+            for (int j = 0; j < exact.length; j++) {
+                if (exact[j] != 0) {
+                    for (int a = j; a <= degree; a++) {
+                        next[a] = Math.addExact(next[a], Math.multiplyExact(exact[j], ways[a - j]));
+                    }
+                }
+            }
+            ways = next;
+        }
+        return ways[degree];
+    }
+
+    /**
+     * Counts exactly the coefficient of {@code t^totalDegree} of the product of
+     * step polynomials once every variable is replaced by {@code t}, through
+     * their closed form: every factor costs one pass over the degrees,
+     * whatever its number of steps.
+     *
+     * @param factors     the factors.
+     * @param totalDegree the total degree (example: the amount).
+     * @return the coefficient.
+     * @throws ArithmeticException if the count overflows a {@code long}.
+     */
+    public static long exactStepCoefficientOf(final List<StepPolynomial> factors, final int totalDegree) {
+        if (totalDegree < 0) {
+            return 0;
+        }
+        return StepPolynomial.totalDegreeCoefficients(factors, totalDegree, CoefficientRing.LONG)[totalDegree];
+    }
+
+    /**
+     * Returns the sum of the coefficients of the terms of total degree
+     * {@code totalDegree} of the product of the factors, that is, the
+     * coefficient of {@code t^totalDegree} once every variable is replaced by
+     * {@code t}.
+     *
+     * @param factors     the factors.
+     * @param totalDegree the total degree (example: the amount).
+     * @return the coefficient.
+     * @throws IOException if an error occurs while reading a factor.
+     */
+    public static double coefficientOf(final Iterable<Polynomial> factors, final int totalDegree)
+            throws IOException {
+        if (totalDegree < 0) {
+            return 0;
+        }
+        double[] sums = new double[totalDegree + 1];
+        sums[0] = 1;
+        for (final Polynomial factor : factors) {
+            final double[] byDegree = new double[totalDegree + 1];
+            try (TermReader reader = new TermReader(factor.termFile())) {
+                while (reader.next()) {
+                    final int degree = reader.monomial().degree();
+                    if (degree <= totalDegree) {
+                        byDegree[degree] += reader.ring().toDouble(reader.coefficient());
+                    }
+                }
+            }
+            final double[] next = new double[totalDegree + 1];
+            for (int j = 0; j <= totalDegree; j++) {
+                if (byDegree[j] != 0) {
+                    for (int a = j; a <= totalDegree; a++) {
+                        next[a] += byDegree[j] * sums[a - j];
+                    }
+                }
+            }
+            sums = next;
+        }
+        return sums[totalDegree];
+    }
+
+    /**
+     * Returns the coefficient of a monomial of the product of the factors.
+     * Only the monomials that divide the target are kept, so memory is the
+     * product of (exponent + 1) over the variables of the target.
+     *
+     * @param factors  the factors.
+     * @param monomial the key of the monomial (example: “x^150*y^200”).
+     * @return the coefficient.
+     * @throws IOException if an error occurs while reading a factor.
+     */
+    public static double coefficientOf(final Iterable<Polynomial> factors, final String monomial)
+            throws IOException {
+        final Monomial target = Monomial.parse(monomial);
+        final List<Integer> variableList = new ArrayList<>();
+        for (int variable = 0; variable < target.fields(); variable++) {
+            if (target.exponent(variable) > 0) {
+                variableList.add(variable);
+            }
+        }
+        final int[] variables = variableList.stream().mapToInt(Integer::intValue).toArray();
+        final int[] radixes = new int[variables.length];
+        final long[] weights = new long[variables.length];
+        long size = 1;
+        for (int i = 0; i < variables.length; i++) {
+            radixes[i] = target.exponent(variables[i]) + 1;
+            weights[i] = size;
+            size = Math.multiplyExact(size, radixes[i]);
+        }
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Target monomial too large: " + monomial);
+        }
+        double[] values = new double[(int) size];
+        values[0] = 1;
+        for (final Polynomial factor : factors) {
+            values = convolve(values, dividingTerms(factor, target, variables, weights), radixes);
+        }
+        return values[(int) size - 1];
+    }
+
+    /**
+     * Reads the terms of a factor whose monomial divides the target.
+     */
+    private static List<Shift> dividingTerms(final Polynomial factor, final Monomial target,
+            final int[] variables, final long... weights) throws IOException {
+        final List<Shift> terms = new ArrayList<>();
+        try (TermReader reader = new TermReader(factor.termFile())) {
+            while (reader.next()) {
+                final Monomial monomial = reader.monomial();
+                if (divides(monomial, target)) {
+                    final int[] exponents = new int[variables.length];
+                    long offset = 0;
+                    for (int i = 0; i < variables.length; i++) {
+                        exponents[i] = monomial.exponent(variables[i]);
+                        offset += exponents[i] * weights[i];
+                    }
+                    terms.add(new Shift((int) offset, exponents, reader.ring().toDouble(reader.coefficient())));
+                }
+            }
+        }
+        return terms;
+    }
+
+    private static boolean divides(final Monomial monomial, final Monomial target) {
+        for (int variable = 0; variable < monomial.fields(); variable++) {
+            if (monomial.exponent(variable) > target.exponent(variable)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Truncated multivariate convolution over the box of the divisors of the
+     * target.
+     */
+    private static double[] convolve(final double[] values, final List<Shift> terms, final int... radixes) {
+        final double[] next = new double[values.length];
+        final int[] digits = new int[radixes.length];
+        for (int index = 0; index < values.length; index++) {
+            for (final Shift term : terms) {
+                if (fits(term.exponents(), digits)) {
+                    next[index] += term.coefficient() * values[index - term.offset()];
+                }
+            }
+            increment(digits, radixes);
+        }
+        return next;
+    }
+
+    private static boolean fits(final int[] exponents, final int... digits) {
+        for (int i = 0; i < digits.length; i++) {
+            if (exponents[i] > digits[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void increment(final int[] digits, final int... radixes) {
+        for (int i = 0; i < digits.length; i++) {
+            if (++digits[i] < radixes[i]) {
+                return;
+            }
+            digits[i] = 0;
+        }
+    }
+
+    /** Term of a factor as a shift of the mixed-radix index of the box. */
+    private record Shift(int offset, int[] exponents, double coefficient) {
+    }
+
+}
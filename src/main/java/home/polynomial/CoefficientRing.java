@@ -0,0 +1,395 @@
+package home.polynomial;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Arithmetic of the coefficients of a polynomial. Every coefficient is an
+ * element of the ring encoded in a {@code long}, so term files, accumulators
+ * and blocks store them as primitive words whatever the ring is:
+ * <ul>
+ * <li>{@link #DOUBLE}: IEEE 754 doubles, stored as their raw bits;</li>
+ * <li>{@link #LONG}: exact integers that fail with an
+ * {@link ArithmeticException} instead of overflowing;</li>
+ * <li>{@link #modulo(long)}: residues modulo a prime below
+ * {@value #MAX_MODULUS}, so a product of two residues fits in a
+ * {@code long}. Several primes are combined by {@link MultiModular}.</li>
+ * </ul>
+ */
+public abstract class CoefficientRing {
+    /** Largest modulus whose residues multiply without overflow. */
+    public static final long MAX_MODULUS = 3_037_000_499L;
+
+    /** Type code of {@link #DOUBLE} in term files. */
+    /* default */ static final short DOUBLE_TYPE = 0;
+    /** Type code of {@link #LONG} in term files. */
+    /* default */ static final short LONG_TYPE = 1;
+    /** Type code of the modular rings in term files. */
+    /* default */ static final short MODULAR_TYPE = 2;
+
+    /** Floating point coefficients, the original behaviour. */
+    public static final CoefficientRing DOUBLE = new CoefficientRing() {
+        @Override
+        public long add(final long a, final long b) {
+            return Double.doubleToRawLongBits(Double.longBitsToDouble(a) + Double.longBitsToDouble(b));
+        }
+
+        @Override
+        public long multiply(final long a, final long b) {
+            return Double.doubleToRawLongBits(Double.longBitsToDouble(a) * Double.longBitsToDouble(b));
+        }
+
+        @Override
+        public boolean isZero(final long a) {
+            return Double.longBitsToDouble(a) == 0;
+        }
+
+        @Override
+        public long fromLong(final long value) {
+            return Double.doubleToRawLongBits(value);
+        }
+
+        @Override
+        public long fromDouble(final double value) {
+            return Double.doubleToRawLongBits(value);
+        }
+
+        @Override
+        public long fromBigInteger(final BigInteger value) {
+            return Double.doubleToRawLongBits(value.doubleValue());
+        }
+
+        @Override
+        public double toDouble(final long a) {
+            return Double.longBitsToDouble(a);
+        }
+
+        @Override
+        public long parse(final String text) {
+            return Double.doubleToRawLongBits(Double.parseDouble(text));
+        }
+
+        @Override
+        public String format(final long a) {
+            return Double.toString(Double.longBitsToDouble(a));
+        }
+
+        @Override
+        /* default */ short type() {
+            return DOUBLE_TYPE;
+        }
+
+        @Override
+        public String toString() {
+            return "DOUBLE";
+        }
+    };
+
+    /** Exact integer coefficients with overflow detection. */
+    public static final CoefficientRing LONG = new CoefficientRing() {
+        @Override
+        public long add(final long a, final long b) {
+            return Math.addExact(a, b);
+        }
+
+        @Override
+        public long multiply(final long a, final long b) {
+            return Math.multiplyExact(a, b);
+        }
+
+        @Override
+        public boolean isZero(final long a) {
+            return a == 0;
+        }
+
+        @Override
+        public long fromLong(final long value) {
+            return value;
+        }
+
+        @Override
+        public long fromDouble(final double value) {
+            if (value != Math.rint(value) || Math.abs(value) >= 0x1p63) {
+                throw new ArithmeticException("Not an exact integer coefficient: " + value);
+            }
+            return (long) value;
+        }
+
+        @Override
+        public long fromBigInteger(final BigInteger value) {
+            return value.longValueExact();
+        }
+
+        @Override
+        public double toDouble(final long a) {
+            return a;
+        }
+
+        @Override
+        public long parse(final String text) {
+            return new BigDecimal(text).longValueExact();
+        }
+
+        @Override
+        public String format(final long a) {
+            return Long.toString(a);
+        }
+
+        @Override
+        /* default */ short type() {
+            return LONG_TYPE;
+        }
+
+        @Override
+        public String toString() {
+            return "LONG";
+        }
+    };
+
+    /**
+     * Returns the ring of the residues modulo a prime.
+     *
+     * @param prime the modulus, a prime not above {@link #MAX_MODULUS}.
+     * @return the ring.
+     * @throws IllegalArgumentException if the modulus is not such a prime.
+     */
+    public static CoefficientRing modulo(final long prime) {
+        if (prime < 2 || prime > MAX_MODULUS || !BigInteger.valueOf(prime).isProbablePrime(64)) {
+            throw new IllegalArgumentException("Not a prime modulus up to " + MAX_MODULUS + ": " + prime);
+        }
+        return new Modular(prime);
+    }
+
+    /**
+     * Returns the sum of two elements.
+     *
+     * @param a the first element.
+     * @param b the second element.
+     * @return the sum.
+     * @throws ArithmeticException if the sum overflows an exact ring.
+     */
+    public abstract long add(long a, long b);
+
+    /**
+     * Returns the product of two elements.
+     *
+     * @param a the first element.
+     * @param b the second element.
+     * @return the product.
+     * @throws ArithmeticException if the product overflows an exact ring.
+     */
+    public abstract long multiply(long a, long b);
+
+    /**
+     * Indicates whether an element is zero, so its term can be dropped.
+     *
+     * @param a the element.
+     * @return {@code true} for zero.
+     */
+    public abstract boolean isZero(long a);
+
+    /**
+     * Returns the element of an integer.
+     *
+     * @param value the integer.
+     * @return the element.
+     */
+    public abstract long fromLong(long value);
+
+    /**
+     * Returns the element of a floating point number.
+     *
+     * @param value the number.
+     * @return the element.
+     * @throws ArithmeticException if an exact ring cannot represent it.
+     */
+    public abstract long fromDouble(double value);
+
+    /**
+     * Returns the element of a big integer.
+     *
+     * @param value the integer.
+     * @return the element.
+     * @throws ArithmeticException if an exact ring cannot represent it.
+     */
+    public abstract long fromBigInteger(BigInteger value);
+
+    /**
+     * Returns an element as a floating point number; a residue is returned as
+     * its least non-negative representative.
+     *
+     * @param a the element.
+     * @return the number.
+     */
+    public abstract double toDouble(long a);
+
+    /**
+     * Parses an element (example: “3.0”, or “3” in an exact ring).
+     *
+     * @param text the text.
+     * @return the element.
+     * @throws NumberFormatException if the text is not a number.
+     * @throws ArithmeticException   if an exact ring cannot represent it.
+     */
+    public abstract long parse(String text);
+
+    /**
+     * Formats an element.
+     *
+     * @param a the element.
+     * @return the text.
+     */
+    public abstract String format(long a);
+
+    /**
+     * Returns the element one.
+     *
+     * @return one.
+     */
+    public long one() {
+        return fromLong(1);
+    }
+
+    /**
+     * Raises an element to a power by repeated squaring.
+     *
+     * @param a     the element.
+     * @param power the power, not negative.
+     * @return the power.
+     * @throws ArithmeticException if the power overflows an exact ring.
+     */
+    public long pow(final long a, final int power) {
+        long result = one();
+        long square = a;
+        for (int rest = power; rest > 0; rest >>= 1) {
+            if ((rest & 1) != 0) {
+                result = multiply(result, square);
+            }
+            if (rest > 1) {
+                square = multiply(square, square);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the type code of the ring in term files.
+     *
+     * @return the type code.
+     */
+    /* default */ abstract short type();
+
+    /**
+     * Returns the modulus of a modular ring.
+     *
+     * @return the modulus, zero for the other rings.
+     */
+    public long modulus() {
+        return 0;
+    }
+
+    /**
+     * Returns the ring of a term file header.
+     *
+     * @param type    the type code.
+     * @param modulus the modulus of a modular ring.
+     * @return the ring.
+     * @throws IllegalArgumentException if the type is unknown.
+     */
+    /* default */ static CoefficientRing of(final short type, final long modulus) {
+        switch (type) {
+        case DOUBLE_TYPE:
+            return DOUBLE;
+        case LONG_TYPE:
+            return LONG;
+        case MODULAR_TYPE:
+            return modulo(modulus);
+        default:
+            throw new IllegalArgumentException("Unknown coefficient type " + type);
+        }
+    }
+
+    /**
+     * Residues modulo a prime, stored in [0, p).
+     */
+    private static final class Modular extends CoefficientRing {
+        /** The prime modulus. */
+        private final long prime;
+
+        private Modular(final long prime) {
+            this.prime = prime;
+        }
+
+        @Override
+        public long add(final long a, final long b) {
+            final long sum = a + b;
+            return sum >= prime ? sum - prime : sum;
+        }
+
+        @Override
+        public long multiply(final long a, final long b) {
+            return a * b % prime;
+        }
+
+        @Override
+        public boolean isZero(final long a) {
+            return a == 0;
+        }
+
+        @Override
+        public long fromLong(final long value) {
+            return Math.floorMod(value, prime);
+        }
+
+        @Override
+        public long fromDouble(final double value) {
+            return fromBigInteger(new BigDecimal(value).toBigIntegerExact());
+        }
+
+        @Override
+        public long fromBigInteger(final BigInteger value) {
+            return value.mod(BigInteger.valueOf(prime)).longValue();
+        }
+
+        @Override
+        public double toDouble(final long a) {
+            return a;
+        }
+
+        @Override
+        public long parse(final String text) {
+            return fromBigInteger(new BigDecimal(text).toBigIntegerExact());
+        }
+
+        @Override
+        public String format(final long a) {
+            return Long.toString(a);
+        }
+
+        @Override
+        /* default */ short type() {
+            return MODULAR_TYPE;
+        }
+
+        @Override
+        public long modulus() {
+            return prime;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof Modular && prime == ((Modular) obj).prime;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(prime);
+        }
+
+        @Override
+        public String toString() {
+            return "MOD " + prime;
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+package home.polynomial;
+
+import java.util.Map;
+
+/**
+ * Window of the terms a truncated multiplication keeps: a total degree bound
+ * and per-variable exponent caps. Since exponents never decrease when
+ * multiplying, a term outside the window can be dropped from an operand
+ * before it takes part in any product.
+ */
+final class DegreeWindow {
+    /** Window that keeps every term. */
+    /* default */ static final DegreeWindow UNBOUNDED = new DegreeWindow(Integer.MAX_VALUE, new int[0], new int[0]);
+
+    /** Maximum total degree. */
+    private final int maxDegree;
+    /** Indexes of the capped variables. */
+    private final int[] variables;
+    /** Maximum exponent of every capped variable. */
+    private final int[] maxExponents;
+
+    private DegreeWindow(final int maxDegree, final int[] variables, final int... maxExponents) {
+        this.maxDegree = maxDegree;
+        this.variables = variables;
+        this.maxExponents = maxExponents;
+    }
+
+    /**
+     * Returns the window of the multiplication options.
+     *
+     * @param options the multiplication options.
+     * @return the window.
+     */
+    /* default */ static DegreeWindow of(final MultiplyOptions options) {
+        final Map<String, Integer> caps = options.getMaxExponents();
+        if (options.getMaxDegree() == Integer.MAX_VALUE && caps.isEmpty()) {
+            return UNBOUNDED;
+        }
+        final int[] variables = new int[caps.size()];
+        final int[] maxExponents = new int[caps.size()];
+        int i = 0;
+        for (final Map.Entry<String, Integer> cap : caps.entrySet()) {
+            variables[i] = Variables.indexOf(cap.getKey());
+            maxExponents[i] = cap.getValue();
+            i++;
+        }
+        return new DegreeWindow(options.getMaxDegree(), variables, maxExponents);
+    }
+
+    /**
+     * Indicates whether the window keeps every term.
+     *
+     * @return {@code true} if there is neither a degree bound nor a cap.
+     */
+    /* default */ boolean isUnbounded() {
+        return this == UNBOUNDED;
+    }
+
+    /**
+     * Indicates whether there are per-variable caps.
+     *
+     * @return {@code true} if some variable is capped.
+     */
+    /* default */ boolean hasCaps() {
+        return variables.length > 0;
+    }
+
+    /**
+     * Returns the maximum total degree.
+     *
+     * @return the maximum total degree.
+     */
+    /* default */ int maxDegree() {
+        return maxDegree;
+    }
+
+    /**
+     * Indicates whether a monomial lies inside the window.
+     *
+     * @param monomial the monomial.
+     * @return {@code true} if the monomial is kept.
+     */
+    /* default */ boolean admits(final Monomial monomial) {
+        if (monomial.degree() > maxDegree) {
+            return false;
+        }
+        for (int i = 0; i < variables.length; i++) {
+            if (monomial.exponent(variables[i]) > maxExponents[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
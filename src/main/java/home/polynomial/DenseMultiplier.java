@@ -0,0 +1,445 @@
+package home.polynomial;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
+
+/**
+ * Fast multiplication of dense univariate polynomials given as coefficient
+ * arrays, where index {@code i} holds the coefficient of {@code x^i}, as in
+ * {@link PolynomialFunction#getCoefficients()}.<br/>
+ * The algorithm is chosen by size: schoolbook when one operand is short,
+ * Karatsuba for medium sizes and a transform above that, an FFT for
+ * {@code double} coefficients and an exact number-theoretic transform for
+ * {@code long} counts, so a product of degree d costs O(d log d).
+ */
+public final class DenseMultiplier {
+    /** Below this length of the shorter operand the schoolbook method is used. */
+    /* default */ static final int SCHOOLBOOK_THRESHOLD = 32;
+    /** Below this length of the longer operand Karatsuba is used. */
+    /* default */ static final int KARATSUBA_THRESHOLD = 512;
+
+    /** Primes of the number-theoretic transforms, all with primitive root 3. */
+    private static final long[] PRIMES = { 998_244_353L, 167_772_161L, 469_762_049L };
+    /** Primitive root of the primes. */
+    private static final long ROOT = 3;
+    /** Largest transform length supported by all the primes. */
+    private static final int MAX_NTT_LENGTH = 1 << 23;
+    /** Inverse of the first prime modulo the second one. */
+    private static final long INVERSE_P0 = power(PRIMES[0] % PRIMES[1], PRIMES[1] - 2, PRIMES[1]);
+    /** Inverse of the product of the first two primes modulo the third one. */
+    private static final long INVERSE_P01 = power(PRIMES[0] * PRIMES[1] % PRIMES[2], PRIMES[2] - 2, PRIMES[2]);
+
+    private DenseMultiplier() {
+        // Utility class, not meant to be instantiated.
+    }
+
+    /**
+     * Multiplies two polynomial functions.
+     *
+     * @param polynomial1 the first polynomial.
+     * @param polynomial2 the second polynomial.
+     * @return the product.
+     */
+    public static PolynomialFunction multiply(final PolynomialFunction polynomial1,
+            final PolynomialFunction polynomial2) {
+        return new PolynomialFunction(multiply(polynomial1.getCoefficients(), polynomial2.getCoefficients()));
+    }
+
+    /**
+     * Multiplies two dense polynomials with {@code double} coefficients. When
+     * both operands only have integer coefficients the FFT result is rounded
+     * to integers; use {@link #multiplyExact(long[], long[])} when the counts
+     * may exceed 2^53.
+     *
+     * @param coefficients1 the coefficients of the first polynomial.
+     * @param coefficients2 the coefficients of the second polynomial.
+     * @return the coefficients of the product.
+     */
+    public static double[] multiply(final double[] coefficients1, final double[] coefficients2) {
+        if (coefficients1.length == 0 || coefficients2.length == 0) {
+            return new double[0];
+        }
+        if (Math.min(coefficients1.length, coefficients2.length) < SCHOOLBOOK_THRESHOLD) {
+            return schoolbook(coefficients1, coefficients2);
+        }
+        if (Math.max(coefficients1.length, coefficients2.length) < KARATSUBA_THRESHOLD) {
+            return karatsuba(coefficients1, coefficients2);
+        }
+        final double[] product = fft(coefficients1, coefficients2);
+        if (isIntegral(coefficients1) && isIntegral(coefficients2)) {
+            for (int i = 0; i < product.length; i++) {
+                product[i] = Math.rint(product[i]) + 0.0; // No negative zeros
+            }
+        }
+        return product;
+    }
+
+    /**
+     * Multiplies two dense polynomials with integer coefficients exactly.
+     *
+     * @param coefficients1 the coefficients of the first polynomial.
+     * @param coefficients2 the coefficients of the second polynomial.
+     * @return the coefficients of the product.
+     * @throws ArithmeticException   if a coefficient of the product may not
+     *                               fit in a {@code long}.
+     * @throws CancellationException if the thread is interrupted; the
+     *                               interrupt status is kept.
+     */
+    public static long[] multiplyExact(final long[] coefficients1, final long[] coefficients2) {
+        if (coefficients1.length == 0 || coefficients2.length == 0) {
+            return new long[0];
+        }
+        if (Math.min(coefficients1.length, coefficients2.length) < SCHOOLBOOK_THRESHOLD) {
+            return schoolbook(coefficients1, coefficients2);
+        }
+        if (Math.max(coefficients1.length, coefficients2.length) < KARATSUBA_THRESHOLD
+                || coefficients1.length + coefficients2.length - 1 > MAX_NTT_LENGTH) {
+            return karatsuba(coefficients1, coefficients2);
+        }
+        return ntt(coefficients1, coefficients2);
+    }
+
+    /**
+     * Converts integer-valued {@code double} coefficients to {@code long}.
+     *
+     * @param coefficients the coefficients.
+     * @return the coefficients as {@code long}.
+     * @throws IllegalArgumentException if a coefficient is not an integer.
+     */
+    public static long[] toExact(final double... coefficients) {
+        final long[] exact = new long[coefficients.length];
+        for (int i = 0; i < coefficients.length; i++) {
+            if (coefficients[i] != Math.rint(coefficients[i]) || Math.abs(coefficients[i]) >= 0x1p63) {
+                throw new IllegalArgumentException("Not an integer coefficient: " + coefficients[i]);
+            }
+            exact[i] = (long) coefficients[i];
+        }
+        return exact;
+    }
+
+    private static boolean isIntegral(final double... coefficients) {
+        for (final double coefficient : coefficients) {
+            if (coefficient != Math.rint(coefficient)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /* default */ static double[] schoolbook(final double[] coefficients1, final double[] coefficients2) {
+        final double[] product = new double[coefficients1.length + coefficients2.length - 1];
+        for (int i = 0; i < coefficients1.length; i++) {
+            final double coefficient = coefficients1[i];
+            if (coefficient != 0) {
+                for (int j = 0; j < coefficients2.length; j++) {
+                    product[i + j] += coefficient * coefficients2[j];
+                }
+            }
+        }
+        return product;
+    }
+
+    /* default */ static long[] schoolbook(final long[] coefficients1, final long[] coefficients2) {
+        final long[] product = new long[coefficients1.length + coefficients2.length - 1];
+        for (int i = 0; i < coefficients1.length; i++) {
+            final long coefficient = coefficients1[i];
+            if (coefficient != 0) {
+                for (int j = 0; j < coefficients2.length; j++) {
+                    product[i + j] = Math.addExact(product[i + j], Math.multiplyExact(coefficient, coefficients2[j]));
+                }
+            }
+        }
+        return product;
+    }
+
+    /* default */ static double[] karatsuba(final double[] coefficients1, final double[] coefficients2) {
+        final int length = Math.max(coefficients1.length, coefficients2.length);
+        final double[] product = karatsubaBalanced(Arrays.copyOf(coefficients1, length),
+                Arrays.copyOf(coefficients2, length));
+        return Arrays.copyOf(product, coefficients1.length + coefficients2.length - 1);
+    }
+
+    /**
+     * Karatsuba on operands of the same length.
+     */
+    private static double[] karatsubaBalanced(final double[] coefficients1, final double[] coefficients2) {
+        final int length = coefficients1.length;
+        if (length < SCHOOLBOOK_THRESHOLD) {
+            return schoolbook(coefficients1, coefficients2);
+        }
+        final int half = length / 2;
+        final int high = length - half;
+        final double[] low1 = Arrays.copyOf(coefficients1, high);
+        final double[] low2 = Arrays.copyOf(coefficients2, high);
+        Arrays.fill(low1, half, high, 0);
+        Arrays.fill(low2, half, high, 0);
+        final double[] high1 = Arrays.copyOfRange(coefficients1, half, length);
+        final double[] high2 = Arrays.copyOfRange(coefficients2, half, length);
+        final double[] z0 = karatsubaBalanced(low1, low2);
+        final double[] z2 = karatsubaBalanced(high1, high2);
+        for (int i = 0; i < high; i++) {
+            low1[i] += high1[i];
+            low2[i] += high2[i];
+        }
+        final double[] z1 = karatsubaBalanced(low1, low2);
+        final double[] product = new double[2 * length - 1];
+        for (int i = 0; i < z1.length; i++) {
+            final double middle = z1[i] - z0[i] - z2[i];
+            product[i] += z0[i];
+            product[i + half] += middle;
+            product[i + 2 * half] += z2[i];
+        }
+        return product;
+    }
+
+    /* default */ static long[] karatsuba(final long[] coefficients1, final long[] coefficients2) {
+        final int length = Math.max(coefficients1.length, coefficients2.length);
+        final long[] product = karatsubaBalanced(Arrays.copyOf(coefficients1, length),
+                Arrays.copyOf(coefficients2, length));
+        return Arrays.copyOf(product, coefficients1.length + coefficients2.length - 1);
+    }
+
+    private static long[] karatsubaBalanced(final long[] coefficients1, final long[] coefficients2) {
+        final int length = coefficients1.length;
+        if (length < SCHOOLBOOK_THRESHOLD) {
+            return schoolbook(coefficients1, coefficients2);
+        }
+        checkInterrupted();
+        final int half = length / 2;
+        final int high = length - half;
+        final long[] low1 = Arrays.copyOf(coefficients1, high);
+        final long[] low2 = Arrays.copyOf(coefficients2, high);
+        Arrays.fill(low1, half, high, 0);
+        Arrays.fill(low2, half, high, 0);
+        final long[] high1 = Arrays.copyOfRange(coefficients1, half, length);
+        final long[] high2 = Arrays.copyOfRange(coefficients2, half, length);
+        final long[] z0 = karatsubaBalanced(low1, low2);
+        final long[] z2 = karatsubaBalanced(high1, high2);
+        for (int i = 0; i < high; i++) {
+            low1[i] = Math.addExact(low1[i], high1[i]);
+            low2[i] = Math.addExact(low2[i], high2[i]);
+        }
+        final long[] z1 = karatsubaBalanced(low1, low2);
+        final long[] product = new long[2 * length - 1];
+        for (int i = 0; i < z1.length; i++) {
+            final long middle = Math.subtractExact(Math.subtractExact(z1[i], z0[i]), z2[i]);
+            product[i] = Math.addExact(product[i], z0[i]);
+            product[i + half] = Math.addExact(product[i + half], middle);
+            product[i + 2 * half] = Math.addExact(product[i + 2 * half], z2[i]);
+        }
+        return product;
+    }
+
+    /**
+     * FFT product: the operands are packed as the real and imaginary parts of
+     * one complex signal, whose square holds twice the product in its
+     * imaginary part.
+     */
+    /* default */ static double[] fft(final double[] coefficients1, final double[] coefficients2) {
+        final int resultLength = coefficients1.length + coefficients2.length - 1;
+        final int size = Integer.highestOneBit(Math.max(1, resultLength - 1)) << 1;
+        final double[] real = Arrays.copyOf(coefficients1, size);
+        final double[] imaginary = Arrays.copyOf(coefficients2, size);
+        fft(real, imaginary, false);
+        for (int i = 0; i < size; i++) {
+            final double re = real[i];
+            final double im = imaginary[i];
+            real[i] = re * re - im * im;
+            imaginary[i] = 2 * re * im;
+        }
+        fft(real, imaginary, true);
+        final double[] product = new double[resultLength];
+        for (int i = 0; i < resultLength; i++) {
+            product[i] = imaginary[i] / (2.0 * size);
+        }
+        return product;
+    }
+
+    private static void fft(final double[] real, final double[] imaginary, final boolean inverse) {
+        final int size = real.length;
+        for (int i = 1, j = 0; i < size; i++) {
+            int bit = size >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                swap(real, i, j);
+                swap(imaginary, i, j);
+            }
+        }
+        final double[] cos = new double[size / 2];
+        final double[] sin = new double[size / 2];
+        for (int i = 0; i < size / 2; i++) {
+            final double angle = 2 * Math.PI * i / size;
+            cos[i] = Math.cos(angle);
+            sin[i] = inverse ? Math.sin(angle) : -Math.sin(angle);
+        }
+        for (int length = 2; length <= size; length <<= 1) {
+            final int half = length / 2;
+            final int step = size / length;
+            for (int start = 0; start < size; start += length) {
+                for (int k = 0; k < half; k++) {
+                    final double wr = cos[k * step];
+                    final double wi = sin[k * step];
+                    final int even = start + k;
+                    final int odd = even + half;
+                    final double tr = real[odd] * wr - imaginary[odd] * wi;
+                    final double ti = real[odd] * wi + imaginary[odd] * wr;
+                    real[odd] = real[even] - tr;
+                    imaginary[odd] = imaginary[even] - ti;
+                    real[even] += tr;
+                    imaginary[even] += ti;
+                }
+            }
+        }
+    }
+
+    private static void swap(final double[] values, final int i, final int j) {
+        final double value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+    }
+
+    /**
+     * Exact product through three number-theoretic transforms whose results
+     * are combined with the Chinese remainder theorem.
+     */
+    /* default */ static long[] ntt(final long[] coefficients1, final long[] coefficients2) {
+        checkBound(coefficients1, coefficients2);
+        final int resultLength = coefficients1.length + coefficients2.length - 1;
+        final int size = Integer.highestOneBit(Math.max(1, resultLength - 1)) << 1;
+        final long[][] residues = new long[PRIMES.length][];
+        for (int p = 0; p < PRIMES.length; p++) {
+            final long prime = PRIMES[p];
+            final long[] transform1 = reduce(coefficients1, size, prime);
+            final long[] transform2 = reduce(coefficients2, size, prime);
+            ntt(transform1, prime, false);
+            ntt(transform2, prime, false);
+            for (int i = 0; i < size; i++) {
+                transform1[i] = transform1[i] * transform2[i] % prime;
+            }
+            ntt(transform1, prime, true);
+            residues[p] = transform1;
+        }
+        final long[] product = new long[resultLength];
+        for (int i = 0; i < resultLength; i++) {
+            product[i] = crt(residues[0][i], residues[1][i], residues[2][i]);
+        }
+        return product;
+    }
+
+    /**
+     * Rejects operands whose product could overflow a {@code long}: the bound
+     * max|a| * max|b| * min(length) must stay below 2^63.
+     */
+    private static void checkBound(final long[] coefficients1, final long[] coefficients2) {
+        Math.multiplyExact(Math.multiplyExact(maxAbs(coefficients1), maxAbs(coefficients2)),
+                (long) Math.min(coefficients1.length, coefficients2.length));
+    }
+
+    private static long maxAbs(final long... coefficients) {
+        long max = 0;
+        for (final long coefficient : coefficients) {
+            max = Math.max(max, Math.absExact(coefficient));
+        }
+        return max;
+    }
+
+    private static long[] reduce(final long[] coefficients, final int size, final long prime) {
+        final long[] reduced = new long[size];
+        for (int i = 0; i < coefficients.length; i++) {
+            reduced[i] = Math.floorMod(coefficients[i], prime);
+        }
+        return reduced;
+    }
+
+    private static void ntt(final long[] values, final long prime, final boolean inverse) {
+        final int size = values.length;
+        for (int i = 1, j = 0; i < size; i++) {
+            int bit = size >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                final long value = values[i];
+                values[i] = values[j];
+                values[j] = value;
+            }
+        }
+        for (int length = 2; length <= size; length <<= 1) {
+            checkInterrupted();
+            long root = power(ROOT, (prime - 1) / length, prime);
+            if (inverse) {
+                root = power(root, prime - 2, prime);
+            }
+            final int half = length / 2;
+            final long[] powers = new long[half];
+            powers[0] = 1;
+            for (int k = 1; k < half; k++) {
+                powers[k] = powers[k - 1] * root % prime;
+            }
+            for (int start = 0; start < size; start += length) {
+                for (int k = 0; k < half; k++) {
+                    final int even = start + k;
+                    final int odd = even + half;
+                    final long t = values[odd] * powers[k] % prime;
+                    values[odd] = values[even] - t < 0 ? values[even] - t + prime : values[even] - t;
+                    values[even] = values[even] + t >= prime ? values[even] + t - prime : values[even] + t;
+                }
+            }
+        }
+        if (inverse) {
+            final long inverseSize = power(size, prime - 2, prime);
+            for (int i = 0; i < size; i++) {
+                values[i] = values[i] * inverseSize % prime;
+            }
+        }
+    }
+
+    /**
+     * Stops a long exact product whose thread has been interrupted, once per
+     * stage of a transform or split of Karatsuba.
+     */
+    private static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Dense product interrupted");
+        }
+    }
+
+    private static long power(final long base, final long exponent, final long prime) {
+        long result = 1;
+        long square = base % prime;
+        for (long e = exponent; e > 0; e >>= 1) {
+            if ((e & 1) != 0) {
+                result = result * square % prime;
+            }
+            square = square * square % prime;
+        }
+        return result;
+    }
+
+    /**
+     * Garner reconstruction of the value with the given residues. The value
+     * x = r0 + p0 * (t1 + p1 * t2) lies in [0, p0 p1 p2); values above half of
+     * the modulus stand for negative numbers. The bound check guarantees the
+     * signed value fits in a {@code long}, so it is computed modulo 2^64.
+     */
+    private static long crt(final long residue0, final long residue1, final long residue2) {
+        final long p0 = PRIMES[0];
+        final long p1 = PRIMES[1];
+        final long p2 = PRIMES[2];
+        final long t1 = Math.floorMod(residue1 - residue0, p1) * INVERSE_P0 % p1;
+        final long partial = residue0 + p0 * t1; // < p0 * p1 < 2^63
+        final long p01 = p0 * p1;
+        final long t2 = Math.floorMod(residue2 - partial % p2, p2) * INVERSE_P01 % p2;
+        final long halfT2 = (p2 - 1) / 2;
+        final boolean negative = t2 > halfT2 || t2 == halfT2 && partial > (p01 - 1) / 2;
+        final long value = partial + p01 * t2; // modulo 2^64
+        return negative ? value - p01 * p2 : value; // modulo 2^64
+    }
+
+}
@@ -0,0 +1,264 @@
+package home.polynomial;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Evaluation of a polynomial at many points at once. The points are stored
+ * by variable, one column of values per variable, so every inner loop runs
+ * over consecutive points with the same operation and the JIT compiles it to
+ * SIMD instructions:
+ * <ul>
+ * <li>a univariate polynomial that is dense enough is expanded to its
+ * coefficient array and evaluated by Horner's scheme, one coefficient at a
+ * time for all the points;</li>
+ * <li>any other polynomial is streamed in blocks of terms, and the value of
+ * every monomial is built from the powers of its variables, which are cached
+ * per variable since the terms are read in monomial order and consecutive
+ * terms share most of their exponents.</li>
+ * </ul>
+ * The points are split in chunks that are evaluated concurrently.
+ */
+@Slf4j
+final class Evaluator {
+    /** Points per chunk. */
+    /* default */ static final int CHUNK_POINTS = 1024;
+    /** Terms per block of the sparse evaluation. */
+    private static final int BLOCK_TERMS = 4096;
+    /** Maximum ratio of the dense length of a univariate polynomial to its terms. */
+    private static final int DENSE_RATIO = 4;
+
+    /** Variable index of every column. */
+    private final int[] variables;
+    /** Values of every variable at every point, by column. */
+    private final double[][] columns;
+    /** Number of points. */
+    private final int points;
+    /** Maximum number of threads. */
+    private final int parallelism;
+
+    /**
+     * Creates an evaluator.
+     *
+     * @param names       the names of the variables, in the order of the
+     *                    coordinates of a point.
+     * @param points      the points, one array of coordinates each.
+     * @param parallelism the maximum number of threads.
+     * @throws IllegalArgumentException if a point does not have a coordinate
+     *                                  per variable.
+     */
+    /* default */ Evaluator(final List<String> names, final double[][] points, final int parallelism) {
+        variables = new int[names.size()];
+        for (int column = 0; column < variables.length; column++) {
+            variables[column] = Variables.indexOf(names.get(column));
+        }
+        this.points = points.length;
+        columns = new double[variables.length][points.length];
+        for (int point = 0; point < points.length; point++) {
+            if (points[point].length != variables.length) {
+                throw new IllegalArgumentException("Point " + point + " has " + points[point].length
+                        + " coordinates instead of " + variables.length);
+            }
+            for (int column = 0; column < variables.length; column++) {
+                columns[column][point] = points[point][column];
+            }
+        }
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Evaluates a polynomial at every point. The coefficients are taken as
+     * doubles, see {@link CoefficientRing#toDouble(long)}.
+     *
+     * @param polynomial the polynomial.
+     * @return the value at every point.
+     * @throws IOException              if an error occurs while reading the
+     *                                  terms.
+     * @throws IllegalArgumentException if a variable of the polynomial has no
+     *                                  coordinate.
+     */
+    /* default */ double[] evaluate(final Polynomial polynomial) throws IOException {
+        final int[] columnOf = columnOfVariable();
+        long terms = 0;
+        int maxDegree = 0;
+        int used = -1;
+        boolean univariate = true;
+        try (TermReader reader = new TermReader(polynomial.termFile())) {
+            while (reader.next()) {
+                final Monomial monomial = reader.monomial();
+                terms++;
+                maxDegree = Math.max(maxDegree, monomial.degree());
+                for (int field = 0; field < monomial.fields(); field++) {
+                    if (monomial.exponent(field) > 0) {
+                        if (field >= columnOf.length || columnOf[field] < 0) {
+                            throw new IllegalArgumentException("No value for " + Variables.nameOf(field));
+                        }
+                        univariate &= used < 0 || used == field;
+                        used = field;
+                    }
+                }
+            }
+        }
+        final double[] values = new double[points];
+        if (terms == 0 || points == 0) {
+            return values;
+        }
+        final int chunks = (points + CHUNK_POINTS - 1) / CHUNK_POINTS;
+        // One pool for the whole evaluation, reused by every block of terms
+        final ForkJoinPool pool = parallelism == 1 || chunks == 1 ? null
+                : new ForkJoinPool(Math.min(parallelism, chunks));
+        try {
+            if (univariate && (long) maxDegree + 1 <= DENSE_RATIO * terms) {
+                log.debug("Horner evaluation of degree {} at {} points", maxDegree, points);
+                final double[] coefficients = dense(polynomial, Math.max(used, 0), maxDegree);
+                final double[] column = used < 0 ? new double[points] : columns[columnOf[used]];
+                run(pool, chunks, chunk -> horner(coefficients, column, values, chunk));
+            } else {
+                log.debug("Evaluation of {} terms at {} points", terms, points);
+                try (TermReader reader = new TermReader(polynomial.termFile())) {
+                    TermBlock block = TermBlock.read(reader, BLOCK_TERMS);
+                    while (block.size() > 0) {
+                        final TermBlock current = block;
+                        final CoefficientRing ring = reader.ring();
+                        run(pool, chunks, chunk -> sparse(current, ring, columnOf, values, chunk));
+                        block = TermBlock.read(reader, BLOCK_TERMS);
+                    }
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+        return values;
+    }
+
+    /** Returns the column of every variable index, −1 for no column. */
+    private int[] columnOfVariable() {
+        final int[] columnOf = new int[Variables.count()];
+        Arrays.fill(columnOf, -1);
+        for (int column = 0; column < variables.length; column++) {
+            columnOf[variables[column]] = column;
+        }
+        return columnOf;
+    }
+
+    private static double[] dense(final Polynomial polynomial, final int variable, final int degree)
+            throws IOException {
+        final double[] coefficients = new double[degree + 1];
+        try (TermReader reader = new TermReader(polynomial.termFile())) {
+            while (reader.next()) {
+                coefficients[reader.monomial().exponent(variable)] += reader.ring().toDouble(reader.coefficient());
+            }
+        }
+        return coefficients;
+    }
+
+    /**
+     * Horner's scheme for a chunk of points: v = (…(c<sub>n</sub>·x +
+     * c<sub>n−1</sub>)·x + …)·x + c<sub>0</sub>.
+     */
+    private void horner(final double[] coefficients, final double[] column, final double[] values,
+            final int chunk) {
+        final int from = chunk * CHUNK_POINTS;
+        final int to = Math.min(points, from + CHUNK_POINTS);
+        for (int point = from; point < to; point++) {
+            values[point] = coefficients[coefficients.length - 1];
+        }
+        for (int degree = coefficients.length - 2; degree >= 0; degree--) {
+            final double coefficient = coefficients[degree];
+            for (int point = from; point < to; point++) {
+                values[point] = values[point] * column[point] + coefficient;
+            }
+        }
+    }
+
+    /**
+     * Adds the terms of a block to the values of a chunk of points.
+     */
+    private void sparse(final TermBlock block, final CoefficientRing ring, final int[] columnOf,
+            final double[] values, final int chunk) {
+        final int from = chunk * CHUNK_POINTS;
+        final int length = Math.min(points, from + CHUNK_POINTS) - from;
+        final double[][] powers = new double[variables.length][length];
+        final int[] cached = new int[variables.length];
+        final double[] term = new double[length];
+        final double[] sum = new double[length];
+        for (int i = 0; i < block.size(); i++) {
+            final Monomial monomial = block.monomial(i);
+            Arrays.fill(term, ring.toDouble(block.coefficient(i)));
+            for (int field = 0; field < monomial.fields(); field++) {
+                final int exponent = monomial.exponent(field);
+                if (exponent > 0) {
+                    final int column = columnOf[field];
+                    final double[] power = powers[column];
+                    if (cached[column] != exponent) {
+                        final double[] base = columns[column];
+                        for (int point = 0; point < length; point++) {
+                            power[point] = Math.pow(base[from + point], exponent);
+                        }
+                        cached[column] = exponent;
+                    }
+                    for (int point = 0; point < length; point++) {
+                        term[point] *= power[point];
+                    }
+                }
+            }
+            for (int point = 0; point < length; point++) {
+                sum[point] += term[point];
+            }
+        }
+        for (int point = 0; point < length; point++) {
+            values[from + point] += sum[point];
+        }
+    }
+
+    /**
+     * Runs a task for every chunk of points, concurrently in the pool if
+     * there is one.
+     */
+    private static void run(final ForkJoinPool pool, final int chunks, final ChunkTask task) throws IOException {
+        if (pool == null) {
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                task.evaluate(chunk);
+            }
+            return;
+        }
+        final List<Callable<Void>> tasks = new ArrayList<>(chunks);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            final int index = chunk;
+            tasks.add(() -> {
+                task.evaluate(index);
+                return null;
+            });
+        }
+        try {
+            for (final Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Evaluation interrupted", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /** Evaluation of a chunk of points. */
+    @FunctionalInterface
+    private interface ChunkTask {
+        void evaluate(int chunk);
+    }
+
+}
@@ -0,0 +1,262 @@
+package home.polynomial;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Powers of a polynomial. A general polynomial is raised by repeated
+ * squaring, so P<sup>n</sup> takes O(log n) products instead of n − 1, with
+ * every intermediate kept in its term file and deleted once consumed. Some
+ * shapes are expanded directly without any product:
+ * <ul>
+ * <li>a single term, by raising its coefficient and its monomial;</li>
+ * <li>a binomial a·m<sub>1</sub> + b·m<sub>2</sub>, by the binomial
+ * theorem;</li>
+ * <li>a geometric step polynomial c·(1 + t + … + t<sup>n</sup>) with
+ * t = x<sup>k</sup>, such as the factors of {@link PolynomialBuilder}, by
+ * the closed form (1 − t<sup>n+1</sup>)<sup>p</sup> /
+ * (1 − t)<sup>p</sup>, whose coefficient of t<sup>m</sup> is
+ * Σ<sub>i</sub> (−1)<sup>i</sup> C(p, i) C(m − i(n + 1) + p − 1, p − 1).</li>
+ * </ul>
+ * The binomial coefficients and the alternating sums are exact big integers
+ * reduced into the {@link CoefficientRing} of the base. The base is only
+ * loaded in memory when the term count of its file, or a streaming check of
+ * its terms, allows one of these shapes.
+ */
+@Slf4j
+final class Exponentiation {
+
+    private Exponentiation() {
+        // Utility class, not meant to be instantiated.
+    }
+
+    /**
+     * Raises a polynomial to a power. Products always combine like terms, and
+     * the degree bounds of the options truncate the result.
+     *
+     * @param base    the polynomial, not modified.
+     * @param power   the power, not negative.
+     * @param options the options of the products.
+     * @return the power, combined; the constant 1 for the power zero.
+     * @throws IOException if an error occurs while reading or writing a file.
+     */
+    /* default */ static Polynomial pow(final Polynomial base, final int power, final MultiplyOptions options)
+            throws IOException {
+        if (power < 0) {
+            throw new IllegalArgumentException("Negative power: " + power);
+        }
+        final MultiplyOptions combining = options.combinesTerms() ? options
+                : options.toBuilder().accumulate(true).build();
+        final DegreeWindow window = DegreeWindow.of(combining);
+        final CoefficientRing ring = base.getRing();
+        final Polynomial result = new Polynomial(base.getOrder(), ring);
+        final boolean expanded;
+        try {
+            if (power == 0) {
+                emit(result, Monomial.ONE, ring.one(), window);
+                expanded = true;
+            } else if (power == 1) {
+                new TermSorter(base.getOrder(), TermSorter.DEFAULT_RUN_TERMS, result.lease.quota())
+                        .sort(base.termFile(), (monomial, coefficient) -> emit(result, monomial, coefficient, window));
+                expanded = true;
+            } else {
+                expanded = expand(base, power, result, window);
+            }
+            if (expanded) {
+                result.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            result.discard();
+            throw e;
+        }
+        if (!expanded) {
+            result.discard();
+            return squaring(base, power, combining);
+        }
+        return result;
+    }
+
+    /**
+     * Expands a power of at least two directly, loading the base only when
+     * the term count of its file allows one of the direct shapes.
+     *
+     * @return {@code false} if the base has another shape, with nothing
+     *         emitted.
+     */
+    private static boolean expand(final Polynomial base, final int power, final Polynomial result,
+            final DegreeWindow window) throws IOException {
+        final boolean small;
+        try (TermReader reader = new TermReader(base.termFile())) {
+            small = reader.terms() <= 2;
+            if (!small && !mayBeStep(reader)) {
+                return false;
+            }
+        }
+        final TermBlock terms = TermBlock.sorted(base.termFile(), base.getOrder(), TermSorter.DEFAULT_RUN_TERMS,
+                result.lease.quota());
+        if (terms.size() == 0) {
+            log.trace("Power of the zero polynomial");
+        } else if (terms.size() == 1) {
+            emit(result, terms.monomial(0).pow(power), result.getRing().pow(terms.coefficient(0), power), window);
+        } else if (terms.size() == 2) {
+            binomial(terms, power, result, window);
+        } else {
+            return geometric(terms, power, result, window);
+        }
+        return true;
+    }
+
+    /**
+     * Streams the terms of a file and tells whether they could combine into
+     * a geometric step polynomial: a single coefficient, and every monomial
+     * the constant or a power of a single variable.
+     */
+    private static boolean mayBeStep(final TermReader reader) throws IOException {
+        int variable = -1;
+        boolean first = true;
+        long coefficient = 0;
+        while (reader.next()) {
+            Cancellation.check();
+            if (first) {
+                coefficient = reader.coefficient();
+                first = false;
+            } else if (reader.coefficient() != coefficient) {
+                return false;
+            }
+            final Monomial monomial = reader.monomial();
+            for (int field = 0; field < monomial.fields(); field++) {
+                if (monomial.exponent(field) > 0) {
+                    if (variable >= 0 && variable != field) {
+                        return false;
+                    }
+                    variable = field;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void emit(final Polynomial result, final Monomial monomial, final long coefficient,
+            final DegreeWindow window) throws IOException {
+        if (!result.getRing().isZero(coefficient) && window.admits(monomial)) {
+            result.append(monomial, coefficient);
+        }
+    }
+
+    /**
+     * Expands (a·m<sub>1</sub> + b·m<sub>2</sub>)<sup>p</sup> term by term.
+     */
+    private static void binomial(final TermBlock terms, final int power, final Polynomial result,
+            final DegreeWindow window) throws IOException {
+        final Monomial monomial1 = terms.monomial(0);
+        final Monomial monomial2 = terms.monomial(1);
+        final CoefficientRing ring = result.getRing();
+        final long coefficient1 = terms.coefficient(0);
+        final long coefficient2 = terms.coefficient(1);
+        BigInteger binomial = BigInteger.ONE;
+        for (int k = 0; k <= power; k++) {
+            final long scale = ring.multiply(ring.pow(coefficient1, power - k), ring.pow(coefficient2, k));
+            emit(result, monomial1.pow(power - k).multiply(monomial2.pow(k)),
+                    ring.multiply(ring.fromBigInteger(binomial), scale), window);
+            binomial = binomial.multiply(BigInteger.valueOf(power - k)).divide(BigInteger.valueOf(k + 1));
+        }
+    }
+
+    /**
+     * Expands the power of a geometric step polynomial by its closed form.
+     *
+     * @return {@code false} if the terms are not a geometric step polynomial.
+     */
+    private static boolean geometric(final TermBlock terms, final int power, final Polynomial result,
+            final DegreeWindow window) throws IOException {
+        final int variable = stepVariable(terms);
+        if (variable < 0) {
+            return false;
+        }
+        // Sorted ascending, the terms are 1, x^k, x^2k, ..., x^nk
+        final int step = terms.monomial(1).exponent(variable);
+        final int n = terms.size() - 1;
+        final long degree = (long) n * power;
+        if (degree * step > Monomial.MAX_EXPONENT) {
+            throw new ArithmeticException("Exponent overflow raising a step polynomial to " + power);
+        }
+        final BigInteger[] alternating = new BigInteger[power + 1];
+        alternating[0] = BigInteger.ONE;
+        for (int i = 1; i <= power; i++) {
+            alternating[i] = alternating[i - 1].multiply(BigInteger.valueOf(power - i + 1))
+                    .divide(BigInteger.valueOf(i));
+        }
+        // Coefficients of 1/(1 - t)^p: C(j + p - 1, p - 1)
+        final BigInteger[] series = new BigInteger[(int) degree + 1];
+        series[0] = BigInteger.ONE;
+        for (int j = 1; j <= degree; j++) {
+            series[j] = series[j - 1].multiply(BigInteger.valueOf(j + power - 1L)).divide(BigInteger.valueOf(j));
+        }
+        final CoefficientRing ring = result.getRing();
+        final long scale = ring.pow(terms.coefficient(0), power);
+        for (int m = 0; m <= degree; m++) {
+            BigInteger sum = BigInteger.ZERO;
+            for (int i = 0; i <= power && (long) i * (n + 1) <= m; i++) {
+                final BigInteger term = alternating[i].multiply(series[m - i * (n + 1)]);
+                sum = i % 2 == 0 ? sum.add(term) : sum.subtract(term);
+            }
+            emit(result, Monomial.of(variable, m * step), ring.multiply(ring.fromBigInteger(sum), scale), window);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the variable of a geometric step polynomial c·(1 + x^k + … +
+     * x^nk) in ascending order, or −1 if the terms have another shape.
+     */
+    private static int stepVariable(final TermBlock terms) {
+        if (!terms.monomial(0).isOne()) {
+            return -1;
+        }
+        final Monomial first = terms.monomial(1);
+        int variable = -1;
+        for (int field = 0; field < first.fields(); field++) {
+            if (first.exponent(field) > 0) {
+                if (variable >= 0) {
+                    return -1;
+                }
+                variable = field;
+            }
+        }
+        final int step = first.exponent(variable);
+        for (int i = 0; i < terms.size(); i++) {
+            if (terms.coefficient(i) != terms.coefficient(0)
+                    || !terms.monomial(i).equals(Monomial.of(variable, i * step))) {
+                return -1;
+            }
+        }
+        return variable;
+    }
+
+    /**
+     * Raises by repeated squaring, from the most significant bit of the power,
+     * which is at least two.
+     */
+    private static Polynomial squaring(final Polynomial base, final int power, final MultiplyOptions options)
+            throws IOException {
+        Polynomial result = base;
+        for (int bit = Integer.highestOneBit(power) >> 1; bit > 0; bit >>= 1) {
+            result = replace(result, result.multiply(result, options), base);
+            if ((power & bit) != 0) {
+                result = replace(result, result.multiply(base, options), base);
+            }
+        }
+        return result;
+    }
+
+    /** Deletes a consumed intermediate, never the base. */
+    private static Polynomial replace(final Polynomial consumed, final Polynomial next, final Polynomial base) {
+        if (consumed != base) {
+            consumed.discard();
+        }
+        return next;
+    }
+
+}
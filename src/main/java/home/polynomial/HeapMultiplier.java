@@ -0,0 +1,206 @@
+package home.polynomial;
+
+import java.io.IOException;
+import java.util.Comparator;
+
+/**
+ * Sparse multiplication that produces the terms of the product already sorted,
+ * with like terms combined, following Johnson's heap merge.
+ * <p>
+ * Both operands are sorted in a monomial order. For every term f<sub>i</sub>
+ * of the smaller operand the products f<sub>i</sub>·g<sub>0</sub>,
+ * f<sub>i</sub>·g<sub>1</sub>, … of the larger one form an ascending stream,
+ * because a monomial order is compatible with multiplication. A binary heap
+ * keeps the head of every stream, so the product is the n-way merge of these
+ * streams: the working set is one heap entry per term of the smaller
+ * operand, instead of a map of every distinct term of the product.
+ * <p>
+ * A row enters the heap only when the previous row has left its first
+ * column, which keeps the heap small while the low terms are produced.
+ * <p>
+ * Only the rows, the terms of the smaller operand by the term counts of the
+ * files, are kept in memory. The larger operand is sorted into a fixed-width
+ * term file leased from the quota of the product, and every column is read by
+ * position from its mapped windows with {@link TermReader#seek(long)}.
+ */
+final class HeapMultiplier {
+    /** Order of the output terms. */
+    private final Comparator<Monomial> comparator;
+    /** Ring of the coefficients. */
+    private final CoefficientRing ring;
+    /** Terms of the smaller operand, one heap row each. */
+    private final TermBlock rows;
+    /** Sorted terms of the larger operand, the columns of every row. */
+    private final TermReader columns;
+    /** Number of columns. */
+    private final long columnCount;
+    /** Current column of every row. */
+    private final long[] column;
+    /** Product at the current column of every row. */
+    private final Monomial[] heads;
+    /** Coefficient of the current column of every row. */
+    private final long[] columnCoefficients;
+    /** Binary heap of rows, ordered by their head. */
+    private final int[] heap;
+    /** Counters of the product. */
+    private final ProductProgress progress;
+    /** Number of rows in the heap. */
+    private int heapSize;
+
+    private HeapMultiplier(final Comparator<Monomial> comparator, final CoefficientRing ring, final TermBlock rows,
+            final TermReader columns, final ProductProgress progress) {
+        this.progress = progress;
+        this.comparator = comparator;
+        this.ring = ring;
+        this.rows = rows;
+        this.columns = columns;
+        this.columnCount = columns.terms();
+        this.column = new long[rows.size()];
+        this.heads = new Monomial[rows.size()];
+        this.columnCoefficients = new long[rows.size()];
+        this.heap = new int[rows.size()];
+    }
+
+    /**
+     * Multiplies two polynomials and passes the terms of the product to a
+     * consumer in ascending order, each monomial once and with a non-zero
+     * coefficient. Terms outside the window are not produced, and the merge
+     * stops at the first product above the degree bound.
+     *
+     * @param first      the first operand.
+     * @param other      the second operand.
+     * @param comparator the monomial order of the output terms; it must be
+     *                   graded, that is, compare the total degree first.
+     * @param window     the window of the kept terms.
+     * @param runTerms   the maximum number of distinct terms kept in memory
+     *                   while sorting an operand.
+     * @param consumer   the consumer of the terms.
+     * @param quota      the quota of the product, charged with the runs of the
+     *                   sorts of the operands and the sorted larger operand.
+     * @param progress   the counters of the product.
+     * @throws IOException if an error occurs while reading a file or the
+     *                     consumer fails to store a term.
+     */
+    /* default */ static void multiply(final Polynomial first, final Polynomial other,
+            final Comparator<Monomial> comparator, final DegreeWindow window, final int runTerms,
+            final TermConsumer consumer, final ScratchSpace.Quota quota, final ProductProgress progress)
+            throws IOException {
+        final boolean firstRows = terms(first) <= terms(other);
+        TermBlock rows = TermBlock.sorted((firstRows ? first : other).termFile(), comparator, runTerms, quota);
+        if (!window.isUnbounded()) {
+            rows = rows.filter(window);
+        }
+        final ScratchSpace.Lease sorted = quota.space().lease("polynomial-columns", quota);
+        try {
+            try (TermWriter writer = TermWriter.create(sorted.file(), first.getRing())) {
+                writer.account(sorted);
+                new TermSorter(comparator, runTerms, quota).sort((firstRows ? other : first).termFile(),
+                        (monomial, coefficient) -> {
+                            if (window.isUnbounded() || window.admits(monomial)) {
+                                writer.accept(monomial, coefficient);
+                            }
+                        });
+            }
+            try (TermReader columns = new TermReader(sorted.file())) {
+                new HeapMultiplier(comparator, first.getRing(), rows, columns, progress).run(window, consumer);
+            }
+        } finally {
+            sorted.release(true);
+        }
+    }
+
+    private static long terms(final Polynomial polynomial) throws IOException {
+        try (TermReader reader = new TermReader(polynomial.termFile())) {
+            return reader.terms();
+        }
+    }
+
+    private void run(final DegreeWindow window, final TermConsumer consumer) throws IOException {
+        if (rows.size() == 0 || columnCount == 0) {
+            return;
+        }
+        push(0);
+        Monomial current = null;
+        long sum = ring.fromLong(0);
+        // Pairs merged since the last update of the counters
+        long pairs = 0;
+        while (heapSize > 0) {
+            final int row = heap[0];
+            final Monomial monomial = heads[row];
+            if (monomial.degree() > window.maxDegree()) {
+                // Every remaining product is of a higher degree
+                break;
+            }
+            if (!monomial.equals(current)) {
+                emit(current, sum, window, consumer);
+                current = monomial;
+                sum = ring.fromLong(0);
+            }
+            sum = ring.add(sum, ring.multiply(rows.coefficient(row), columnCoefficients[row]));
+            pop();
+            pairs++;
+            if (column[row] == 0) {
+                // Once per row, as often as the outer loop of the other products
+                Cancellation.check();
+                progress.advance(1, pairs);
+                progress.accumulator(heapSize);
+                pairs = 0;
+                if (row + 1 < rows.size()) {
+                    push(row + 1);
+                }
+            }
+            if (++column[row] < columnCount) {
+                push(row);
+            }
+        }
+        progress.advance(0, pairs);
+        emit(current, sum, window, consumer);
+    }
+
+    private void emit(final Monomial monomial, final long coefficient, final DegreeWindow window,
+            final TermConsumer consumer) throws IOException {
+        if (monomial != null && !ring.isZero(coefficient) && (!window.hasCaps() || window.admits(monomial))) {
+            consumer.accept(monomial, coefficient);
+        }
+    }
+
+    /** Adds a row to the heap at its current column. */
+    private void push(final int row) throws IOException {
+        columns.seek(column[row]);
+        columns.next();
+        heads[row] = rows.monomial(row).multiply(columns.monomial());
+        columnCoefficients[row] = columns.coefficient();
+        int index = heapSize++;
+        while (index > 0) {
+            final int parent = index - 1 >>> 1;
+            if (comparator.compare(heads[heap[parent]], heads[row]) <= 0) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = row;
+    }
+
+    /** Removes the row at the top of the heap. */
+    private void pop() {
+        final int last = heap[--heapSize];
+        int index = 0;
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && comparator.compare(heads[heap[child + 1]], heads[heap[child]]) < 0) {
+                child++;
+            }
+            if (comparator.compare(heads[last], heads[heap[child]]) <= 0) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = last;
+    }
+
+}
@@ -0,0 +1,68 @@
+package home.polynomial;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limit of the write bandwidth shared by several products. Every write of a
+ * buffer reserves its bytes on a single timeline paced at the configured
+ * rate and sleeps until its turn, so concurrent writers together never
+ * exceed the rate, whatever their number.
+ */
+public final class IoThrottle {
+    /** Nanoseconds in a second. */
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /** Bytes per second. */
+    private final long bytesPerSecond;
+    /** Instant, in {@link System#nanoTime()}, when the bandwidth is free again. */
+    private long free = System.nanoTime();
+
+    /**
+     * Creates a throttle.
+     *
+     * @param bytesPerSecond the write bandwidth in bytes per second.
+     */
+    public IoThrottle(final long bytesPerSecond) {
+        if (bytesPerSecond < 1) {
+            throw new IllegalArgumentException("The bandwidth must be positive: " + bytesPerSecond);
+        }
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Returns the write bandwidth.
+     *
+     * @return the bytes per second.
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Waits until some bytes can be written.
+     *
+     * @param bytes the bytes about to be written.
+     * @throws InterruptedIOException if the thread is interrupted while
+     *                                waiting.
+     */
+    /* default */ void acquire(final long bytes) throws InterruptedIOException {
+        final long wait = reserve(bytes);
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for write bandwidth");
+            }
+        }
+    }
+
+    private synchronized long reserve(final long bytes) {
+        final long now = System.nanoTime();
+        final long start = Math.max(now, free);
+        free = start + (long) (bytes * NANOS_PER_SECOND / bytesPerSecond);
+        return start - now;
+    }
+
+}
@@ -0,0 +1,257 @@
+package home.polynomial;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Kronecker substitution between multivariate polynomials and dense
+ * univariate coefficient arrays, so a multivariate product can run through
+ * the quasi-linear {@link DenseMultiplier}.
+ * <p>
+ * Every variable gets a digit of a mixed-radix number: with per-variable
+ * degree bounds D<sub>i</sub> of the product, the monomial
+ * x<sub>0</sub><sup>e<sub>0</sub></sup>…x<sub>k</sub><sup>e<sub>k</sub></sup>
+ * maps to the power Σ e<sub>i</sub> w<sub>i</sub> with w<sub>0</sub> = 1 and
+ * w<sub>i+1</sub> = w<sub>i</sub> (D<sub>i</sub> + 1). Exponents are first
+ * divided by the greatest common divisor of each variable, so the step
+ * factors of {@link PolynomialBuilder} (1 + x^k + … + x^nk) pack into n + 1
+ * slots instead of nk + 1.
+ */
+@Slf4j
+final class KroneckerSubstitution {
+    /** Dense coefficients converted back between two cancellation checks, minus one. */
+    private static final int CHECK_MASK = 4095;
+
+    /** Indexes of the variables that appear. */
+    private final int[] variables;
+    /** Common divisor of the exponents of every variable. */
+    private final int[] steps;
+    /** Mixed-radix weight of every variable. */
+    private final long[] weights;
+    /** Degree bound of the product of every variable, in steps. */
+    private final int[] bounds;
+    /** Length of the dense form of the product. */
+    private final long length;
+
+    private KroneckerSubstitution(final int[] variables, final int[] steps, final int... bounds) {
+        this.variables = variables;
+        this.steps = steps;
+        this.bounds = bounds;
+        this.weights = new long[variables.length];
+        long weight = 1;
+        for (int i = 0; i < variables.length; i++) {
+            weights[i] = weight;
+            weight = weight > Long.MAX_VALUE / (bounds[i] + 1) ? Long.MAX_VALUE : weight * (bounds[i] + 1);
+        }
+        this.length = weight;
+    }
+
+    /**
+     * Multiplies two polynomials through the dense path when it pays off: the
+     * packed product must have at most {@code maxLength} coefficients and its
+     * transform must be cheaper than the N×M pairwise products, and every
+     * coefficient of both operands must be an integer, so the product goes
+     * through the exact number theoretic transform: the rounding noise of a
+     * floating-point transform would come out as spurious terms and perturb
+     * the exact ones. The merged terms are appended to the result. An
+     * interrupted thread stops the product, see {@link Cancellation}.
+     *
+     * @param first     the first operand.
+     * @param other     the second operand.
+     * @param result    the polynomial that receives the product.
+     * @param maxLength the maximum length of the dense product.
+     * @return {@code false} if the dense path was not used.
+     * @throws IOException if an error occurs while reading or writing a file.
+     */
+    /* default */ static boolean multiply(final Polynomial first, final Polynomial other, final Polynomial result,
+            final int maxLength) throws IOException {
+        if (maxLength <= 0) {
+            return false;
+        }
+        final Profile profile1 = Profile.of(first);
+        final Profile profile2 = Profile.of(other);
+        final KroneckerSubstitution substitution = forProduct(profile1, profile2);
+        final double pairs = (double) profile1.terms * profile2.terms;
+        final double transform = substitution.length * (64 - Long.numberOfLeadingZeros(substitution.length));
+        if (!profile1.integral || !profile2.integral || substitution.length > maxLength || transform >= pairs) {
+            return false;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Dense product of {} coefficients instead of {} pairs", substitution.length, (long) pairs);
+        }
+        final double[] product;
+        try {
+            product = toDouble(DenseMultiplier.multiplyExact(DenseMultiplier.toExact(substitution.toDense(first)),
+                    DenseMultiplier.toExact(substitution.toDense(other))));
+        } catch (final ArithmeticException e) {
+            log.debug("Dense product may overflow, multiplying term by term: {}", e.getMessage());
+            return false;
+        } catch (final CancellationException e) {
+            final InterruptedIOException cancelled = new InterruptedIOException("Multiplication cancelled");
+            cancelled.initCause(e);
+            throw cancelled;
+        }
+        substitution.fromDense(product, result.sink());
+        return true;
+    }
+
+    /**
+     * Builds the substitution for the product of two polynomials.
+     */
+    private static KroneckerSubstitution forProduct(final Profile profile1, final Profile profile2) {
+        final int fields = Math.max(profile1.maxExponents.length, profile2.maxExponents.length);
+        final int[] variables = new int[fields];
+        final int[] steps = new int[fields];
+        final int[] bounds = new int[fields];
+        int count = 0;
+        for (int variable = 0; variable < fields; variable++) {
+            final int max1 = profile1.maxExponent(variable);
+            final int max2 = profile2.maxExponent(variable);
+            if (max1 + max2 > 0) {
+                final int step = gcd(profile1.step(variable), profile2.step(variable));
+                variables[count] = variable;
+                steps[count] = step;
+                bounds[count] = max1 / step + max2 / step;
+                count++;
+            }
+        }
+        return new KroneckerSubstitution(Arrays.copyOf(variables, count), Arrays.copyOf(steps, count),
+                Arrays.copyOf(bounds, count));
+    }
+
+    /**
+     * Converts a polynomial to its dense form. Every exponent must be within
+     * the bounds of the substitution.
+     *
+     * @param polynomial the polynomial.
+     * @return the dense coefficients.
+     * @throws IOException if an error occurs while reading the polynomial.
+     */
+    /* default */ double[] toDense(final Polynomial polynomial) throws IOException {
+        long size = 1;
+        final double[] dense;
+        try (TermReader reader = new TermReader(polynomial.termFile())) {
+            double[] values = new double[(int) Math.min(length, 1024)];
+            while (reader.next()) {
+                Cancellation.check();
+                final long index = pack(reader.monomial());
+                if (index >= values.length) {
+                    values = Arrays.copyOf(values, (int) Math.min(length, Math.max(index + 1, 2L * values.length)));
+                }
+                values[(int) index] += reader.ring().toDouble(reader.coefficient());
+                size = Math.max(size, index + 1);
+            }
+            dense = Arrays.copyOf(values, (int) size);
+        }
+        return dense;
+    }
+
+    /**
+     * Converts a dense product back to terms, skipping the zero coefficients.
+     * The coefficients are passed as elements of {@link CoefficientRing#DOUBLE}.
+     *
+     * @param dense    the dense coefficients.
+     * @param consumer the consumer of the terms.
+     * @throws IOException if the consumer fails to store a term.
+     */
+    /* default */ void fromDense(final double[] dense, final TermConsumer consumer) throws IOException {
+        final int[] exponents = new int[variables.length];
+        for (int index = 0; index < dense.length; index++) {
+            if ((index & CHECK_MASK) == 0) {
+                Cancellation.check();
+            }
+            if (dense[index] != 0) {
+                long rest = index;
+                for (int i = variables.length - 1; i >= 0; i--) {
+                    exponents[i] = (int) (rest / weights[i]) * steps[i];
+                    rest %= weights[i];
+                }
+                consumer.accept(Monomial.of(variables, exponents), CoefficientRing.DOUBLE.fromDouble(dense[index]));
+            }
+        }
+    }
+
+    private long pack(final Monomial monomial) {
+        long index = 0;
+        for (int i = 0; i < variables.length; i++) {
+            final int exponent = monomial.exponent(variables[i]) / steps[i];
+            if (exponent > bounds[i]) {
+                throw new IllegalArgumentException("Exponent out of the substitution bounds: " + monomial);
+            }
+            index += exponent * weights[i];
+        }
+        return index;
+    }
+
+    private static double[] toDouble(final long... values) {
+        final double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i];
+        }
+        return result;
+    }
+
+    private static int gcd(final int a, final int b) {
+        int x = a;
+        int y = b;
+        while (y != 0) {
+            final int r = x % y;
+            x = y;
+            y = r;
+        }
+        return x;
+    }
+
+    /**
+     * Summary of an operand gathered in one pass over its terms.
+     */
+    private static final class Profile {
+        /** Number of terms. */
+        private long terms;
+        /** Whether every coefficient is an integer that fits in a long. */
+        private boolean integral = true;
+        /** Maximum exponent of every variable. */
+        private int[] maxExponents = new int[0];
+        /** Greatest common divisor of the exponents of every variable. */
+        private int[] steps = new int[0];
+
+        private static Profile of(final Polynomial polynomial) throws IOException {
+            final Profile profile = new Profile();
+            try (TermReader reader = new TermReader(polynomial.termFile())) {
+                while (reader.next()) {
+                    Cancellation.check();
+                    profile.add(reader.monomial(), reader.ring().toDouble(reader.coefficient()));
+                }
+            }
+            return profile;
+        }
+
+        private void add(final Monomial monomial, final double coefficient) {
+            terms++;
+            integral &= coefficient == Math.rint(coefficient) && Math.abs(coefficient) < 0x1p62;
+            final int fields = monomial.fields();
+            if (fields > maxExponents.length) {
+                maxExponents = Arrays.copyOf(maxExponents, fields);
+                steps = Arrays.copyOf(steps, fields);
+            }
+            for (int variable = 0; variable < fields; variable++) {
+                final int exponent = monomial.exponent(variable);
+                maxExponents[variable] = Math.max(maxExponents[variable], exponent);
+                steps[variable] = gcd(steps[variable], exponent);
+            }
+        }
+
+        private int maxExponent(final int variable) {
+            return variable < maxExponents.length ? maxExponents[variable] : 0;
+        }
+
+        private int step(final int variable) {
+            return variable < steps.length ? steps[variable] : 0;
+        }
+    }
+
+}
@@ -0,0 +1,327 @@
+package home.polynomial;
+
+import java.util.Arrays;
+
+/**
+ * Immutable monomial stored as a vector of exponents packed into {@code long}
+ * words. Each variable of the {@link Variables} table owns a field of
+ * {@value #FIELD_BITS} bits, so multiplying two monomials is just adding
+ * their words.
+ * <p>
+ * The top bit of every field is a guard bit: exponents are limited to
+ * {@value #MAX_EXPONENT}, so the sum of two valid fields never carries into
+ * the next one and an overflow is detected by looking at the guard bits.
+ */
+public final class Monomial {
+    /** Bits of each exponent field. */
+    /* default */ static final int FIELD_BITS = 21;
+    /** Exponent fields per word. */
+    /* default */ static final int FIELDS_PER_WORD = 3;
+    /** Maximum exponent of a variable. */
+    /* default */ static final int MAX_EXPONENT = (1 << FIELD_BITS - 1) - 1;
+    /** The monomial without variables (independent term). */
+    /* default */ static final Monomial ONE = new Monomial(new long[0]);
+
+    /** Mask of one exponent field. */
+    private static final long FIELD_MASK = (1L << FIELD_BITS) - 1;
+    /** Guard bits of all the fields of a word. */
+    private static final long GUARD_MASK = 1L << FIELD_BITS - 1 | 1L << 2 * FIELD_BITS - 1 | 1L << 3 * FIELD_BITS - 1;
+
+    /** Packed exponents, without trailing zero words. */
+    private final long[] words;
+    /** Cached hash code. */
+    private final int hash;
+    /** Cached key (example: “x^2*y^3”), built on demand. */
+    private String key;
+
+    private Monomial(final long... words) {
+        this.words = words;
+        this.hash = Arrays.hashCode(words);
+    }
+
+    /**
+     * Parses a term key like “x^2*y^3” without regular expressions. Repeated
+     * variables are combined (“x*x” is “x^2”) and the empty key is
+     * {@link #ONE}.
+     *
+     * @param key the key of the term.
+     * @return the monomial.
+     */
+    /* default */ static Monomial parse(final String key) {
+        if (key.isEmpty()) {
+            return ONE;
+        }
+        long[] words = new long[0];
+        int start = 0;
+        final int length = key.length();
+        while (start <= length) {
+            int end = key.indexOf('*', start);
+            if (end < 0) {
+                end = length;
+            }
+            final int caret = key.indexOf('^', start);
+            final String name;
+            final int exponent;
+            if (caret >= 0 && caret < end) {
+                name = key.substring(start, caret);
+                exponent = parseExponent(key, caret + 1, end);
+            } else {
+                name = key.substring(start, end);
+                exponent = 1;
+            }
+            words = add(words, Variables.indexOf(name), exponent);
+            start = end + 1;
+        }
+        return new Monomial(trim(words));
+    }
+
+    /**
+     * Returns the monomial {@code variable^exponent}.
+     *
+     * @param variable the index of the variable.
+     * @param exponent the exponent.
+     * @return the monomial.
+     */
+    /* default */ static Monomial of(final int variable, final int exponent) {
+        if (exponent == 0) {
+            return ONE;
+        }
+        return new Monomial(add(new long[0], variable, exponent));
+    }
+
+    /**
+     * Returns the monomial with the given exponents.
+     *
+     * @param variables the indexes of the variables.
+     * @param exponents the exponent of each variable.
+     * @return the monomial.
+     */
+    /* default */ static Monomial of(final int[] variables, final int... exponents) {
+        long[] words = new long[0];
+        for (int i = 0; i < variables.length; i++) {
+            if (exponents[i] != 0) {
+                words = add(words, variables[i], exponents[i]);
+            }
+        }
+        return words.length == 0 ? ONE : new Monomial(trim(words));
+    }
+
+    private static int parseExponent(final String key, final int from, final int to) {
+        if (from == to) {
+            throw new IllegalArgumentException("Missing exponent in key: " + key);
+        }
+        long exponent = 0;
+        for (int i = from; i < to; i++) {
+            final char digit = key.charAt(i);
+            if (digit < '0' || digit > '9') {
+                throw new IllegalArgumentException("Invalid exponent in key: " + key);
+            }
+            exponent = exponent * 10 + digit - '0';
+            if (exponent > MAX_EXPONENT) {
+                throw new ArithmeticException("Exponent overflow in key: " + key);
+            }
+        }
+        return (int) exponent;
+    }
+
+    private static long[] add(final long[] words, final int variable, final int exponent) {
+        final int word = variable / FIELDS_PER_WORD;
+        final long[] result = word < words.length ? words : Arrays.copyOf(words, word + 1);
+        final long sum = result[word] + ((long) exponent << variable % FIELDS_PER_WORD * FIELD_BITS);
+        if (exponent < 0 || exponent > MAX_EXPONENT || (sum & GUARD_MASK) != 0) {
+            throw new ArithmeticException("Exponent overflow for variable " + Variables.nameOf(variable));
+        }
+        result[word] = sum;
+        return result;
+    }
+
+    private static long[] trim(final long... words) {
+        int length = words.length;
+        while (length > 0 && words[length - 1] == 0) {
+            length--;
+        }
+        return length == words.length ? words : Arrays.copyOf(words, length);
+    }
+
+    /**
+     * Multiplies this monomial by another one by adding the packed exponents.
+     *
+     * @param other the other monomial.
+     * @return the product.
+     * @throws ArithmeticException if an exponent exceeds {@link #MAX_EXPONENT}.
+     */
+    /* default */ Monomial multiply(final Monomial other) {
+        final long[] shorter;
+        final long[] longer;
+        if (words.length < other.words.length) {
+            shorter = words;
+            longer = other.words;
+        } else {
+            shorter = other.words;
+            longer = words;
+        }
+        if (shorter.length == 0) {
+            return longer == words ? this : other;
+        }
+        final long[] product = longer.clone();
+        long guard = 0;
+        for (int i = 0; i < shorter.length; i++) {
+            product[i] += shorter[i];
+            guard |= product[i];
+        }
+        if ((guard & GUARD_MASK) != 0) {
+            throw new ArithmeticException("Exponent overflow multiplying " + this + " by " + other);
+        }
+        return new Monomial(product);
+    }
+
+    /**
+     * Raises this monomial to a power by multiplying every exponent.
+     *
+     * @param power the power, not negative.
+     * @return the power of the monomial.
+     * @throws ArithmeticException if an exponent exceeds {@link #MAX_EXPONENT}.
+     */
+    /* default */ Monomial pow(final int power) {
+        if (power == 0 || words.length == 0) {
+            return ONE;
+        }
+        final int fields = fields();
+        final int[] variables = new int[fields];
+        final int[] exponents = new int[fields];
+        for (int variable = 0; variable < fields; variable++) {
+            final long exponent = (long) exponent(variable) * power;
+            if (exponent > MAX_EXPONENT) {
+                throw new ArithmeticException("Exponent overflow raising " + this + " to " + power);
+            }
+            variables[variable] = variable;
+            exponents[variable] = (int) exponent;
+        }
+        return of(variables, exponents);
+    }
+
+    /**
+     * Returns the exponent of a variable.
+     *
+     * @param variable the index of the variable.
+     * @return the exponent, zero if the variable does not appear.
+     */
+    /* default */ int exponent(final int variable) {
+        final int word = variable / FIELDS_PER_WORD;
+        if (word >= words.length) {
+            return 0;
+        }
+        return (int) (words[word] >>> variable % FIELDS_PER_WORD * FIELD_BITS & FIELD_MASK);
+    }
+
+    /**
+     * Returns the monomial of some packed words, as stored by
+     * {@link #word(int)}.
+     *
+     * @param words the packed exponents; trailing zero words are ignored.
+     * @return the monomial.
+     */
+    /* default */ static Monomial ofWords(final long... words) {
+        final long[] trimmed = trim(words);
+        return trimmed.length == 0 ? ONE : new Monomial(trimmed);
+    }
+
+    /**
+     * Returns the number of packed words.
+     *
+     * @return the number of words.
+     */
+    /* default */ int words() {
+        return words.length;
+    }
+
+    /**
+     * Returns a packed word of exponents.
+     *
+     * @param index the index of the word.
+     * @return the word, zero beyond the stored ones.
+     */
+    /* default */ long word(final int index) {
+        return index < words.length ? words[index] : 0;
+    }
+
+    /**
+     * Returns the number of exponent fields stored, an upper bound of the
+     * index of the variables that appear.
+     *
+     * @return the number of fields.
+     */
+    /* default */ int fields() {
+        return words.length * FIELDS_PER_WORD;
+    }
+
+    /**
+     * Returns the total degree, the sum of all the exponents.
+     *
+     * @return the total degree.
+     */
+    /* default */ int degree() {
+        int degree = 0;
+        for (final long word : words) {
+            degree += (int) (word & FIELD_MASK) + (int) (word >>> FIELD_BITS & FIELD_MASK)
+                    + (int) (word >>> 2 * FIELD_BITS & FIELD_MASK);
+        }
+        return degree;
+    }
+
+    /**
+     * Indicates whether this is the independent term.
+     *
+     * @return {@code true} if no variable appears.
+     */
+    /* default */ boolean isOne() {
+        return words.length == 0;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        return obj instanceof Monomial && hash == ((Monomial) obj).hash
+                && Arrays.equals(words, ((Monomial) obj).words);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Returns the key of the monomial (example: “x^2*y^3”), with the variables
+     * sorted by name. The independent term has an empty key.
+     *
+     * @return the key of the monomial.
+     */
+    @Override
+    public String toString() {
+        String result = key;
+        if (result == null) {
+            final StringBuilder builder = new StringBuilder();
+            final int fields = words.length * FIELDS_PER_WORD;
+            for (final int variable : Variables.sortedByName()) {
+                if (variable < fields) {
+                    final int exponent = exponent(variable);
+                    if (exponent > 0) {
+                        if (!builder.isEmpty()) {
+                            builder.append('*');
+                        }
+                        builder.append(Variables.nameOf(variable));
+                        if (exponent > 1) {
+                            builder.append('^').append(exponent);
+                        }
+                    }
+                }
+            }
+            result = builder.toString();
+            key = result;
+        }
+        return result;
+    }
+
+}
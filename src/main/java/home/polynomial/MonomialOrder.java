@@ -0,0 +1,63 @@
+package home.polynomial;
+
+import java.util.Comparator;
+
+/**
+ * Canonical monomial orders. Variables are ranked by name, so with “x”, “y”
+ * and “z” the variable “x” is the most significant one. Every polynomial
+ * chooses one order, and its terms are written in ascending order, so like
+ * terms end up next to each other.
+ */
+public enum MonomialOrder implements Comparator<Monomial> {
+    /** Lexicographic order: compares the exponents variable by variable. */
+    LEX {
+        @Override
+        public int compare(final Monomial monomial1, final Monomial monomial2) {
+            return lex(monomial1, monomial2);
+        }
+    },
+    /** Graded lexicographic order: total degree first, then {@link #LEX}. */
+    GRLEX {
+        @Override
+        public int compare(final Monomial monomial1, final Monomial monomial2) {
+            final int result = Integer.compare(monomial1.degree(), monomial2.degree());
+            return result == 0 ? lex(monomial1, monomial2) : result;
+        }
+    },
+    /**
+     * Graded reverse lexicographic order: total degree first, then the
+     * monomial with the smaller exponent in the least significant variable is
+     * the bigger one.
+     */
+    GREVLEX {
+        @Override
+        public int compare(final Monomial monomial1, final Monomial monomial2) {
+            final int result = Integer.compare(monomial1.degree(), monomial2.degree());
+            if (result != 0) {
+                return result;
+            }
+            final int[] variables = Variables.sortedByName();
+            for (int i = variables.length - 1; i >= 0; i--) {
+                final int difference = monomial1.exponent(variables[i]) - monomial2.exponent(variables[i]);
+                if (difference != 0) {
+                    return difference < 0 ? 1 : -1;
+                }
+            }
+            return 0;
+        }
+    };
+
+    /** Order used when none is chosen. */
+    public static final MonomialOrder DEFAULT = GRLEX;
+
+    private static int lex(final Monomial monomial1, final Monomial monomial2) {
+        for (final int variable : Variables.sortedByName()) {
+            final int difference = monomial1.exponent(variable) - monomial2.exponent(variable);
+            if (difference != 0) {
+                return difference < 0 ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,241 @@
+package home.polynomial;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Exact integer coefficients beyond the range of a {@code long}. The same
+ * computation runs once per prime in {@link CoefficientRing#modulo(long)},
+ * and the residues of every term are combined by the Chinese remainder
+ * theorem into the integer of least absolute value. With k primes of about
+ * 2<sup>31.5</sup> every coefficient below 2<sup>31.5k − 1</sup> in absolute
+ * value is recovered exactly, while the products themselves only handle
+ * primitive words.
+ */
+@Slf4j
+public final class MultiModular {
+
+    private MultiModular() {
+        // Utility class, not meant to be instantiated.
+    }
+
+    /**
+     * Computation of a polynomial over a coefficient ring, such as a product
+     * of factors built with that ring.
+     */
+    @FunctionalInterface
+    public interface Computation {
+        /**
+         * Computes the polynomial.
+         *
+         * @param ring the ring of the coefficients.
+         * @return the polynomial, with coefficients in {@code ring}; it is
+         *         simplified and deleted by the caller.
+         * @throws IOException if an error occurs while reading or writing a
+         *                     file.
+         */
+        Polynomial compute(CoefficientRing ring) throws IOException;
+    }
+
+    /**
+     * Consumer of terms with big integer coefficients.
+     */
+    @FunctionalInterface
+    public interface TermHandler {
+        /**
+         * Consumes a term.
+         *
+         * @param monomial    the monomial of the term.
+         * @param coefficient the coefficient of the term, not zero.
+         * @throws IOException if an error occurs while storing the term.
+         */
+        void accept(Monomial monomial, BigInteger coefficient) throws IOException;
+    }
+
+    /**
+     * Returns the largest primes up to {@link CoefficientRing#MAX_MODULUS}.
+     *
+     * @param count the number of primes.
+     * @return the modular rings, by descending prime.
+     */
+    public static List<CoefficientRing> primes(final int count) {
+        final List<CoefficientRing> rings = new ArrayList<>(count);
+        long candidate = CoefficientRing.MAX_MODULUS;
+        while (rings.size() < count) {
+            if (BigInteger.valueOf(candidate).isProbablePrime(64)) {
+                rings.add(CoefficientRing.modulo(candidate));
+            }
+            candidate--;
+        }
+        return rings;
+    }
+
+    /**
+     * Runs a computation modulo the given number of primes and passes the
+     * reconstructed terms to a handler, in the monomial order of the results.
+     *
+     * @param primes      the number of primes.
+     * @param computation the computation.
+     * @param handler     the handler of the terms.
+     * @throws IOException if an error occurs while reading or writing a file.
+     */
+    public static void reconstruct(final int primes, final Computation computation, final TermHandler handler)
+            throws IOException {
+        reconstruct(primes(primes), computation, handler);
+    }
+
+    /**
+     * Runs a computation modulo every ring and passes the reconstructed terms
+     * to a handler, in the monomial order of the results.
+     *
+     * @param rings       the modular rings, of distinct primes.
+     * @param computation the computation.
+     * @param handler     the handler of the terms.
+     * @throws IOException              if an error occurs while reading or
+     *                                  writing a file.
+     * @throws IllegalArgumentException if there are no rings, a ring is not
+     *                                  modular or a result has another ring
+     *                                  or order.
+     */
+    public static void reconstruct(final List<CoefficientRing> rings, final Computation computation,
+            final TermHandler handler) throws IOException {
+        if (rings.isEmpty()) {
+            throw new IllegalArgumentException("At least one prime is needed");
+        }
+        final List<Polynomial> results = new ArrayList<>(rings.size());
+        try {
+            for (final CoefficientRing ring : rings) {
+                if (ring.modulus() == 0) {
+                    throw new IllegalArgumentException("Not a modular ring: " + ring);
+                }
+                final Polynomial result = computation.compute(ring);
+                results.add(result);
+                if (!ring.equals(result.getRing()) || result.getOrder() != results.get(0).getOrder()) {
+                    throw new IllegalArgumentException("The computation returned " + result.getRing() + " "
+                            + result.getOrder() + " coefficients for " + ring);
+                }
+                PolynomialUtils.simplify(result);
+                log.debug("Computed modulo {}", ring.modulus());
+            }
+            merge(results, new Remainders(rings), handler);
+        } finally {
+            for (final Polynomial result : results) {
+                result.discard();
+            }
+        }
+    }
+
+    /**
+     * Runs a computation modulo the given number of primes and writes the
+     * reconstructed terms to a text file, one “key=coefficient” line per term.
+     *
+     * @param primes      the number of primes.
+     * @param computation the computation.
+     * @param path        the path of the text file.
+     * @throws IOException if an error occurs while reading or writing a file.
+     */
+    public static void exportText(final int primes, final Computation computation, final Path path)
+            throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            reconstruct(primes, computation, (monomial, coefficient) -> {
+                writer.write(monomial + "=" + coefficient);
+                writer.newLine();
+            });
+        }
+    }
+
+    /**
+     * Merges the simplified results, sorted by the same order; a term missing
+     * from a result has the residue zero there.
+     */
+    private static void merge(final List<Polynomial> results, final Remainders remainders,
+            final TermHandler handler) throws IOException {
+        final MonomialOrder order = results.get(0).getOrder();
+        final PriorityQueue<Cursor> queue = new PriorityQueue<>(results.size(),
+                (cursor1, cursor2) -> order.compare(cursor1.reader.monomial(), cursor2.reader.monomial()));
+        try {
+            for (int i = 0; i < results.size(); i++) {
+                final TermReader reader = new TermReader(results.get(i).termFile());
+                if (reader.next()) {
+                    queue.add(new Cursor(i, reader));
+                } else {
+                    reader.close();
+                }
+            }
+            final long[] residues = new long[results.size()];
+            while (!queue.isEmpty()) {
+                final Monomial monomial = queue.peek().reader.monomial();
+                Arrays.fill(residues, 0);
+                while (!queue.isEmpty() && order.compare(queue.peek().reader.monomial(), monomial) == 0) {
+                    final Cursor cursor = queue.poll();
+                    residues[cursor.index] = cursor.reader.coefficient();
+                    if (cursor.reader.next()) {
+                        queue.add(cursor);
+                    } else {
+                        cursor.reader.close();
+                    }
+                }
+                final BigInteger coefficient = remainders.combine(residues);
+                if (coefficient.signum() != 0) {
+                    handler.accept(monomial, coefficient);
+                }
+            }
+        } finally {
+            for (final Cursor cursor : queue) {
+                cursor.reader.close();
+            }
+        }
+    }
+
+    /** Reader of the result of one prime. */
+    private record Cursor(int index, TermReader reader) {
+    }
+
+    /**
+     * Chinese remainder theorem for a fixed set of primes.
+     */
+    private static final class Remainders {
+        /** Product of the primes. */
+        private final BigInteger modulus;
+        /** Half of the product, the bound of the symmetric range. */
+        private final BigInteger half;
+        /** Basis element of every prime: 1 modulo that prime, 0 modulo the others. */
+        private final BigInteger[] basis;
+
+        private Remainders(final List<CoefficientRing> rings) {
+            BigInteger product = BigInteger.ONE;
+            for (final CoefficientRing ring : rings) {
+                product = product.multiply(BigInteger.valueOf(ring.modulus()));
+            }
+            modulus = product;
+            half = product.shiftRight(1);
+            basis = new BigInteger[rings.size()];
+            for (int i = 0; i < basis.length; i++) {
+                final BigInteger prime = BigInteger.valueOf(rings.get(i).modulus());
+                final BigInteger cofactor = product.divide(prime);
+                basis[i] = cofactor.multiply(cofactor.modInverse(prime));
+            }
+        }
+
+        private BigInteger combine(final long... residues) {
+            BigInteger value = BigInteger.ZERO;
+            for (int i = 0; i < residues.length; i++) {
+                if (residues[i] != 0) {
+                    value = value.add(basis[i].multiply(BigInteger.valueOf(residues[i])));
+                }
+            }
+            value = value.mod(modulus);
+            return value.compareTo(half) > 0 ? value.subtract(modulus) : value;
+        }
+    }
+
+}
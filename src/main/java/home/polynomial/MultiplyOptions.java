@@ -0,0 +1,194 @@
+package home.polynomial;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Options of {@link Polynomial#multiply(Polynomial, MultiplyOptions)}. The
+ * defaults reproduce the original behaviour: every pairwise product is
+ * written to the result as its own term.
+ */
+@Value
+@Builder(toBuilder = true)
+public class MultiplyOptions {
+    /** Options used by {@link Polynomial#multiply(Polynomial)}. */
+    public static final MultiplyOptions DEFAULT = MultiplyOptions.builder().build();
+
+    /**
+     * Combine like terms while multiplying, so only merged terms are written to
+     * the result.
+     */
+    @Builder.Default
+    boolean accumulate = false;
+
+    /**
+     * Maximum number of distinct terms kept in memory by the accumulator. When
+     * it is reached the merged terms are written to the result and the
+     * accumulator starts over.
+     */
+    @Builder.Default
+    int accumulatorTerms = 1_000_000;
+
+    /**
+     * Keep the terms of the accumulators outside the heap, in direct buffers,
+     * so large accumulations do not add to the work of the garbage collector.
+     * It also applies to the final simplification of a spilled product.
+     */
+    @Builder.Default
+    boolean offHeapAccumulator = false;
+
+    /**
+     * Number of worker threads. Above one the outer operand is split in blocks
+     * of {@link #blockTerms} terms that are multiplied concurrently, each into
+     * its own accumulator, so like terms are always combined.
+     */
+    @Builder.Default
+    int parallelism = 1;
+
+    /**
+     * Maximum number of terms of an operand kept parsed in memory. An operand
+     * that does not fit is multiplied in chunks of this size, re-reading the
+     * other operand once per chunk.
+     */
+    @Builder.Default
+    int residentTerms = 1_000_000;
+
+    /**
+     * Maximum length of the dense univariate form of the product. When like
+     * terms are combined and the Kronecker substitution of the product fits
+     * in this length, the product runs through {@link DenseMultiplier} if that
+     * is cheaper than the pairwise loop. Zero disables the dense path.
+     */
+    @Builder.Default
+    int denseLength = 1 << 22;
+
+    /**
+     * Write the result terms sorted by total degree, with like terms already
+     * combined, through a {@link HeapMultiplier}. The terms are then printed
+     * or saved in degree order without sorting the result again.
+     */
+    @Builder.Default
+    boolean sorted = false;
+
+    /**
+     * Maximum total degree of the result terms. Pairs above it are skipped
+     * before they are multiplied, and so are whole blocks of the resident
+     * operand, which is sorted by degree.
+     */
+    @Builder.Default
+    int maxDegree = Integer.MAX_VALUE;
+
+    /**
+     * Maximum exponent of the result terms for some variables (example: the
+     * cassette limit of a denomination). Pairs above a cap are skipped. Set
+     * with {@link MultiplyOptionsBuilder#maxExponent(String, int)}, none by
+     * default.
+     */
+    Map<String, Integer> maxExponents;
+
+    /**
+     * Size in bytes of the write buffer of the result. Terms are batched in it
+     * and written to the result file with one call per full buffer.
+     */
+    @Builder.Default
+    int writeBufferBytes = TermWriter.DEFAULT_BUFFER_BYTES;
+
+    /**
+     * Allocate the write buffer of the result outside the heap, which saves a
+     * copy per write.
+     */
+    @Builder.Default
+    boolean directBuffer = false;
+
+    /**
+     * Limit of the write bandwidth of the result and of the spill files,
+     * shared with the other products that use the same throttle. {@code null}
+     * writes at full speed.
+     */
+    @Builder.Default
+    IoThrottle ioThrottle = null;
+
+    /**
+     * Maximum number of bytes written to the scratch files of the product, its
+     * result and spills, on top of the global quota of the
+     * {@link ScratchSpace}.
+     */
+    @Builder.Default
+    long scratchBytes = Long.MAX_VALUE;
+
+    /**
+     * Whether the result and the spill files are compressed: delta-encoded
+     * exponents, a coefficient dictionary and a block compressor, which trade
+     * some CPU for several times fewer bytes written and read back.
+     */
+    @Builder.Default
+    boolean compressed = false;
+
+    /**
+     * Outer operand terms per block of the accumulating multiply. The blocks
+     * do not depend on {@link #parallelism}, so the result is the same for any
+     * number of workers.
+     */
+    @Builder.Default
+    int blockTerms = 64;
+
+    /**
+     * Indicates whether like terms are combined while multiplying.
+     *
+     * @return {@code true} when accumulating or running in parallel.
+     */
+    /* default */ boolean combinesTerms() {
+        return accumulate || parallelism > 1;
+    }
+
+    /**
+     * Builder of the options. The caps of the exponents are written by hand
+     * instead of with a {@code @Singular} map, whose generated build method
+     * has a cast that {@code -Xlint:cast} reports as redundant.
+     */
+    public static class MultiplyOptionsBuilder {
+        /** Caps of the exponents, by variable name. */
+        private Map<String, Integer> maxExponents = Map.of();
+
+        /**
+         * Caps the exponent of a variable in the result terms.
+         *
+         * @param variable the name of the variable.
+         * @param cap      the maximum exponent.
+         * @return this builder.
+         */
+        public MultiplyOptionsBuilder maxExponent(final String variable, final int cap) {
+            final Map<String, Integer> caps = new LinkedHashMap<>(maxExponents);
+            caps.put(variable, cap);
+            maxExponents = Collections.unmodifiableMap(caps);
+            return this;
+        }
+
+        /**
+         * Caps the exponents of some variables in the result terms, keeping
+         * the other caps.
+         *
+         * @param caps the maximum exponents, by variable name.
+         * @return this builder.
+         */
+        public MultiplyOptionsBuilder maxExponents(final Map<String, Integer> caps) {
+            caps.forEach(this::maxExponent);
+            return this;
+        }
+
+        /**
+         * Removes the caps of the exponents.
+         *
+         * @return this builder.
+         */
+        public MultiplyOptionsBuilder clearMaxExponents() {
+            maxExponents = Map.of();
+            return this;
+        }
+    }
+
+}
@@ -1,17 +1,15 @@
 package home.polynomial;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.lang.ref.Cleaner;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
-import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Comparator;
+import java.util.List;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -30,38 +28,122 @@ import lombok.extern.slf4j.Slf4j;
 // @formatter:on
 //*/
 @Slf4j
-public class Polynomial {
-    /** Exponent separator in the term key. */
-    private static final String CARET = "\\^";
-    /** Separator for the factors of a term. */
-    private static final String FACTOR_SEP = "\\*";
-    /** Flag to delete temporary files after multiply execution. */
-    private static final boolean DELETE_ON_EXIT = true;
-
-    /** Log time interval in milliseconds. */
+public class Polynomial implements AutoCloseable {
+    /** Releases the files of the polynomials that are no longer reachable. */
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    /** Interval of the progress log lines of the products, in milliseconds. */
     private final long timeLog;
+    /** Canonical order of the terms of the polynomial. */
+    private final MonomialOrder order;
+    /** Ring of the coefficients of the polynomial. */
+    private final CoefficientRing ring;
+    /** Lease of the temporary file. */
+    /* default */ final ScratchSpace.Lease lease;
     /** Temporary file to store the polynomial terms. */
     /* default */ final File tempFile;
+    /** Release of the temporary file when the polynomial is unreachable. */
+    private final Cleaner.Cleanable cleanable;
+    /** Whether the terms of the file are combined and sorted by degree. */
+    /* default */ boolean sortedByDegree;
+    /**
+     * Digest of the canonical terms, computed by {@link ResultCache};
+     * {@code null} until then and whenever a term is added.
+     */
+    /* default */ String digest;
+    /** Buffered sink of the added terms. */
+    private final TermSink sink;
 
     /**
-     * Constructor to create a polynomial with a specified time log and a temporary
-     * file to store the polynomial terms.
+     * Constructor to create a polynomial with a specified time log, a monomial
+     * order, a coefficient ring and a temporary file leased from a scratch
+     * space to store the polynomial terms.
      *
+     * @param timeLog the log time interval in milliseconds.
+     * @param order   the canonical order of the terms.
+     * @param ring    the ring of the coefficients.
+     * @param quota   the quota charged with the terms, which gives the
+     *                scratch space.
      * @throws IOException if an error occurs while creating the temporary file.
      */
-    /* default */ Polynomial(final long timeLog) throws IOException {
-        tempFile = File.createTempFile("polynomial", ".tmp");
+    /* default */ Polynomial(final long timeLog, final MonomialOrder order, final CoefficientRing ring,
+            final ScratchSpace.Quota quota) throws IOException {
+        final ScratchSpace.Lease leased = quota.space().lease("polynomial", quota);
+        lease = leased;
+        tempFile = leased.file();
+        // The file of an unreachable polynomial may still be mapped by a reader, so it is not recycled
+        cleanable = CLEANER.register(this, () -> leased.release(false));
+        sink = new TermSink(leased, ring);
         this.timeLog = timeLog;
+        this.order = order;
+        this.ring = ring;
         if (log.isDebugEnabled()) {
             log.debug("Time Interval for Log: {}", timeLog);
         }
         if (log.isTraceEnabled()) {
             log.trace("Temporary file created: {}", tempFile.getAbsolutePath());
         }
-        if (DELETE_ON_EXIT) {
-            log.debug("The temporary file will be deleted at the end of the program.");
-            this.tempFile.deleteOnExit();
-        }
+    }
+
+    /**
+     * Constructor to create a polynomial with a specified time log, a monomial
+     * order, a coefficient ring and a temporary file to store the polynomial
+     * terms, in the {@link ScratchSpace#getDefault() default scratch space}.
+     *
+     * @param timeLog the log time interval in milliseconds.
+     * @param order   the canonical order of the terms.
+     * @param ring    the ring of the coefficients.
+     * @throws IOException if an error occurs while creating the temporary file.
+     */
+    /* default */ Polynomial(final long timeLog, final MonomialOrder order, final CoefficientRing ring)
+            throws IOException {
+        this(timeLog, order, ring, ScratchSpace.getDefault().quota());
+    }
+
+    /**
+     * Constructor to create a polynomial with a specified time log, a monomial
+     * order and a temporary file to store the polynomial terms.
+     *
+     * @param timeLog the log time interval in milliseconds.
+     * @param order   the canonical order of the terms.
+     * @throws IOException if an error occurs while creating the temporary file.
+     */
+    /* default */ Polynomial(final long timeLog, final MonomialOrder order) throws IOException {
+        this(timeLog, order, CoefficientRing.DOUBLE);
+    }
+
+    /**
+     * Constructor to create a polynomial with a specified time log and a temporary
+     * file to store the polynomial terms.
+     *
+     * @throws IOException if an error occurs while creating the temporary file.
+     */
+    /* default */ Polynomial(final long timeLog) throws IOException {
+        this(timeLog, MonomialOrder.DEFAULT);
+    }
+
+    /**
+     * Constructor to create a polynomial with a default time log, the given
+     * monomial order and a temporary file to store the polynomial terms.
+     *
+     * @param order the canonical order of the terms.
+     * @throws IOException if an error occurs while creating the temporary file.
+     */
+    /* default */ Polynomial(final MonomialOrder order) throws IOException {
+        this(order, CoefficientRing.DOUBLE);
+    }
+
+    /**
+     * Constructor to create a polynomial with a default time log, the given
+     * monomial order and coefficient ring and a temporary file to store the
+     * polynomial terms.
+     *
+     * @param order the canonical order of the terms.
+     * @param ring  the ring of the coefficients.
+     * @throws IOException if an error occurs while creating the temporary file.
+     */
+    /* default */ Polynomial(final MonomialOrder order, final CoefficientRing ring) throws IOException {
+        this(Duration.of(10, ChronoUnit.MINUTES).toMillis(), order, ring);
     }
 
     /**
@@ -71,30 +153,123 @@ public class Polynomial {
      * @throws IOException if an error occurs while creating the temporary file.
      */
     /* default */ Polynomial() throws IOException {
-        timeLog = Duration.of(10, ChronoUnit.MINUTES).toMillis();
-        tempFile = File.createTempFile("polynomial", ".tmp");
-        if (log.isTraceEnabled()) {
-            log.trace("Temporary file created: {}", tempFile.getAbsolutePath());
-        }
-        if (DELETE_ON_EXIT) {
-            log.debug("The temporary file will be deleted at the end of the program.");
-            this.tempFile.deleteOnExit();
-        }
+        this(MonomialOrder.DEFAULT);
     }
 
     /**
-     * Adds a term to the polynomial.
+     * Returns the canonical order of the terms of the polynomial.
+     *
+     * @return the monomial order.
+     */
+    public MonomialOrder getOrder() {
+        return order;
+    }
+
+    /**
+     * Returns the ring of the coefficients of the polynomial.
+     *
+     * @return the coefficient ring.
+     */
+    public CoefficientRing getRing() {
+        return ring;
+    }
+
+    /**
+     * Adds a term to the polynomial. The key is normalized to its canonical
+     * form, so “y^3*x^2” and “x^2*y^3” are the same term.
      *
      * @param key         the key of the term (example: “x^2*y^3”).
      * @param coefficient the coefficient of the term (example: 3.0).
      * @throws IOException if an error occurs while writing to the temporary file.
      */
     /* default */ void addTerm(final String key, final double coefficient) throws IOException {
-        try (BufferedWriter writer = new BufferedWriter(Files.newBufferedWriter(Paths.get(tempFile.getAbsolutePath()),
-                java.nio.file.StandardOpenOption.APPEND))) {
-            writer.write(key + "=" + coefficient);
-            writer.newLine();
+        addTerm(Monomial.parse(key), coefficient);
+    }
+
+    /**
+     * Adds a term to the polynomial.
+     *
+     * @param monomial    the monomial of the term.
+     * @param coefficient the coefficient of the term (example: 3.0).
+     * @throws IOException         if an error occurs while writing to the
+     *                             temporary file.
+     * @throws ArithmeticException if an exact ring cannot represent the
+     *                             coefficient.
+     */
+    /* default */ void addTerm(final Monomial monomial, final double coefficient) throws IOException {
+        append(monomial, ring.fromDouble(coefficient));
+    }
+
+    /**
+     * Adds a term whose coefficient is already an element of the ring.
+     *
+     * @param monomial the monomial of the term.
+     * @param element  the coefficient of the term in the ring.
+     * @throws IOException if an error occurs while writing to the temporary file.
+     */
+    /* default */ void append(final Monomial monomial, final long element) throws IOException {
+        sortedByDegree = false;
+        digest = null;
+        sink.accept(monomial, element);
+    }
+
+    /**
+     * Returns the buffered sink of the terms of the polynomial, which is then
+     * considered modified. The terms written to it are readable after
+     * {@link #flush()}.
+     *
+     * @return the sink.
+     */
+    /* default */ TermSink sink() {
+        digest = null;
+        return sink;
+    }
+
+    /**
+     * Writes the pending terms to the temporary file and releases it. The next
+     * term added opens it again.
+     *
+     * @throws IOException if an error occurs while writing the temporary file.
+     */
+    public void flush() throws IOException {
+        sink.close();
+    }
+
+    /**
+     * Returns the temporary file of a polynomial that is no longer needed,
+     * such as an intermediate product, to its scratch space.
+     */
+    /* default */ void discard() {
+        try {
+            sink.close();
+        } catch (final IOException e) {
+            if (log.isWarnEnabled()) {
+                log.warn("Could not close temporary file {}: {}", tempFile, e.getMessage());
+            }
         }
+        lease.release(true);
+        cleanable.clean();
+    }
+
+    /**
+     * Releases the temporary file of the polynomial, which must not be used
+     * afterwards. A polynomial that is never closed releases its file when it
+     * is no longer reachable, or when the JVM exits.
+     */
+    @Override
+    public void close() {
+        discard();
+    }
+
+    /**
+     * Returns the temporary file with every added term written to it.
+     *
+     * @return the term file.
+     * @throws IOException if an error occurs while writing the pending terms.
+     */
+    /* default */ File termFile() throws IOException {
+        flush();
+        return tempFile;
     }
 
     /**
@@ -106,62 +281,186 @@ public class Polynomial {
      *                     temporary
      */
     public Polynomial multiply(final Polynomial other) throws IOException {
-        final Polynomial result = new Polynomial(timeLog);
-        final Timer timer = new Timer();
-
-        // Schedule a task to log the size of the temporary file at regular time
-        // intervals.
-        timer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                PolynomialUtils.logFileSize(result.tempFile);
-            }
-        }, 0, timeLog);
+        return multiply(other, MultiplyOptions.DEFAULT);
+    }
 
-        BufferedReader reader2 = Files.newBufferedReader(Paths.get(other.tempFile.getAbsolutePath()));
-        try (BufferedReader reader1 = Files.newBufferedReader(Paths.get(this.tempFile.getAbsolutePath()))) {
-            reader2 = multiply(other, result, reader2, reader1);
+    /**
+     * Multiplies this polynomial with another polynomial and returns the result.
+     * When {@link MultiplyOptions#isAccumulate()} is set, like terms are
+     * combined in memory while multiplying and only the merged terms are
+     * written, so the size of the result follows the number of distinct
+     * monomials instead of the number of pairs. With a
+     * {@link MultiplyOptions#getParallelism()} above one the outer terms are
+     * split across worker threads, see {@link BlockMultiplier}. Products that
+     * are dense enough go through a {@link KroneckerSubstitution} instead,
+     * when the coefficients are {@link CoefficientRing#DOUBLE} integers. A
+     * {@link MultiplyOptions#getMaxDegree()} or
+     * {@link MultiplyOptions#getMaxExponents()} bound truncates the product:
+     * only the terms inside the bounds are computed. With
+     * {@link MultiplyOptions#isSorted()} the terms are written combined and
+     * sorted by degree. Both polynomials must have the same
+     * {@link #getRing() coefficient ring}.
+     * <p>
+     * While the product runs, its progress is tracked by the
+     * {@link ProgressRegistry}: it is logged once per time log interval of
+     * this polynomial and published as a {@link ProductProgressMXBean}.
+     *
+     * @param other   the other polynomial to multiply with.
+     * @param options the multiplication options.
+     * @return the resulting polynomial after multiplication.
+     * @throws IOException if an error occurs while reading or writing to the
+     *                     temporary
+     */
+    public Polynomial multiply(final Polynomial other, final MultiplyOptions options) throws IOException {
+        if (!ring.equals(other.ring)) {
+            throw new IllegalArgumentException("Cannot multiply " + ring + " by " + other.ring + " coefficients");
+        }
+        final Polynomial result = new Polynomial(timeLog, order, ring,
+                ScratchSpace.getDefault().quota(options.getScratchBytes()));
+        final ProgressRegistry registry = ProgressRegistry.getDefault();
+        ProductProgress progress = null;
+        try {
+            result.sink.configure(options);
+            progress = registry.start(this, other, result, timeLog);
+            result.sink.track(progress);
+            final DegreeWindow window = DegreeWindow.of(options);
+            if (options.isSorted()) {
+                HeapMultiplier.multiply(this, other, degreeOrder(), window, options.getResidentTerms(),
+                        result.sink, result.lease.quota(), progress);
+                result.sortedByDegree = true;
+            } else if (options.combinesTerms()) {
+                // The dense path always computes the whole product
+                if (!window.isUnbounded() || ring != CoefficientRing.DOUBLE
+                        || !KroneckerSubstitution.multiply(this, other, result, options.getDenseLength())) {
+                    new BlockMultiplier(this, other, result, options).run();
+                }
+            } else {
+                multiply(other, result, options.getResidentTerms(), window, progress);
+            }
+            result.flush();
+        } catch (IOException | RuntimeException e) {
+            // A cancelled or failed product leaves no partial file behind
+            result.discard();
+            throw e;
         } finally {
-            reader2.close();
-            if (log.isDebugEnabled()) {
-                log.debug("Tamaño final del archivo temporal: {} bytes", result.tempFile.length());
+            result.sink.track(null);
+            if (progress != null) {
+                registry.finish(progress);
             }
         }
-        timer.cancel();
+        if (log.isDebugEnabled()) {
+            log.debug("Tamaño final del archivo temporal: {} bytes", result.tempFile.length());
+        }
         return result;
     }
 
-    private BufferedReader multiply(final Polynomial other, final Polynomial result, BufferedReader reader2,
-            final BufferedReader reader1) throws IOException {
-        String line1;
-        while ((line1 = reader1.readLine()) != null) {
-            if (log.isTraceEnabled()) {
-                log.trace("line1: {}", line1);
-            }
-            final String[] term1 = line1.split("=");
-            final String key1 = term1[0];
-            final double coefficient1 = Double.parseDouble(term1[1]);
-
-            String line2;
-            while ((line2 = reader2.readLine()) != null) {
-                if (log.isTraceEnabled()) {
-                    log.trace("line2: {}", line2);
-                }
-                final String[] term2 = line2.split("=");
-                final String key2 = term2[0];
-                final double coefficient2 = Double.parseDouble(term2[1]);
+    /**
+     * Raises this polynomial to a power, see
+     * {@link #pow(int, MultiplyOptions)}.
+     *
+     * @param power the power, not negative.
+     * @return the power of the polynomial.
+     * @throws IOException if an error occurs while reading or writing a
+     *                     temporary file.
+     */
+    public Polynomial pow(final int power) throws IOException {
+        return pow(power, MultiplyOptions.DEFAULT);
+    }
 
-                final String newKey = combineKeys(key1, key2);
-                final double newCoefficient = coefficient1 * coefficient2;
-                result.addTerm(newKey, newCoefficient);
-            }
+    /**
+     * Raises this polynomial to a power by repeated squaring, with like terms
+     * combined. Single terms, binomials and the geometric step polynomials of
+     * {@link PolynomialBuilder} are expanded directly, see
+     * {@link Exponentiation}.
+     *
+     * @param power   the power, not negative.
+     * @param options the options of the products; like terms are combined
+     *                even if they do not ask for it.
+     * @return the power of the polynomial.
+     * @throws IOException if an error occurs while reading or writing a
+     *                     temporary file.
+     */
+    public Polynomial pow(final int power, final MultiplyOptions options) throws IOException {
+        return Exponentiation.pow(this, power, options);
+    }
 
-            // Reset reader2 for the next term in reader1
-            reader2.close();
-            reader2 = Files.newBufferedReader(Paths.get(other.tempFile.getAbsolutePath())); // NOPMD
-                                                                                            // AvoidReassigningParameters
+    /**
+     * Evaluates this polynomial at many points (example: variables
+     * {@code ["x", "y"]} and points {@code [[1, 2], [0.5, 3]]}). The
+     * coefficients are evaluated as doubles, see
+     * {@link CoefficientRing#toDouble(long)}.
+     *
+     * @param variables the names of the variables, in the order of the
+     *                  coordinates of every point.
+     * @param points    the points, one array of coordinates each.
+     * @return the value at every point.
+     * @throws IOException              if an error occurs while reading the
+     *                                  temporary file.
+     * @throws IllegalArgumentException if a variable of the polynomial is
+     *                                  missing or a point has another number
+     *                                  of coordinates.
+     */
+    public double[] evaluate(final List<String> variables, final double[][] points) throws IOException {
+        return evaluate(variables, points, 1);
+    }
+
+    /**
+     * Evaluates this polynomial at many points, splitting them in chunks that
+     * are evaluated concurrently, see {@link Evaluator}.
+     *
+     * @param variables   the names of the variables, in the order of the
+     *                    coordinates of every point.
+     * @param points      the points, one array of coordinates each.
+     * @param parallelism the maximum number of threads.
+     * @return the value at every point.
+     * @throws IOException              if an error occurs while reading the
+     *                                  temporary file.
+     * @throws IllegalArgumentException if a variable of the polynomial is
+     *                                  missing or a point has another number
+     *                                  of coordinates.
+     */
+    public double[] evaluate(final List<String> variables, final double[][] points, final int parallelism)
+            throws IOException {
+        return new Evaluator(variables, points, parallelism).evaluate(this);
+    }
+
+    /**
+     * Multiplies term by term with a block nested loop: one operand is kept
+     * parsed in memory and the other one is streamed past it. With a bounded
+     * window the chunks are sorted by degree, so the inner loop stops at the
+     * first resident term whose product would exceed the degree bound.
+     */
+    private void multiply(final Polynomial other, final Polynomial result, final int residentTerms,
+            final DegreeWindow window, final ProductProgress progress) throws IOException {
+        try (ResidentOperand resident = ResidentOperand.choose(this, other, residentTerms, window)) {
+            do {
+                final TermBlock chunk = resident.chunk();
+                try (TermReader reader = new TermReader(resident.streamed().termFile())) {
+                    while (reader.next()) {
+                        Cancellation.check();
+                        progress.advance(1, chunk.size());
+                        final Monomial monomial1 = reader.monomial();
+                        final long coefficient1 = reader.coefficient();
+                        if (log.isTraceEnabled()) {
+                            log.trace("term1: {}={}", monomial1, ring.format(coefficient1));
+                        }
+                        if (!window.admits(monomial1)) {
+                            continue;
+                        }
+                        final int end = window.isUnbounded() ? chunk.size()
+                                : chunk.upperBound(window.maxDegree() - monomial1.degree());
+                        for (int i = 0; i < end; i++) {
+                            final Monomial newKey = monomial1.multiply(chunk.monomial(i));
+                            if (window.hasCaps() && !window.admits(newKey)) {
+                                continue;
+                            }
+                            final long newCoefficient = ring.multiply(coefficient1, chunk.coefficient(i));
+                            result.append(newKey, newCoefficient);
+                        }
+                    }
+                }
+            } while (resident.nextChunk());
         }
-        return reader2;
     }
 
     /**
@@ -171,52 +470,8 @@ public class Polynomial {
      * @param key2 second key.
      * @return the combined key.
      */
-    // @SuppressWarnings({"PMD.CognitiveComplexity"})
     /* default */ String combineKeys(final String key1, final String key2) {
-        final Map<String, Integer> exponents = new ConcurrentHashMap<>();
-
-        if (!key1.isEmpty()) {
-            for (final String part : key1.split(FACTOR_SEP)) {
-                final String[] split = part.split(CARET);
-                if (split.length == 1) {
-                    exponents.put(split[0], exponents.getOrDefault(split[0], 0) + 1);
-                } else {
-                    exponents.put(split[0], exponents.getOrDefault(split[0], 0) + Integer.parseInt(split[1]));
-                }
-            }
-        }
-
-        if (!key2.isEmpty()) {
-            for (final String part : key2.split(FACTOR_SEP)) {
-                final String[] split = part.split(CARET);
-                if (split.length == 1) {
-                    exponents.put(split[0], exponents.getOrDefault(split[0], 0) + 1);
-                } else {
-                    exponents.put(split[0], exponents.getOrDefault(split[0], 0) + Integer.parseInt(split[1]));
-                }
-            }
-        }
-
-        if (exponents.isEmpty()) {
-            return ""; // Independent term
-        }
-
-        return combineKeys(exponents);
-    }
-
-    private String combineKeys(final Map<String, Integer> exponents) {
-        final StringBuilder result = new StringBuilder();
-        for (final Map.Entry<String, Integer> entry : exponents.entrySet()) {
-            if (!result.isEmpty()) {
-                result.append('*');
-            }
-            result.append(entry.getKey());
-            if (entry.getValue() > 1) {
-                result.append('^').append(entry.getValue());
-            }
-        }
-
-        return result.toString();
+        return Monomial.parse(key1).multiply(Monomial.parse(key2)).toString();
     }
 
     /**
@@ -225,13 +480,8 @@ public class Polynomial {
      * @throws IOException if an error occurs while reading the temporary file.
      */
     public void printOrderedByDegree() throws IOException {
-        final Map<String, Double> terms = getTerms();
         // Sort the terms by total degree
-        terms.entrySet().stream().sorted((entry1, entry2) -> {
-            final int degree1 = getDegree(entry1.getKey());
-            final int degree2 = getDegree(entry2.getKey());
-            return Integer.compare(degree1, degree2);
-        }).forEach(entry -> log.debug(entry.getKey() + " = " + entry.getValue()));
+        forEachByDegree((monomial, coefficient) -> log.debug(monomial + " = " + ring.format(coefficient)));
     }
 
     /**
@@ -241,59 +491,38 @@ public class Polynomial {
      * @throws IOException if an error occurs while reading or writing to the file.
      */
     public void saveOrderedByDegree(final String filePath) throws IOException {
-        final Map<String, Double> terms = getTerms();
         try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(filePath))) {
             // Ordenar los términos por grado total
-            terms.entrySet().stream().sorted((entry1, entry2) -> {
-                final int degree1 = getDegree(entry1.getKey());
-                final int degree2 = getDegree(entry2.getKey());
-                return Integer.compare(degree1, degree2);
-            }).forEach(entry -> {
-                try {
-                    writer.write(entry.getKey() + "=" + entry.getValue());
-                    writer.newLine();
-                } catch (final IOException e) {
-                    if (log.isErrorEnabled()) {
-                        log.error("Error al guardar el polinomio ordenado por grado: {}", e.getMessage());
-                    }
-                }
-            });
+            forEachByDegree(TermFormat.textWriter(writer, ring));
         }
     }
 
-    private Map<String, Double> getTerms() throws IOException {
-        final Map<String, Double> terms = new ConcurrentHashMap<>();
-
-        // Leer los términos del archivo temporal
-        try (BufferedReader reader = Files.newBufferedReader(Paths.get(tempFile.getAbsolutePath()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                final String[] term = line.split("=");
-                final String key = term[0];
-                final double coefficient = Double.parseDouble(term[1]);
-                terms.put(key, coefficient);
+    /**
+     * Passes the terms to a consumer ordered by total degree, with like terms
+     * combined. A polynomial already sorted by degree, such as a sorted
+     * product, is streamed as is; otherwise the terms go through an external
+     * sorter, so memory stays bounded however large the polynomial is.
+     */
+    private void forEachByDegree(final TermConsumer consumer) throws IOException {
+        if (sortedByDegree) {
+            try (TermReader reader = new TermReader(termFile())) {
+                while (reader.next()) {
+                    consumer.accept(reader.monomial(), reader.coefficient());
+                }
             }
+        } else {
+            new TermSorter(degreeOrder(), TermSorter.DEFAULT_RUN_TERMS, lease.quota()).sort(termFile(), consumer);
         }
-        return terms;
     }
 
     /**
-     * Get the total degree of a term based on its key.
+     * Returns the order by total degree, with ties broken by the monomial
+     * order of the polynomial.
      *
-     * @param key the key of the term (example: “x^2*y^3”).
-     * @return the total degree of the term.
+     * @return the graded order.
      */
-    private int getDegree(final String key) {
-        int degree = 0;
-        for (final String part : key.split(FACTOR_SEP)) {
-            final String[] split = part.split(CARET);
-            if (split.length == 1) {
-                degree += 1; // Grado 1
-            } else {
-                degree += Integer.parseInt(split[1]);
-            }
-        }
-        return degree;
+    /* default */ Comparator<Monomial> degreeOrder() {
+        return Comparator.comparingInt(Monomial::degree).thenComparing(order);
     }
 
     /**
@@ -304,13 +533,12 @@ public class Polynomial {
     @Override
     public String toString() {
         final StringBuilder result = new StringBuilder();
-        try (BufferedReader reader = Files.newBufferedReader(Paths.get(tempFile.getAbsolutePath()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                final String[] term = line.split("=");
-                final String key = term[0];
-                final double coefficient = Double.parseDouble(term[1]);
-                if (coefficient != 0) { // Ignorar términos con coeficiente 0
+        try (TermReader reader = new TermReader(termFile())) {
+            while (reader.next()) {
+                final String key = reader.monomial().toString();
+                final long element = reader.coefficient();
+                if (!ring.isZero(element)) { // Ignorar términos con coeficiente 0
+                    final String coefficient = ring.format(element);
                     if (result.length() > 0) {
                         result.append(" + ");
                     }
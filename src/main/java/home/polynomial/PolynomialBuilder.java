@@ -1,9 +1,7 @@
 package home.polynomial;
 
-import static org.apache.commons.lang3.ArrayUtils.setAll;
-import static org.apache.commons.lang3.ArrayUtils.toPrimitive;
+import java.io.IOException;
 
-import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
 
 import lombok.extern.slf4j.Slf4j;
@@ -23,74 +21,71 @@ public final class PolynomialBuilder {
      * For example:<br/>
      * build(3, 50,  "x") gives as response 1 + x^50 + x^100 + x^150<br/>
      * build(4, 100, "y") gives as response 1 + y^100 + y^200 + y^300 + y^400<br/>
+     * Any step and degree of a dense array are accepted: build(3, 0, "x") gives 1.<br/>
      * @param n The size of the polynomial coefficients array.
      * @param k The step of the polynomial.
      * @param variableName The name of the variable.
      * @return The polynomial function.
      */
     public static PolynomialFunction build(final int n, final int k, final String variableName) {
-        final double[] coefficients = start(n, k);
-        final int degree = n * k;
-        final PolynomialFunction polynomial = new PolynomialFunction(toPrimitive(getCoefficients(degree, coefficients)));
-        final String logFormatter = "Polynomial from ({}, {}):\n{}";
-        final String polynomialString = polynomial.toString().replace("x", variableName);
-        log.info(logFormatter, n, k, polynomialString);
+        final PolynomialFunction polynomial = new PolynomialFunction(coefficients(n, k));
+        if (log.isInfoEnabled()) {
+            final String logFormatter = "Polynomial from ({}, {}):\n{}";
+            final String polynomialString = polynomial.toString().replace("x", variableName);
+            log.info(logFormatter, n, k, polynomialString);
+        }
         return polynomial;
     }
 
     /**
-     * Get the coefficients of the polynomial.<br/>
+     * Build the symbolic step polynomial, without expanding it.<br/>
      * For example:<br/>
-     * getCoefficients(6, {0,2,4,6}) gives as response {1,0,1,0,1,0,1}<br/>
-     * getCoefficients(12, {0,3,6,9,12}) gives as response {1,0,0,1,0,0,1,0,0,1,0,0,1}<br/>
-     * @param degree The degree of the polynomial.
-     *               The degree of the polynomial is the maximum exponent of the polynomial.
-     *               For example, the degree of the polynomial 1 + x^50 + x^100 + x^150 is 150.
-     * @param coefficients The indexes of the coefficients of the polynomial which are different from 0 and equal to 1.
-     * @return The 'expanded' coefficients of the polynomial, as required by the PolynomialFunction constructor.
-    */
-    private static Double[] getCoefficients(final int degree, final double... coefficients) {
-        if (log.isTraceEnabled()) {
-            log.trace("Degree: {}", degree);
-            log.trace("Coefficients: {}", ArrayUtils.toString(coefficients));
-        }
-        final Double[] coeffs = new Double[degree + 1];
-        setAll(coeffs, i -> {
-            if (contains(coefficients, i)) {
-                return 1.0;
-            }
-            return 0.0;
-        });
-        if (log.isTraceEnabled()) {
-            log.trace("CoefficientsN: {}", ArrayUtils.toString(coeffs));
-        }
-        return coeffs;
+     * step(3, 50, "x") represents 1 + x^50 + x^100 + x^150<br/>
+     * The step must be positive and the degree n·k at most 1048575,
+     * the largest exponent of a term.<br/>
+     * @param n The number of steps of the polynomial.
+     * @param k The step of the polynomial.
+     * @param variableName The name of the variable.
+     * @return The step polynomial.
+     * @throws IllegalArgumentException If n is negative, k is not positive or n·k is too large.
+     */
+    public static StepPolynomial step(final int n, final int k, final String variableName) {
+        return new StepPolynomial(n, k, variableName);
     }
 
     /**
-     * Start the coefficients of the polynomial.<br/>
+     * Build a step polynomial with coefficients in a ring.<br/>
      * For example:<br/>
-     * start(10, 200) gives as response {0,200,400,600,800,1000,1200,1400,1600,1800,2000}<br/>
-     * start(4,  200) gives as response {0,200,400,600,800}<br/>
-     * @param n The size of the polynomial coefficients array.
+     * polynomial(3, 50, "x", CoefficientRing.LONG) gives as response 1 + x^50 + x^100 + x^150<br/>
+     * The limits of {@link #step(int, int, String)} apply.<br/>
+     * @param n The number of steps of the polynomial.
      * @param k The step of the polynomial.
-     * @return The coefficients of the polynomial.
+     * @param variableName The name of the variable.
+     * @param ring The ring of the coefficients.
+     * @return The polynomial, with the terms in ascending order.
+     * @throws IOException If an error occurs while writing the temporary file.
+     * @throws IllegalArgumentException If n is negative, k is not positive or n·k is too large.
      */
-    private static double[] start(final int n, final int k) {
-        final double[] coefficients = new double[n + 1];
-        for (int i = 0; i <= n; i++) {
-            coefficients[i] = k * i; // NOSONAR
-        }
-        return coefficients;
+    public static Polynomial polynomial(final int n, final int k, final String variableName,
+            final CoefficientRing ring) throws IOException {
+        return step(n, k, variableName).toPolynomial(ring);
     }
 
-    private static boolean contains(final double[] coefficients, final int i) {
-        for (final double coefficient : coefficients) {
-            if (coefficient == i) {
-                return true;
-            }
+    /**
+     * Get the dense coefficients of the polynomial, 1 at every multiple of the step.<br/>
+     * For example:<br/>
+     * coefficients(3, 2) gives as response {1,0,1,0,1,0,1}<br/>
+     * coefficients(3, 0) gives as response {1}<br/>
+     * @param n The number of steps of the polynomial.
+     * @param k The step of the polynomial.
+     * @return The n·k + 1 coefficients, as required by the PolynomialFunction constructor.
+     */
+    private static double[] coefficients(final int n, final int k) {
+        final double[] coefficients = new double[n * k + 1];
+        for (int i = 0; i <= n; i++) {
+            coefficients[i * k] = 1; // NOSONAR
         }
-        return false;
+        return coefficients;
     }
 
-}
\ No newline at end of file
+}
@@ -1,9 +1,14 @@
 package home.polynomial;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.springframework.stereotype.Component;
 
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -13,6 +18,24 @@ import lombok.extern.slf4j.Slf4j;
 @Component
 @Slf4j
 public class PolynomialService { // NOPMD AtLeastOneConstructor
+    /** Opciones de las multiplicaciones sin opciones explícitas. */
+    @Getter
+    @Setter
+    private MultiplyOptions defaultOptions = MultiplyOptions.DEFAULT;
+    /**
+     * Caché de productos por contenido de los operandos, {@code null} para
+     * calcular siempre.
+     */
+    @Getter
+    @Setter
+    private ResultCache cache;
+    /**
+     * Planificador de las multiplicaciones asíncronas; si no se asigna, se crea
+     * al primer uso con un producto por procesador, el espacio libre del
+     * directorio temporal y la mitad de la memoria máxima.
+     */
+    @Setter
+    private ProductScheduler scheduler;
 
     /**
      * Multiplica un polinomio con otro polinomio.
@@ -24,7 +47,146 @@ public class PolynomialService { // NOPMD AtLeastOneConstructor
      *                     temporal.
      */
     public Polynomial multiply(final Polynomial first, final Polynomial other) throws IOException {
-        return first.multiply(other);
+        return multiply(first, other, defaultOptions);
+    }
+
+    /**
+     * Multiplica un polinomio con otro polinomio con las opciones indicadas.
+     * Con una {@link #getCache() caché} el producto se reutiliza si ya se
+     * calculó con los mismos términos, en cualquier orden de los operandos.
+     *
+     * @param first   el primer polinomio.
+     * @param other   el otro polinomio.
+     * @param options las opciones de la multiplicación.
+     * @return el resultado de la multiplicación.
+     * @throws IOException si ocurre un error al leer o escribir en el archivo
+     *                     temporal.
+     */
+    public Polynomial multiply(final Polynomial first, final Polynomial other, final MultiplyOptions options)
+            throws IOException {
+        if (cache != null) {
+            return cache.multiply(first, other, options);
+        }
+        return first.multiply(other, options);
+    }
+
+    /**
+     * Multiplica un polinomio con otro polinomio en un hilo virtual.
+     *
+     * @param first el primer polinomio.
+     * @param other el otro polinomio.
+     * @return el resultado futuro de la multiplicación.
+     * @see #multiplyAsync(Polynomial, Polynomial, MultiplyOptions)
+     */
+    public CompletableFuture<Polynomial> multiplyAsync(final Polynomial first, final Polynomial other) {
+        return multiplyAsync(first, other, defaultOptions);
+    }
+
+    /**
+     * Multiplica un polinomio con otro polinomio en un hilo virtual, con las
+     * opciones indicadas. El producto espera a que el
+     * {@link #getScheduler() planificador} tenga hueco para él y usa la caché
+     * como {@link #multiply(Polynomial, Polynomial, MultiplyOptions)}.
+     * Cancelar el resultado interrumpe la multiplicación y borra sus archivos
+     * temporales.
+     *
+     * @param first   el primer polinomio.
+     * @param other   el otro polinomio.
+     * @param options las opciones de la multiplicación.
+     * @return el resultado futuro de la multiplicación; falla con
+     *         {@link java.util.concurrent.RejectedExecutionException} si el
+     *         producto no cabe en los límites del planificador.
+     */
+    public CompletableFuture<Polynomial> multiplyAsync(final Polynomial first, final Polynomial other,
+            final MultiplyOptions options) {
+        return getScheduler().submit(first, other, options, this::multiply);
+    }
+
+    /**
+     * Devuelve el planificador de las multiplicaciones asíncronas, creándolo
+     * con los límites por defecto si no se ha asignado.
+     *
+     * @return el planificador.
+     */
+    public synchronized ProductScheduler getScheduler() {
+        if (scheduler == null) {
+            scheduler = new ProductScheduler(Runtime.getRuntime().availableProcessors(),
+                    new File(System.getProperty("java.io.tmpdir")).getUsableSpace(),
+                    Runtime.getRuntime().maxMemory() / 2);
+        }
+        return scheduler;
+    }
+
+    /**
+     * Multiplica todos los factores en un orden elegido según su tamaño: en
+     * cada paso se multiplican los dos operandos cuyo producto se estima más
+     * pequeño, a partir del número de términos y de los grados máximos. Los
+     * productos independientes se ejecutan en paralelo y los intermedios se
+     * borran en cuanto se consumen.
+     *
+     * @param factors los factores, que no se modifican.
+     * @return el producto; sin factores, el polinomio constante 1.
+     * @throws IOException si ocurre un error al leer o escribir en un archivo
+     *                     temporal.
+     */
+    public Polynomial multiplyAll(final List<Polynomial> factors) throws IOException {
+        return multiplyAll(factors, defaultOptions);
+    }
+
+    /**
+     * Multiplica todos los factores en un orden elegido según su tamaño, con
+     * las opciones indicadas en cada producto. Se ejecutan a la vez tantos
+     * productos como quepan en los procesadores disponibles con el
+     * paralelismo de las opciones.
+     *
+     * @param factors los factores, que no se modifican.
+     * @param options las opciones de cada multiplicación.
+     * @return el producto; sin factores, el polinomio constante 1.
+     * @throws IOException si ocurre un error al leer o escribir en un archivo
+     *                     temporal.
+     */
+    public Polynomial multiplyAll(final List<Polynomial> factors, final MultiplyOptions options)
+            throws IOException {
+        final int concurrency = Runtime.getRuntime().availableProcessors() / Math.max(1, options.getParallelism());
+        return new ProductPlanner(options, concurrency).multiply(factors);
+    }
+
+    /**
+     * Establece el número de hilos de las multiplicaciones sin opciones
+     * explícitas. Con más de un hilo los términos semejantes se combinan
+     * siempre y el resultado es idéntico al de la multiplicación secuencial.
+     *
+     * @param parallelism el número de hilos.
+     */
+    public void setParallelism(final int parallelism) {
+        defaultOptions = defaultOptions.toBuilder().parallelism(parallelism).build();
+    }
+
+    /**
+     * Obtiene el coeficiente de un monomio del producto de los factores sin
+     * desarrollar el producto completo.
+     *
+     * @param factors  los factores.
+     * @param monomial la clave del monomio (ejemplo: “x^150*y^200”).
+     * @return el coeficiente.
+     * @throws IOException si ocurre un error al leer un factor.
+     */
+    public double coefficientOf(final List<Polynomial> factors, final String monomial) throws IOException {
+        return CoefficientExtractor.coefficientOf(factors, monomial);
+    }
+
+    /**
+     * Obtiene la suma de los coeficientes de grado total {@code totalAmount}
+     * del producto de los factores, es decir, el número de formas de
+     * dispensar esa cantidad.
+     *
+     * @param factors     los factores.
+     * @param totalAmount la cantidad (grado total).
+     * @return el coeficiente.
+     * @throws IOException si ocurre un error al leer un factor.
+     */
+    public double coefficientOf(final List<Polynomial> factors, final int totalAmount) throws IOException {
+        return CoefficientExtractor.coefficientOf(factors, totalAmount);
     }
 
-}
\ No newline at end of file
+}
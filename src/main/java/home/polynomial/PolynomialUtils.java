@@ -1,14 +1,10 @@
 package home.polynomial;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.Date;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.nio.file.Path;
 
 import lombok.extern.slf4j.Slf4j;
 
@@ -19,9 +15,6 @@ import lombok.extern.slf4j.Slf4j;
  */
 @Slf4j
 public final class PolynomialUtils {
-    /** Separador para los factores de un término. */
-    private static final String FACTOR_SEP = "\\*";
-
     private PolynomialUtils() {
         // Constructor privado para evitar instanciación
     }
@@ -34,65 +27,165 @@ public final class PolynomialUtils {
      * @throws IOException si ocurre un error al crear el archivo temporal.
      */
     public static Polynomial fromString(final String polynomialString) throws IOException {
-        final Polynomial polynomial = new Polynomial();
+        return fromString(polynomialString, MonomialOrder.DEFAULT);
+    }
+
+    /**
+     * Convierte una cadena de texto en un polinomio con el orden de monomios
+     * indicado. Las claves de los términos se normalizan a su forma canónica.
+     *
+     * @param polynomialString la cadena de texto que representa el polinomio.
+     * @param order            el orden canónico de los términos.
+     * @return el polinomio representado como un objeto Polynomial.
+     * @throws IOException si ocurre un error al crear el archivo temporal.
+     */
+    public static Polynomial fromString(final String polynomialString, final MonomialOrder order)
+            throws IOException {
+        return fromString(polynomialString, order, CoefficientRing.DOUBLE);
+    }
+
+    /**
+     * Convierte una cadena de texto en un polinomio con el orden de monomios y
+     * el anillo de coeficientes indicados (ejemplo: “3*x^2 - 5” con
+     * {@link CoefficientRing#LONG}).
+     *
+     * @param polynomialString la cadena de texto que representa el polinomio.
+     * @param order            el orden canónico de los términos.
+     * @param ring             el anillo de los coeficientes.
+     * @return el polinomio representado como un objeto Polynomial.
+     * @throws IOException         si ocurre un error al crear el archivo
+     *                             temporal.
+     * @throws ArithmeticException si un coeficiente no pertenece a un anillo
+     *                             exacto.
+     */
+    public static Polynomial fromString(final String polynomialString, final MonomialOrder order,
+            final CoefficientRing ring) throws IOException {
+        final Polynomial polynomial = new Polynomial(order, ring);
         final String[] terms = polynomialString.replace(" ", "").split("(?=[+-])"); // Divide por "+" o "-"
         for (final String term : terms) {
             final String lTerm = term.trim();
             if (!lTerm.isEmpty()) {
-                final String[] parts = lTerm.split(FACTOR_SEP);
-                final double coefficient = Double.parseDouble(parts[0]);
-                final String key = parts.length > 1 ? parts[1] : ""; // Maneja constantes
-                polynomial.addTerm(key, coefficient);
+                final int separator = lTerm.indexOf('*');
+                final long coefficient = ring.parse(separator < 0 ? lTerm : lTerm.substring(0, separator));
+                final String key = separator < 0 ? "" : lTerm.substring(separator + 1); // Maneja constantes
+                polynomial.append(Monomial.parse(key), coefficient);
             }
         }
+        polynomial.flush();
         return polynomial;
     }
 
     /**
-     * Simplifica el polinomio combinando términos semejantes.
+     * Simplifica el polinomio combinando términos semejantes. Los términos se
+     * reescriben en orden ascendente según el orden de monomios del polinomio.
      *
      * @throws IOException si ocurre un error al leer o escribir en el archivo
      *                     temporal.
      */
-    // Se permite el acceso a la propiedad 'tempFile' de Polynomial
-    // @SuppressWarnings("PMD.LawOfDemeter")
     /* default */ static void simplify(final Polynomial polynomial) throws IOException {
-        final Map<String, Double> simplifiedTerms = new ConcurrentHashMap<>();
+        simplify(polynomial, TermSorter.DEFAULT_RUN_TERMS);
+    }
 
-        try (BufferedReader reader = Files.newBufferedReader(Paths.get(polynomial.tempFile.getAbsolutePath()))) {
-            String line;
-            while ((line = reader.readLine()) != null) { // NOPMD AssignmentInOperand
-                final String[] term = line.split("=");
-                final String key = term[0];
-                final double coefficient = Double.parseDouble(term[1]);
+    /**
+     * Simplifica el polinomio combinando términos semejantes con memoria
+     * acotada. Como mucho se mantienen {@code runTerms} términos distintos en
+     * memoria; el resto se ordena en ficheros auxiliares que se mezclan al
+     * final.
+     *
+     * @param polynomial el polinomio.
+     * @param runTerms   el número máximo de términos distintos en memoria.
+     * @throws IOException si ocurre un error al leer o escribir en el archivo
+     *                     temporal.
+     */
+    // Se permite el acceso a la propiedad 'tempFile' de Polynomial
+    // @SuppressWarnings("PMD.LawOfDemeter")
+    /* default */ static void simplify(final Polynomial polynomial, final int runTerms) throws IOException {
+        simplify(polynomial, runTerms, false);
+    }
 
-                // Combinar coeficientes de términos semejantes
-                simplifiedTerms.merge(key, coefficient, Double::sum);
+    /**
+     * Simplifica el polinomio combinando términos semejantes con memoria
+     * acotada, opcionalmente fuera del heap.
+     *
+     * @param polynomial el polinomio.
+     * @param runTerms   el número máximo de términos distintos en memoria.
+     * @param offHeap    si los términos en memoria se guardan fuera del heap.
+     * @throws IOException si ocurre un error al leer o escribir en el archivo
+     *                     temporal.
+     */
+    /* default */ static void simplify(final Polynomial polynomial, final int runTerms, final boolean offHeap)
+            throws IOException {
+        final ScratchSpace.Quota quota = polynomial.lease.quota();
+        final ScratchSpace.Lease simplified = quota.space().lease("polynomial", quota);
+        try {
+            // Escribir los términos simplificados en un archivo nuevo
+            final File terms = polynomial.termFile();
+            try (TermWriter writer = TermWriter.create(simplified.file(), polynomial.getRing(),
+                    TermFormat.isCompressed(terms))) {
+                writer.account(simplified);
+                new TermSorter(polynomial.getOrder(), runTerms, offHeap, quota).sort(terms, writer);
             }
+            // Reemplazar el archivo temporal con los términos simplificados
+            polynomial.lease.replaceWith(simplified);
+            polynomial.sortedByDegree = false;
+        } finally {
+            simplified.release(true);
         }
+    }
 
-        // Reescribir el archivo temporal con los términos simplificados
-        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(polynomial.tempFile.getAbsolutePath()))) {
-            for (final Map.Entry<String, Double> entry : simplifiedTerms.entrySet()) {
-                if (entry.getValue() != 0) { // Ignorar términos con coeficiente 0
-                    writer.write(entry.getKey() + "=" + entry.getValue());
-                    writer.newLine();
-                }
-            }
-        }
+    /**
+     * Importa un polinomio de un fichero de texto con un término
+     * “clave=coeficiente” por línea, el formato de
+     * {@link Polynomial#saveOrderedByDegree(String)}.
+     *
+     * @param path  la ruta del fichero de texto.
+     * @param order el orden canónico de los términos.
+     * @return el polinomio.
+     * @throws IOException si ocurre un error al leer el fichero o al escribir
+     *                     el archivo temporal.
+     */
+    public static Polynomial importText(final Path path, final MonomialOrder order) throws IOException {
+        return importText(path, order, CoefficientRing.DOUBLE);
     }
 
-    // Log the size of the temporary file every 'timeLog' milliseconds.
     /**
-     * Registra el tamaño del archivo temporal.
+     * Importa un polinomio de un fichero de texto con los coeficientes en el
+     * anillo indicado.
      *
-     * @param tempFile el archivo temporal.
+     * @param path  la ruta del fichero de texto.
+     * @param order el orden canónico de los términos.
+     * @param ring  el anillo de los coeficientes.
+     * @return el polinomio.
+     * @throws IOException         si ocurre un error al leer el fichero o al
+     *                             escribir el archivo temporal.
+     * @throws ArithmeticException si un coeficiente no pertenece a un anillo
+     *                             exacto.
      */
-//    private 
-    /* default */ static void logFileSize(final File tempFile) {
-        if (log.isDebugEnabled()) {
-            log.debug("{}\t{}", new Date(), tempFile.length());
+    public static Polynomial importText(final Path path, final MonomialOrder order, final CoefficientRing ring)
+            throws IOException {
+        final Polynomial polynomial = new Polynomial(order, ring);
+        TermFormat.readText(path, ring, polynomial.sink());
+        polynomial.flush();
+        return polynomial;
+    }
+
+    /**
+     * Exporta los términos del polinomio, tal como están, a un fichero de
+     * texto con un término “clave=coeficiente” por línea.
+     *
+     * @param polynomial el polinomio.
+     * @param path       la ruta del fichero de texto.
+     * @throws IOException si ocurre un error al leer el archivo temporal o al
+     *                     escribir el fichero.
+     */
+    public static void exportText(final Polynomial polynomial, final Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path);
+                TermReader reader = new TermReader(polynomial.termFile())) {
+            final TermConsumer text = TermFormat.textWriter(writer, reader.ring());
+            while (reader.next()) {
+                text.accept(reader.monomial(), reader.coefficient());
+            }
         }
     }
 
-}
\ No newline at end of file
+}
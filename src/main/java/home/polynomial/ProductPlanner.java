@@ -0,0 +1,267 @@
+package home.polynomial;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Product of many factors in a size-aware order. At every step the two ready
+ * operands whose product is estimated to be the smallest are multiplied, in
+ * the spirit of a Huffman tree: the estimate of a product is the smaller of
+ * the number of pairs and the number of monomials below the sum of the
+ * degree bounds of the operands, so small or overlapping factors are
+ * combined first and the large intermediates appear as late as possible.
+ * <p>
+ * Independent sub-products run concurrently, and every intermediate is
+ * deleted as soon as the product that consumes it is done. Like terms are
+ * always combined, since intermediates are multiplied again.
+ */
+@Slf4j
+final class ProductPlanner {
+    /** Options of every pairwise product. */
+    private final MultiplyOptions options;
+    /** Maximum number of pairwise products running at once. */
+    private final int concurrency;
+
+    /**
+     * Creates a planner.
+     *
+     * @param options     the options of every pairwise product.
+     * @param concurrency the maximum number of products running at once.
+     */
+    /* default */ ProductPlanner(final MultiplyOptions options, final int concurrency) {
+        this.options = options.combinesTerms() ? options : options.toBuilder().accumulate(true).build();
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Multiplies the factors. The factors themselves are never modified, and
+     * the product is always a new polynomial, even for a single factor.
+     *
+     * @param factors the factors.
+     * @return the product, the constant 1 without factors.
+     * @throws IOException if an error occurs while reading or writing a file.
+     */
+    /* default */ Polynomial multiply(final List<Polynomial> factors) throws IOException {
+        if (factors.isEmpty()) {
+            final Polynomial one = new Polynomial();
+            one.addTerm(Monomial.ONE, 1);
+            one.flush();
+            return one;
+        }
+        final List<Operand> ready = new ArrayList<>();
+        for (final Polynomial factor : factors) {
+            ready.add(Operand.of(factor, false));
+        }
+        if (ready.size() == 1) {
+            return single(factors.get(0));
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, factors.size() / 2));
+        final CompletionService<Operand> completion = new ExecutorCompletionService<>(executor);
+        final Map<Future<Operand>, Step> running = new LinkedHashMap<>();
+        boolean done = false;
+        try {
+            while (ready.size() + running.size() > 1) {
+                while (ready.size() > 1 && running.size() < concurrency) {
+                    final Step step = new Step(cheapestPair(ready));
+                    running.put(completion.submit(() -> product(step)), step);
+                }
+                final Future<Operand> finished = take(completion);
+                running.remove(finished);
+                ready.add(get(finished));
+            }
+            done = true;
+            return ready.get(0).polynomial;
+        } finally {
+            executor.shutdownNow();
+            if (!done) {
+                for (final Map.Entry<Future<Operand>, Step> entry : running.entrySet()) {
+                    final Future<Operand> future = entry.getKey();
+                    if (future.cancel(true) || future.isCancelled()) {
+                        // A product cancelled before it started never discards its operands
+                        entry.getValue().discardUnclaimed();
+                    } else {
+                        discard(future);
+                    }
+                }
+                for (final Operand operand : ready) {
+                    operand.discard();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes from the ready operands the pair with the smallest estimated
+     * product.
+     */
+    private static Operand[] cheapestPair(final List<Operand> ready) {
+        int best1 = 0;
+        int best2 = 1;
+        double bestSize = Double.MAX_VALUE;
+        for (int i = 0; i < ready.size(); i++) {
+            for (int j = i + 1; j < ready.size(); j++) {
+                final double size = ready.get(i).productSize(ready.get(j));
+                if (size < bestSize) {
+                    bestSize = size;
+                    best1 = i;
+                    best2 = j;
+                }
+            }
+        }
+        final Operand[] pair = { ready.get(best1), ready.get(best2) };
+        ready.remove(best2);
+        ready.remove(best1);
+        if (log.isDebugEnabled()) {
+            log.debug("Multiplying {} by {} terms, about {} terms", pair[0].statistics.terms(),
+                    pair[1].statistics.terms(), (long) bestSize);
+        }
+        return pair;
+    }
+
+    /**
+     * Multiplies a single factor by the constant 1, so the result is a new
+     * polynomial with the options applied.
+     */
+    private Polynomial single(final Polynomial factor) throws IOException {
+        final Polynomial one = new Polynomial(factor.getOrder(), factor.getRing());
+        try {
+            one.append(Monomial.ONE, factor.getRing().one());
+            one.flush();
+            return factor.multiply(one, options);
+        } finally {
+            one.discard();
+        }
+    }
+
+    private Operand product(final Step step) throws IOException {
+        if (!step.claim()) {
+            // Cancelled between its start and its claim; the operands are already discarded
+            return null;
+        }
+        try {
+            return Operand.of(step.first.polynomial.multiply(step.other.polynomial, options), true);
+        } finally {
+            step.first.discard();
+            step.other.discard();
+        }
+    }
+
+    /** Discards the result of a finished product that is no longer needed. */
+    private static void discard(final Future<Operand> future) {
+        try {
+            future.get().discard();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException e) {
+            log.trace("Discarded product failed: {}", e.getCause().getMessage());
+        }
+    }
+
+    private static Future<Operand> take(final CompletionService<Operand> completion) throws IOException {
+        try {
+            return completion.take();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Product interrupted", e);
+        }
+    }
+
+    private static Operand get(final Future<Operand> future) throws IOException {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Product interrupted", e);
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Pair of operands of a submitted product. The operands are discarded
+     * once, either by the product that claims them or by the cleanup of a
+     * product cancelled before it could claim them.
+     */
+    private static final class Step {
+        /** First operand. */
+        private final Operand first;
+        /** Other operand. */
+        private final Operand other;
+        /** Set by whoever discards the operands. */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private Step(final Operand... pair) {
+            this.first = pair[0];
+            this.other = pair[1];
+        }
+
+        /** Claims the operands for the product. */
+        private boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        /** Discards the operands if no product has claimed them. */
+        private void discardUnclaimed() {
+            if (claim()) {
+                first.discard();
+                other.discard();
+            }
+        }
+    }
+
+    /**
+     * Operand of the plan with its size.
+     */
+    private static final class Operand {
+        /** The polynomial. */
+        private final Polynomial polynomial;
+        /** Whether the polynomial is an intermediate product of the plan. */
+        private final boolean intermediate;
+        /** Number of terms and exponent bounds. */
+        private final TermStatistics statistics;
+
+        private Operand(final Polynomial polynomial, final boolean intermediate, final TermStatistics statistics) {
+            this.polynomial = polynomial;
+            this.intermediate = intermediate;
+            this.statistics = statistics;
+        }
+
+        private static Operand of(final Polynomial polynomial, final boolean intermediate) throws IOException {
+            return new Operand(polynomial, intermediate, TermStatistics.of(polynomial));
+        }
+
+        /**
+         * Estimates the number of terms of the product by another operand.
+         */
+        private double productSize(final Operand other) {
+            return statistics.productSize(other.statistics);
+        }
+
+        /** Deletes an intermediate that is no longer needed. */
+        private void discard() {
+            if (intermediate) {
+                polynomial.discard();
+            }
+        }
+    }
+
+}
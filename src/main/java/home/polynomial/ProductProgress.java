@@ -0,0 +1,180 @@
+package home.polynomial;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a running product. The multiplication loops update them once
+ * per outer term, from any worker thread; the terms written are counted by
+ * the {@link TermSink} of the result, from its single writing thread, and
+ * published with plain stores. The {@link ProgressRegistry} and the JMX
+ * clients read them at any time.
+ */
+final class ProductProgress implements ProductProgressMXBean {
+    /** Number of the product. */
+    private final long id;
+    /** Lease of the file of the result. */
+    private final ScratchSpace.Lease lease;
+    /** Number of pairs of terms of the product. */
+    private final long totalPairs;
+    /** Time between two log lines in milliseconds. */
+    private final long logMillis;
+    /** Start of the product, from {@link System#nanoTime()}. */
+    private final long start = System.nanoTime();
+    /** Outer terms processed. */
+    private final LongAdder outer = new LongAdder();
+    /** Pairs of terms processed. */
+    private final LongAdder inner = new LongAdder();
+    /** Terms written to the result. */
+    private final AtomicLong emitted = new AtomicLong();
+    /** Terms held by the accumulator. */
+    private final AtomicLong accumulator = new AtomicLong();
+    /** Elapsed time of the next log line in milliseconds. */
+    private long nextLog;
+    /** Whether the MBean is registered. */
+    private boolean registered;
+
+    /**
+     * Creates the counters of a product.
+     *
+     * @param id         the number of the product.
+     * @param lease      the lease of the file of the result.
+     * @param totalPairs the number of pairs of terms of the product.
+     * @param logMillis  the time between two log lines in milliseconds.
+     */
+    /* default */ ProductProgress(final long id, final ScratchSpace.Lease lease, final long totalPairs,
+            final long logMillis) {
+        this.id = id;
+        this.lease = lease;
+        this.totalPairs = totalPairs;
+        this.logMillis = logMillis;
+        this.nextLog = logMillis;
+    }
+
+    /**
+     * Counts processed terms.
+     *
+     * @param outerTerms the number of outer terms.
+     * @param pairs      the number of pairs of terms.
+     */
+    /* default */ void advance(final long outerTerms, final long pairs) {
+        outer.add(outerTerms);
+        inner.add(pairs);
+    }
+
+    /**
+     * Counts a term written to the result, from the writing thread only.
+     */
+    /* default */ void emit() {
+        emitted.setOpaque(emitted.getPlain() + 1);
+    }
+
+    /**
+     * Sets the number of terms held by the accumulator.
+     *
+     * @param terms the number of terms.
+     */
+    /* default */ void accumulator(final long terms) {
+        accumulator.setOpaque(terms);
+    }
+
+    /**
+     * Indicates whether a log line is due, and schedules the next one; called
+     * by the sampling thread only.
+     *
+     * @return {@code true} once per log interval.
+     */
+    /* default */ boolean logDue() {
+        final long elapsed = getElapsedMillis();
+        if (elapsed < nextLog) {
+            return false;
+        }
+        nextLog = (elapsed / logMillis + 1) * logMillis;
+        return true;
+    }
+
+    /**
+     * Marks the MBean as registered, once; called by the sampling thread only.
+     *
+     * @return {@code true} the first time.
+     */
+    /* default */ boolean register() {
+        final boolean first = !registered;
+        registered = true;
+        return first;
+    }
+
+    /**
+     * Indicates whether the MBean has been registered.
+     *
+     * @return {@code true} once registered.
+     */
+    /* default */ boolean isRegistered() {
+        return registered;
+    }
+
+    @Override
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public long getOuterTerms() {
+        return outer.sum();
+    }
+
+    @Override
+    public long getInnerTerms() {
+        return inner.sum();
+    }
+
+    @Override
+    public long getTotalPairs() {
+        return totalPairs;
+    }
+
+    @Override
+    public long getEmittedTerms() {
+        return emitted.getOpaque();
+    }
+
+    @Override
+    public double getTermsPerSecond() {
+        final long nanos = System.nanoTime() - start;
+        return nanos <= 0 ? 0 : getEmittedTerms() * 1e9 / nanos;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return lease.charged();
+    }
+
+    @Override
+    public long getAccumulatorTerms() {
+        return accumulator.getOpaque();
+    }
+
+    @Override
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Override
+    public long getEstimatedRemainingMillis() {
+        final long pairs = getInnerTerms();
+        if (pairs <= 0 || totalPairs <= 0) {
+            return -1;
+        }
+        return (long) (getElapsedMillis() * (double) Math.max(0, totalPairs - pairs) / pairs);
+    }
+
+    @Override
+    public String toString() {
+        return "product=" + id + " outer=" + getOuterTerms() + " inner=" + getInnerTerms() + "/" + totalPairs
+                + " emitted=" + getEmittedTerms() + " termsPerSecond=" + Math.round(getTermsPerSecond())
+                + " bytes=" + getBytesWritten() + " accumulator=" + getAccumulatorTerms() + " elapsedMs="
+                + getElapsedMillis() + " etaMs=" + getEstimatedRemainingMillis();
+    }
+
+}
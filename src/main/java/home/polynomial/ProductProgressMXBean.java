@@ -0,0 +1,84 @@
+package home.polynomial;
+
+/**
+ * Management interface of the progress of a running product, registered by
+ * the {@link ProgressRegistry} under
+ * {@code home.polynomial:type=ProductProgress,id=<id>}.
+ */
+public interface ProductProgressMXBean {
+
+    /**
+     * Returns the number of the product, unique in the JVM.
+     *
+     * @return the identifier.
+     */
+    long getId();
+
+    /**
+     * Returns the number of outer terms processed: the terms of the streamed
+     * operand, once per resident chunk, or the rows of a heap merge.
+     *
+     * @return the number of outer terms.
+     */
+    long getOuterTerms();
+
+    /**
+     * Returns the number of pairs of terms processed, including the pairs
+     * skipped by a degree bound.
+     *
+     * @return the number of inner terms.
+     */
+    long getInnerTerms();
+
+    /**
+     * Returns the number of pairs of terms of the product.
+     *
+     * @return the product of the numbers of terms of the operands.
+     */
+    long getTotalPairs();
+
+    /**
+     * Returns the number of terms written to the result so far.
+     *
+     * @return the number of terms.
+     */
+    long getEmittedTerms();
+
+    /**
+     * Returns the mean number of terms written to the result per second.
+     *
+     * @return the rate since the start of the product.
+     */
+    double getTermsPerSecond();
+
+    /**
+     * Returns the number of bytes written to the file of the result.
+     *
+     * @return the number of bytes.
+     */
+    long getBytesWritten();
+
+    /**
+     * Returns the number of terms held in memory by the accumulator, or the
+     * rows of a heap merge.
+     *
+     * @return the number of terms.
+     */
+    long getAccumulatorTerms();
+
+    /**
+     * Returns the time since the start of the product.
+     *
+     * @return the time in milliseconds.
+     */
+    long getElapsedMillis();
+
+    /**
+     * Estimates the time until the end of the product from the pairs of terms
+     * processed.
+     *
+     * @return the time in milliseconds, or -1 while unknown.
+     */
+    long getEstimatedRemainingMillis();
+
+}
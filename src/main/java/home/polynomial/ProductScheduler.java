@@ -0,0 +1,256 @@
+package home.polynomial;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Asynchronous products with admission control. Every product runs on its
+ * own virtual thread, but it starts only when it fits in the limits of the
+ * scheduler:
+ * <ul>
+ * <li>the number of products running at once;</li>
+ * <li>the scratch disk space, estimated from the number of terms of the
+ * result;</li>
+ * <li>the heap, estimated from the terms kept in memory by the operands and
+ * the accumulator.</li>
+ * </ul>
+ * The estimates come from the {@link TermStatistics} of the operands and are
+ * deliberately rough upper bounds. A product that does not fit even on an
+ * idle scheduler fails at once with a {@link RejectedExecutionException}
+ * instead of waiting forever. The waiting is done on a lock condition, which
+ * releases the carrier thread of a virtual thread.
+ * <p>
+ * Cancelling a future interrupts its product, which stops at the next check
+ * of {@link Cancellation}, including the term scans that estimate its demand
+ * and the dense transforms, and deletes its partial files.
+ */
+@Slf4j
+public final class ProductScheduler implements AutoCloseable {
+    /** Maximum number of products running at once. */
+    private final int maxConcurrent;
+    /** Budget of scratch disk space in bytes. */
+    private final long diskBytes;
+    /** Budget of heap in bytes. */
+    private final long heapBytes;
+    /** Executor of one virtual thread per product. */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    /** Lock of the reservations. */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Signalled when a product releases its reservation. */
+    private final Condition released = lock.newCondition();
+    /** Products running. */
+    private int running;
+    /** Disk space reserved by the running products. */
+    private long diskReserved;
+    /** Heap reserved by the running products. */
+    private long heapReserved;
+
+    /**
+     * Creates a scheduler.
+     *
+     * @param maxConcurrent the maximum number of products running at once.
+     * @param diskBytes     the budget of scratch disk space in bytes.
+     * @param heapBytes     the budget of heap in bytes.
+     */
+    public ProductScheduler(final int maxConcurrent, final long diskBytes, final long heapBytes) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("At least one concurrent product is needed: " + maxConcurrent);
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.diskBytes = diskBytes;
+        this.heapBytes = heapBytes;
+    }
+
+    /**
+     * Multiplication run by a scheduled product, such as
+     * {@link Polynomial#multiply(Polynomial, MultiplyOptions)} or a cached
+     * one.
+     */
+    @FunctionalInterface
+    public interface Multiplication {
+        /**
+         * Multiplies two polynomials.
+         *
+         * @param first   the first polynomial.
+         * @param other   the other polynomial.
+         * @param options the multiplication options.
+         * @return the product.
+         * @throws IOException if an error occurs while reading or writing a
+         *                     file.
+         */
+        Polynomial multiply(Polynomial first, Polynomial other, MultiplyOptions options) throws IOException;
+    }
+
+    /**
+     * Schedules a product.
+     *
+     * @param first   the first polynomial.
+     * @param other   the other polynomial.
+     * @param options the multiplication options.
+     * @return the future product.
+     * @throws RejectedExecutionException if the scheduler is closed.
+     */
+    public CompletableFuture<Polynomial> submit(final Polynomial first, final Polynomial other,
+            final MultiplyOptions options) {
+        return submit(first, other, options, Polynomial::multiply);
+    }
+
+    /**
+     * Schedules a product computed by a multiplication.
+     *
+     * @param first          the first polynomial.
+     * @param other          the other polynomial.
+     * @param options        the multiplication options.
+     * @param multiplication the multiplication.
+     * @return the future product; it fails with a
+     *         {@link RejectedExecutionException} if the product exceeds the
+     *         budgets of the scheduler, and cancelling it interrupts the
+     *         product.
+     * @throws RejectedExecutionException if the scheduler is closed.
+     */
+    public CompletableFuture<Polynomial> submit(final Polynomial first, final Polynomial other,
+            final MultiplyOptions options, final Multiplication multiplication) {
+        final Job job = new Job();
+        executor.execute(() -> run(job, first, other, options, multiplication));
+        return job;
+    }
+
+    private void run(final Job job, final Polynomial first, final Polynomial other, final MultiplyOptions options,
+            final Multiplication multiplication) {
+        job.runner.set(Thread.currentThread());
+        try {
+            if (job.isCancelled()) {
+                return;
+            }
+            final Demand demand = demand(first, other, options);
+            if (demand.disk() > diskBytes || demand.heap() > heapBytes) {
+                job.completeExceptionally(new RejectedExecutionException("The product needs about "
+                        + demand.disk() + " bytes of disk and " + demand.heap() + " bytes of heap, over the budgets of "
+                        + diskBytes + " and " + heapBytes));
+                return;
+            }
+            admit(demand);
+            try {
+                final Polynomial result = multiplication.multiply(first, other, options);
+                if (!job.complete(result)) {
+                    // Cancelled too late to interrupt it
+                    result.discard();
+                }
+            } finally {
+                release(demand);
+            }
+        } catch (final InterruptedException e) {
+            job.cancel(false);
+        } catch (IOException | RuntimeException e) {
+            job.completeExceptionally(e);
+        } finally {
+            job.runner.set(null);
+        }
+    }
+
+    /**
+     * Estimates the disk and heap needed by a product.
+     */
+    private static Demand demand(final Polynomial first, final Polynomial other, final MultiplyOptions options)
+            throws IOException {
+        final TermStatistics statistics1 = TermStatistics.of(first);
+        final TermStatistics statistics2 = TermStatistics.of(other);
+        final double terms = options.combinesTerms() ? statistics1.productSize(statistics2)
+                : (double) statistics1.terms() * statistics2.terms();
+        final int recordBytes = TermFormat.recordBytes(TermFormat.wordsForVariables());
+        final double disk = terms * recordBytes + TermFormat.HEADER_BYTES;
+        final long resident = options.getResidentTerms();
+        // Records and hash table of the accumulator, and the parsed operands
+        final double heap = (2 * Math.min(terms, resident) + Math.min(statistics1.terms(), resident)
+                + Math.min(statistics2.terms(), resident)) * recordBytes;
+        return new Demand((long) Math.min(disk, Long.MAX_VALUE), (long) Math.min(heap, Long.MAX_VALUE));
+    }
+
+    /** Waits until a product fits and reserves its demand. */
+    private void admit(final Demand demand) throws InterruptedException {
+        lock.lock();
+        try {
+            while (running >= maxConcurrent || diskReserved + demand.disk() > diskBytes
+                    || heapReserved + demand.heap() > heapBytes) {
+                released.await();
+            }
+            running++;
+            diskReserved += demand.disk();
+            heapReserved += demand.heap();
+            log.debug("Product admitted, {} running", running);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(final Demand demand) {
+        lock.lock();
+        try {
+            running--;
+            diskReserved -= demand.disk();
+            heapReserved -= demand.heap();
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of products running.
+     *
+     * @return the number of admitted products not finished yet.
+     */
+    public int running() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rejects new products and waits for the scheduled ones to finish.
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    /**
+     * Estimated resources of a product.
+     *
+     * @param disk the scratch disk space in bytes.
+     * @param heap the heap in bytes.
+     */
+    private record Demand(long disk, long heap) {
+    }
+
+    /**
+     * Future of a product, whose cancellation interrupts the thread running
+     * it.
+     */
+    private static final class Job extends CompletableFuture<Polynomial> {
+        /** Thread running the product, {@code null} before and after. */
+        private final AtomicReference<Thread> runner = new AtomicReference<>();
+
+        @Override
+        public boolean cancel(final boolean mayInterruptIfRunning) {
+            final boolean cancelled = super.cancel(mayInterruptIfRunning);
+            final Thread thread = runner.get();
+            if (cancelled && thread != null) {
+                thread.interrupt();
+            }
+            return cancelled;
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+package home.polynomial;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Progress of the running products. A single daemon thread, shared by every
+ * product, samples them once per second while any is running:
+ * <ul>
+ * <li>a product still running after the first sample is registered as a
+ * {@link ProductProgressMXBean} in the platform MBean server, so short
+ * products never reach JMX;</li>
+ * <li>every product logs a line of {@code key=value} counters once per log
+ * interval of the polynomial, ten minutes by default.</li>
+ * </ul>
+ * The counters themselves are updated by the multiplication loops, see
+ * {@link ProductProgress}.
+ */
+@Slf4j
+public final class ProgressRegistry {
+    /** Time between two samples in milliseconds. */
+    private static final long SAMPLE_MILLIS = 1000;
+    /** Domain of the names of the MBeans. */
+    private static final String DOMAIN = "home.polynomial";
+
+    /** Registry of the products of the JVM. */
+    private static final ProgressRegistry DEFAULT = new ProgressRegistry();
+
+    /** Last number given to a product. */
+    private final AtomicLong ids = new AtomicLong();
+    /** Running products by number. */
+    private final Map<Long, ProductProgress> running = new ConcurrentHashMap<>();
+    /** Thread of the samples, created on the first product. */
+    private ScheduledExecutorService sampler;
+    /** Periodic sample, {@code null} while no product is running. */
+    private ScheduledFuture<?> sampling;
+
+    private ProgressRegistry() {
+    }
+
+    /**
+     * Returns the registry of the products of the JVM.
+     *
+     * @return the registry.
+     */
+    public static ProgressRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the progress of the running products.
+     *
+     * @return the products, in order of start.
+     */
+    public List<ProductProgressMXBean> running() {
+        final List<ProductProgressMXBean> products = new ArrayList<>(running.values());
+        products.sort(Comparator.comparingLong(ProductProgressMXBean::getId));
+        return products;
+    }
+
+    /**
+     * Starts tracking a product.
+     *
+     * @param first     the first operand.
+     * @param other     the other operand.
+     * @param result    the result, whose file is being written.
+     * @param logMillis the time between two log lines in milliseconds.
+     * @return the counters of the product, to {@link #finish(ProductProgress)
+     *         finish} when done.
+     * @throws IOException if an error occurs while reading the size of an
+     *                     operand.
+     */
+    /* default */ ProductProgress start(final Polynomial first, final Polynomial other, final Polynomial result,
+            final long logMillis) throws IOException {
+        final ProductProgress progress = new ProductProgress(ids.incrementAndGet(), result.lease,
+                terms(first) * terms(other), Math.max(SAMPLE_MILLIS, logMillis));
+        synchronized (this) {
+            running.put(progress.getId(), progress);
+            if (sampling == null) {
+                if (sampler == null) {
+                    sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        final Thread thread = new Thread(runnable, "product-progress");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+                sampling = sampler.scheduleAtFixedRate(this::sample, SAMPLE_MILLIS, SAMPLE_MILLIS,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+        return progress;
+    }
+
+    private static long terms(final Polynomial polynomial) throws IOException {
+        try (TermReader reader = new TermReader(polynomial.termFile())) {
+            return reader.terms();
+        }
+    }
+
+    /**
+     * Stops tracking a product, finished or failed.
+     *
+     * @param progress the counters of the product.
+     */
+    /* default */ synchronized void finish(final ProductProgress progress) {
+        running.remove(progress.getId());
+        if (progress.isRegistered()) {
+            unregister(progress);
+        }
+        if (running.isEmpty() && sampling != null) {
+            sampling.cancel(false);
+            sampling = null;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Product finished: {}", progress);
+        }
+    }
+
+    private synchronized void sample() {
+        for (final ProductProgress progress : running.values()) {
+            if (progress.register()) {
+                register(progress);
+            }
+            if (progress.logDue() && log.isInfoEnabled()) {
+                log.info("Product progress: {}", progress);
+            }
+        }
+    }
+
+    private static void register(final ProductProgress progress) {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(progress, name(progress));
+        } catch (final JMException e) {
+            log.warn("Could not register the progress of product {}: {}", progress.getId(), e.getMessage());
+        }
+    }
+
+    private static void unregister(final ProductProgress progress) {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName name = name(progress);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (final JMException e) {
+            log.warn("Could not unregister the progress of product {}: {}", progress.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the name of the MBean of a product.
+     *
+     * @param progress the counters of the product.
+     * @return {@code home.polynomial:type=ProductProgress,id=<id>}.
+     * @throws JMException if the name is malformed.
+     */
+    /* default */ static ObjectName name(final ProductProgress progress) throws JMException {
+        return new ObjectName(DOMAIN + ":type=ProductProgress,id=" + progress.getId());
+    }
+
+}
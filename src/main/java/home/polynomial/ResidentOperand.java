@@ -0,0 +1,127 @@
+package home.polynomial;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Inner operand of a block nested loop multiplication, kept parsed in memory
+ * one chunk at a time while the other operand is streamed past it. When the
+ * chunk holds the whole operand, both operands are parsed only once.
+ * <p>
+ * The second operand is kept resident whenever it fits in the budget, so the
+ * first operand is streamed and the products come out in the same order as
+ * the term-by-term loop. Otherwise the operand with fewer terms is the
+ * resident one.
+ */
+@Slf4j
+final class ResidentOperand implements Closeable {
+    /** Maximum number of terms of a chunk. */
+    private final int residentTerms;
+    /** Window of the kept terms of a truncated multiplication. */
+    private final DegreeWindow window;
+    /** Operand streamed past every chunk. */
+    private final Polynomial streamed;
+    /** Reader of the resident operand. */
+    private final TermReader reader;
+    /** Current chunk of the resident operand. */
+    private TermBlock chunk;
+    /** Whether the resident operand has been read completely. */
+    private boolean exhausted;
+
+    private ResidentOperand(final Polynomial streamed, final TermReader reader, final TermBlock chunk,
+            final int residentTerms, final DegreeWindow window) {
+        this.streamed = streamed;
+        this.reader = reader;
+        this.residentTerms = residentTerms;
+        this.window = window;
+        load(chunk);
+    }
+
+    /**
+     * Chooses the resident operand of a multiplication and loads its first
+     * chunk.
+     *
+     * @param first         the first operand.
+     * @param other         the second operand.
+     * @param residentTerms the maximum number of terms of a chunk.
+     * @param window        the window of the kept terms; the chunks only hold
+     *                      terms inside it, sorted by degree when bounded.
+     * @return the resident operand.
+     * @throws IOException if an error occurs while reading an operand.
+     */
+    /* default */ static ResidentOperand choose(final Polynomial first, final Polynomial other,
+            final int residentTerms, final DegreeWindow window) throws IOException {
+        TermReader reader = new TermReader(other.termFile());
+        try {
+            Polynomial streamed = first;
+            if (reader.terms() > residentTerms) {
+                // The term counts of the headers, both files flushed by termFile()
+                final TermReader smaller = new TermReader(first.termFile());
+                if (smaller.terms() < reader.terms()) {
+                    reader.close();
+                    reader = smaller;
+                    streamed = other;
+                } else {
+                    smaller.close();
+                }
+            }
+            final TermBlock chunk = TermBlock.read(reader, residentTerms);
+            if (log.isTraceEnabled()) {
+                log.trace("Resident chunk of {} terms, streaming {}", chunk.size(), streamed.tempFile.getName());
+            }
+            return new ResidentOperand(streamed, reader, chunk, residentTerms, window);
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the operand streamed past every chunk.
+     *
+     * @return the streamed operand.
+     */
+    /* default */ Polynomial streamed() {
+        return streamed;
+    }
+
+    /**
+     * Returns the current chunk of the resident operand.
+     *
+     * @return the chunk.
+     */
+    /* default */ TermBlock chunk() {
+        return chunk;
+    }
+
+    /**
+     * Loads the next chunk of the resident operand.
+     *
+     * @return {@code false} when the resident operand is exhausted.
+     * @throws IOException if an error occurs while reading the operand.
+     */
+    /* default */ boolean nextChunk() throws IOException {
+        if (exhausted) {
+            return false;
+        }
+        final TermBlock next = TermBlock.read(reader, residentTerms);
+        if (next.size() == 0) {
+            return false;
+        }
+        load(next);
+        return true;
+    }
+
+    private void load(final TermBlock block) {
+        exhausted = block.size() < residentTerms;
+        chunk = window.isUnbounded() ? block : block.truncate(window);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+}
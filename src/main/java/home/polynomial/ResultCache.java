@@ -0,0 +1,377 @@
+package home.polynomial;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache of products keyed by the content of the operands. The key of an
+ * operand is the SHA-256 digest of its canonical term stream, the terms
+ * sorted by monomial order with like terms combined, so two polynomials with
+ * the same terms share it however they were built. The key of a product
+ * combines the keys of both operands in sorted order, so P·Q and Q·P are the
+ * same entry, with the options that change the terms of the result.
+ * <p>
+ * Results are kept in two tiers, both evicted by least recent use when their
+ * byte budget is exceeded:
+ * <ul>
+ * <li>memory: the bytes of the term files of the most recent results;</li>
+ * <li>disk: copies of the term files in a directory, which survive the
+ * process and are found again by a cache created on the same directory.</li>
+ * </ul>
+ * Every hit returns a new polynomial with its own copy of the terms. The lock
+ * of the cache only guards the indexes of the tiers: the files are read,
+ * copied and deleted outside it, and a result file only appears in the
+ * directory complete, by an atomic move. The digest of an operand is kept by
+ * the polynomial until a term is added to it.
+ */
+@Slf4j
+public final class ResultCache {
+    /** Extension of the result files of the disk tier. */
+    public static final String SUFFIX = ".terms";
+    /** Largest entry of the memory tier, the maximum size of an array. */
+    private static final long MAX_MEMORY_ENTRY = Integer.MAX_VALUE - 8;
+
+    /** Directory of the disk tier, {@code null} without disk tier. */
+    private final Path directory;
+    /** Budget of the memory tier in bytes. */
+    private final long memoryBytes;
+    /** Budget of the disk tier in bytes. */
+    private final long diskBytes;
+    /** Term files of the memory tier, by key, in access order. */
+    private final Map<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+    /** Size of the files of the disk tier, by key, in access order. */
+    private final Map<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+    /** Bytes held by the memory tier. */
+    private long memoryUsed;
+    /** Bytes held by the disk tier. */
+    private long diskUsed;
+    /** Hits served from memory. */
+    private final LongAdder memoryHits = new LongAdder();
+    /** Hits served from disk. */
+    private final LongAdder diskHits = new LongAdder();
+    /** Products computed. */
+    private final LongAdder misses = new LongAdder();
+    /** Entries evicted from either tier. */
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache with a memory tier only.
+     *
+     * @param memoryBytes the budget of the memory tier in bytes.
+     */
+    public ResultCache(final long memoryBytes) {
+        this.directory = null;
+        this.memoryBytes = memoryBytes;
+        this.diskBytes = 0;
+    }
+
+    /**
+     * Creates a cache with a memory tier and a disk tier. The result files
+     * already in the directory are reused, the most recently modified first.
+     *
+     * @param directory   the directory of the disk tier, created if needed.
+     * @param memoryBytes the budget of the memory tier in bytes.
+     * @param diskBytes   the budget of the disk tier in bytes.
+     * @throws IOException if the directory cannot be created or listed.
+     */
+    public ResultCache(final Path directory, final long memoryBytes, final long diskBytes) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.memoryBytes = memoryBytes;
+        this.diskBytes = diskBytes;
+        final List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            listing.filter(path -> path.getFileName().toString().endsWith(SUFFIX)).forEach(files::add);
+        }
+        files.sort(Comparator.comparingLong(path -> path.toFile().lastModified()));
+        for (final Path file : files) {
+            final String name = file.getFileName().toString();
+            final long size = Files.size(file);
+            disk.put(name.substring(0, name.length() - SUFFIX.length()), size);
+            diskUsed += size;
+        }
+        delete(evictDisk());
+    }
+
+    /**
+     * Multiplies two polynomials, or returns a copy of the cached product.
+     *
+     * @param first   the first polynomial.
+     * @param other   the other polynomial.
+     * @param options the multiplication options.
+     * @return the product, a new polynomial on every call.
+     * @throws IOException if an error occurs while reading or writing a file.
+     */
+    public Polynomial multiply(final Polynomial first, final Polynomial other, final MultiplyOptions options)
+            throws IOException {
+        final String key = key(first, other, options);
+        final Polynomial cached = lookup(key, first, options);
+        if (cached != null) {
+            return cached;
+        }
+        misses.increment();
+        final Polynomial result = first.multiply(other, options);
+        store(key, result.termFile());
+        return result;
+    }
+
+    /**
+     * Returns the counters of the cache.
+     *
+     * @return a snapshot of the counters.
+     */
+    public synchronized Stats stats() {
+        return new Stats(memoryHits.sum(), diskHits.sum(), misses.sum(), evictions.sum(), memory.size(),
+                memoryUsed, disk.size(), diskUsed);
+    }
+
+    /**
+     * Empties both tiers, deleting the files of the disk tier.
+     *
+     * @throws IOException if a file cannot be deleted.
+     */
+    public void clear() throws IOException {
+        final List<Path> files = new ArrayList<>();
+        synchronized (this) {
+            memory.clear();
+            memoryUsed = 0;
+            for (final String key : disk.keySet()) {
+                files.add(file(key));
+            }
+            disk.clear();
+            diskUsed = 0;
+        }
+        delete(files);
+    }
+
+    private Polynomial lookup(final String key, final Polynomial first, final MultiplyOptions options)
+            throws IOException {
+        final byte[] cached;
+        final Long size;
+        synchronized (this) {
+            cached = memory.get(key);
+            size = cached == null ? disk.get(key) : null;
+        }
+        if (cached != null) {
+            memoryHits.increment();
+            return restore(first, options, result -> Files.write(result, cached));
+        }
+        if (size == null) {
+            return null;
+        }
+        final Path file = file(key);
+        try {
+            if (admitted(size)) {
+                final byte[] bytes = Files.readAllBytes(file);
+                synchronized (this) {
+                    remember(key, bytes);
+                }
+                diskHits.increment();
+                return restore(first, options, result -> Files.write(result, bytes));
+            }
+            final Polynomial result = restore(first, options, copy -> Files.copy(file, copy,
+                    StandardCopyOption.REPLACE_EXISTING));
+            diskHits.increment();
+            return result;
+        } catch (final NoSuchFileException e) {
+            // Evicted meanwhile, or deleted from the directory
+            synchronized (this) {
+                final Long removed = disk.remove(key);
+                if (removed != null) {
+                    diskUsed -= removed;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static Polynomial restore(final Polynomial first, final MultiplyOptions options, final Copy copy)
+            throws IOException {
+        final Polynomial result = new Polynomial(first.getOrder(), first.getRing());
+        try {
+            copy.to(result.tempFile.toPath());
+            result.lease.charge(result.tempFile.length());
+        } catch (IOException | RuntimeException e) {
+            result.discard();
+            throw e;
+        }
+        result.sortedByDegree = options.isSorted();
+        log.debug("Product served from the cache");
+        return result;
+    }
+
+    private void store(final String key, final File terms) throws IOException {
+        final long size = terms.length();
+        final boolean toDisk;
+        synchronized (this) {
+            toDisk = directory != null && size <= diskBytes && !disk.containsKey(key);
+        }
+        if (toDisk) {
+            final Path partial = Files.createTempFile(directory, key, ".tmp");
+            try {
+                Files.copy(terms.toPath(), partial, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(partial, file(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(partial);
+            }
+            final List<Path> evicted;
+            synchronized (this) {
+                final Long previous = disk.put(key, size);
+                diskUsed += size - (previous == null ? 0 : previous);
+                evicted = evictDisk();
+            }
+            delete(evicted);
+        }
+        if (admitted(size)) {
+            final byte[] bytes = Files.readAllBytes(terms.toPath());
+            synchronized (this) {
+                remember(key, bytes);
+            }
+        }
+    }
+
+    /** Tells whether a result of a size fits in the memory tier. */
+    private boolean admitted(final long size) {
+        return size <= memoryBytes && size <= MAX_MEMORY_ENTRY;
+    }
+
+    private void remember(final String key, final byte[] bytes) {
+        final byte[] previous = memory.put(key, bytes);
+        memoryUsed += bytes.length - (previous == null ? 0 : previous.length);
+        final Iterator<byte[]> eldest = memory.values().iterator();
+        while (memoryUsed > memoryBytes && eldest.hasNext()) {
+            memoryUsed -= eldest.next().length;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Removes the least recent entries of the disk tier over its budget.
+     *
+     * @return the files of the removed entries, to delete outside the lock.
+     */
+    private List<Path> evictDisk() {
+        final List<Path> evicted = new ArrayList<>();
+        final Iterator<Map.Entry<String, Long>> eldest = disk.entrySet().iterator();
+        while (diskUsed > diskBytes && eldest.hasNext()) {
+            final Map.Entry<String, Long> entry = eldest.next();
+            evicted.add(file(entry.getKey()));
+            diskUsed -= entry.getValue();
+            eldest.remove();
+            evictions.increment();
+        }
+        return evicted;
+    }
+
+    private static void delete(final List<Path> files) throws IOException {
+        for (final Path file : files) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private Path file(final String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    /**
+     * Returns the key of a product: the digests of the operands in sorted
+     * order and the options that change the terms of the result.
+     */
+    private static String key(final Polynomial first, final Polynomial other, final MultiplyOptions options)
+            throws IOException {
+        final String digest1 = digest(first);
+        final String digest2 = digest(other);
+        final MessageDigest digest = sha256();
+        digest.update((digest1.compareTo(digest2) <= 0 ? digest1 + digest2 : digest2 + digest1)
+                .getBytes(StandardCharsets.UTF_8));
+        digest.update((first.getOrder() + ";" + options.combinesTerms() + ";" + options.isSorted() + ";"
+                + options.isCompressed() + ";" + options.getMaxDegree() + ";"
+                + new TreeMap<>(options.getMaxExponents())).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Returns the digest of the canonical term stream of a polynomial, kept
+     * by the polynomial until it is modified.
+     */
+    private static String digest(final Polynomial polynomial) throws IOException {
+        final String known = polynomial.digest;
+        if (known != null) {
+            return known;
+        }
+        final MessageDigest digest = sha256();
+        digest.update(polynomial.getRing().toString().getBytes(StandardCharsets.UTF_8));
+        final ByteBuffer coefficient = ByteBuffer.allocate(Long.BYTES);
+        final TermSorter sorter = new TermSorter(polynomial.getOrder(), TermSorter.DEFAULT_RUN_TERMS,
+                polynomial.lease.quota());
+        sorter.sort(polynomial.termFile(),
+                (monomial, element) -> {
+                    digest.update(monomial.toString().getBytes(StandardCharsets.UTF_8));
+                    digest.update(coefficient.clear().putLong(element).flip());
+                });
+        final String computed = HexFormat.of().formatHex(digest.digest());
+        polynomial.digest = computed;
+        return computed;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /** Writes the cached terms to the file of a new polynomial. */
+    @FunctionalInterface
+    private interface Copy {
+        void to(Path file) throws IOException;
+    }
+
+    /**
+     * Counters of a cache.
+     *
+     * @param memoryHits  the hits served from memory.
+     * @param diskHits    the hits served from disk.
+     * @param misses      the products computed.
+     * @param evictions   the entries evicted from either tier.
+     * @param memoryCount the entries of the memory tier.
+     * @param memoryBytes the bytes of the memory tier.
+     * @param diskCount   the entries of the disk tier.
+     * @param diskBytes   the bytes of the disk tier.
+     */
+    public record Stats(long memoryHits, long diskHits, long misses, long evictions, int memoryCount,
+            long memoryBytes, int diskCount, long diskBytes) {
+
+        /**
+         * Returns the ratio of the products served from the cache.
+         *
+         * @return the hit ratio, zero before the first product.
+         */
+        public double hitRatio() {
+            final long hits = memoryHits + diskHits;
+            return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+        }
+    }
+
+}
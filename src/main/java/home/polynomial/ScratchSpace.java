@@ -0,0 +1,378 @@
+package home.polynomial;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Directory of the scratch files of the polynomials, the spills and the
+ * sorted runs, with byte quotas.
+ * <p>
+ * Every scratch file is leased to its owner and returned when the owner is
+ * done with it: a closed {@link Polynomial}, a merged spill or run. Returned
+ * files are truncated and kept for the next lease, up to a number of files,
+ * so a long chain of products does not create and delete a file per
+ * intermediate. The files still leased when the JVM exits are deleted by a
+ * single shutdown hook per space, instead of one {@link File#deleteOnExit()}
+ * entry per file that is never removed; {@link #close() closing} a space
+ * removes its hook.
+ * <p>
+ * The bytes written to the files are charged to a quota: the global quota of
+ * the space, and optionally a quota per product, see
+ * {@link MultiplyOptions#getScratchBytes()}. A write that would exceed a quota
+ * fails with an {@link IOException} and the product is abandoned.
+ */
+@Slf4j
+public final class ScratchSpace implements AutoCloseable {
+    /** Returned files kept for reuse by default. */
+    public static final int DEFAULT_RECYCLED_FILES = 16;
+
+    /** Space used by the polynomials created without an explicit space. */
+    private static volatile ScratchSpace defaultSpace = new ScratchSpace(
+            Paths.get(System.getProperty("java.io.tmpdir")), Long.MAX_VALUE, DEFAULT_RECYCLED_FILES);
+
+    /** Directory of the files. */
+    private final Path directory;
+    /** Global quota. */
+    private final Quota quota;
+    /** Maximum number of returned files kept for reuse. */
+    private final int recycledFiles;
+    /** Returned files, empty, ready for the next lease. */
+    private final Queue<File> recycled;
+    /** Files leased and not returned yet. */
+    private final Set<File> leased = ConcurrentHashMap.newKeySet();
+    /** Deletes the files when the JVM exits. */
+    private final Thread cleanup = new Thread(this::deleteAll, "scratch-cleanup");
+    /** Whether the directory has been created. */
+    private volatile boolean created;
+    /** Whether the space has been closed, so returned files are deleted. */
+    private volatile boolean closed;
+
+    /**
+     * Creates a scratch space. The directory is created on the first lease.
+     *
+     * @param directory     the directory of the files, ideally on a fast local
+     *                      disk.
+     * @param quotaBytes    the maximum number of bytes written to the leased
+     *                      files at once.
+     * @param recycledFiles the maximum number of returned files kept for
+     *                      reuse, zero to delete them.
+     */
+    public ScratchSpace(final Path directory, final long quotaBytes, final int recycledFiles) {
+        if (quotaBytes < 0 || recycledFiles < 0) {
+            throw new IllegalArgumentException("Invalid scratch space (" + quotaBytes + ", " + recycledFiles + ")");
+        }
+        this.directory = directory;
+        this.quota = new Quota(this, quotaBytes, null);
+        this.recycledFiles = recycledFiles;
+        this.recycled = new LinkedBlockingQueue<>(Math.max(1, recycledFiles));
+        Runtime.getRuntime().addShutdownHook(cleanup);
+    }
+
+    /**
+     * Returns the space used by the polynomials created without an explicit
+     * space.
+     *
+     * @return the default space, in the temporary directory and without quota
+     *         unless changed.
+     */
+    public static ScratchSpace getDefault() {
+        return defaultSpace;
+    }
+
+    /**
+     * Changes the space used by the polynomials created from now on.
+     *
+     * @param space the new default space.
+     */
+    public static void setDefault(final ScratchSpace space) {
+        defaultSpace = space;
+    }
+
+    /**
+     * Returns the directory of the files.
+     *
+     * @return the directory.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the bytes written to the files leased now.
+     *
+     * @return the bytes charged to the global quota.
+     */
+    public long usedBytes() {
+        return quota.used.get();
+    }
+
+    /**
+     * Returns the number of files leased now.
+     *
+     * @return the number of files.
+     */
+    public int leasedFiles() {
+        return leased.size();
+    }
+
+    /**
+     * Returns the number of returned files kept for reuse.
+     *
+     * @return the number of files.
+     */
+    public int recycledFiles() {
+        return recycled.size();
+    }
+
+    /**
+     * Returns the global quota.
+     *
+     * @return the quota.
+     */
+    /* default */ Quota quota() {
+        return quota;
+    }
+
+    /**
+     * Returns a quota for one product, also charged to the global quota.
+     *
+     * @param bytes the maximum number of bytes, {@link Long#MAX_VALUE} for the
+     *              global quota only.
+     * @return the quota.
+     */
+    /* default */ Quota quota(final long bytes) {
+        return bytes == Long.MAX_VALUE ? quota : new Quota(this, bytes, quota);
+    }
+
+    /**
+     * Leases an empty file, a returned one if there is any.
+     *
+     * @param prefix the prefix of the name of a new file.
+     * @param owner  the quota charged with the writes to the file.
+     * @return the lease.
+     * @throws IOException if the file cannot be created.
+     */
+    /* default */ Lease lease(final String prefix, final Quota owner) throws IOException {
+        File file = recycled.poll();
+        if (file == null || !file.exists()) {
+            if (!created) {
+                Files.createDirectories(directory);
+                created = true;
+            }
+            file = Files.createTempFile(directory, prefix, ".tmp").toFile();
+        }
+        leased.add(file);
+        if (log.isTraceEnabled()) {
+            log.trace("Scratch file leased: {}", file);
+        }
+        return new Lease(file, owner);
+    }
+
+    private void giveBack(final Lease lease, final boolean recycle) {
+        leased.remove(lease.file);
+        lease.owner.credit(lease.charged.getAndSet(0));
+        try {
+            if (recycle && !closed && recycledFiles > 0 && recycled.size() < recycledFiles && lease.file.exists()) {
+                try (FileChannel channel = FileChannel.open(lease.file.toPath(), StandardOpenOption.WRITE)) {
+                    channel.truncate(0);
+                }
+                if (recycled.offer(lease.file)) {
+                    return;
+                }
+            }
+            Files.deleteIfExists(lease.file.toPath());
+        } catch (final IOException e) {
+            if (log.isWarnEnabled()) {
+                log.warn("Could not delete scratch file {}: {}", lease.file, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Removes the shutdown hook of the space and deletes the returned files.
+     * The files still leased are deleted when they are returned, so the
+     * polynomials of the space must be closed first for nothing to be left
+     * behind. The default space should not be closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            Runtime.getRuntime().removeShutdownHook(cleanup);
+        } catch (final IllegalStateException e) {
+            log.trace("Shutting down, the hook deletes the files: {}", e.getMessage());
+            return;
+        }
+        File file = recycled.poll();
+        while (file != null) {
+            if (!file.delete() && file.exists()) {
+                log.warn("Could not delete scratch file {}", file);
+            }
+            file = recycled.poll();
+        }
+    }
+
+    /** Deletes every leased and returned file, when the JVM exits. */
+    private void deleteAll() {
+        final List<File> files = new ArrayList<>(leased);
+        files.addAll(recycled);
+        for (final File file : files) {
+            if (!file.delete() && file.exists()) {
+                log.warn("Could not delete scratch file {}", file);
+            }
+        }
+    }
+
+    /**
+     * Limit of the bytes written to scratch files, optionally nested in a
+     * parent quota that is charged too.
+     */
+    /* default */ static final class Quota {
+        /** Space of the files. */
+        private final ScratchSpace space;
+        /** Maximum number of bytes. */
+        private final long limit;
+        /** Parent quota, {@code null} for the global quota. */
+        private final Quota parent;
+        /** Bytes charged. */
+        private final AtomicLong used = new AtomicLong();
+
+        private Quota(final ScratchSpace space, final long limit, final Quota parent) {
+            this.space = space;
+            this.limit = limit;
+            this.parent = parent;
+        }
+
+        /**
+         * Returns the space of the files.
+         *
+         * @return the scratch space.
+         */
+        /* default */ ScratchSpace space() {
+            return space;
+        }
+
+        private void charge(final long bytes) throws IOException {
+            if (used.addAndGet(bytes) > limit) {
+                used.addAndGet(-bytes);
+                throw new IOException("Scratch quota of " + limit + " bytes exceeded in " + space.directory);
+            }
+            if (parent != null) {
+                try {
+                    parent.charge(bytes);
+                } catch (final IOException e) {
+                    used.addAndGet(-bytes);
+                    throw e;
+                }
+            }
+        }
+
+        private void credit(final long bytes) {
+            used.addAndGet(-bytes);
+            if (parent != null) {
+                parent.credit(bytes);
+            }
+        }
+    }
+
+    /**
+     * Scratch file leased to an owner until it is released.
+     */
+    /* default */ final class Lease {
+        /** The file. */
+        private final File file;
+        /** Quota charged with the writes. */
+        private final Quota owner;
+        /** Bytes charged so far. */
+        private final AtomicLong charged = new AtomicLong();
+        /** Whether the file has been released. */
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(final File file, final Quota owner) {
+            this.file = file;
+            this.owner = owner;
+        }
+
+        /**
+         * Returns the file.
+         *
+         * @return the file.
+         */
+        /* default */ File file() {
+            return file;
+        }
+
+        /**
+         * Returns the quota charged with the writes.
+         *
+         * @return the quota.
+         */
+        /* default */ Quota quota() {
+            return owner;
+        }
+
+        /**
+         * Charges bytes about to be written to the file.
+         *
+         * @param bytes the number of bytes.
+         * @throws IOException if a quota would be exceeded.
+         */
+        /* default */ void charge(final long bytes) throws IOException {
+            owner.charge(bytes);
+            charged.addAndGet(bytes);
+        }
+
+        /**
+         * Returns the bytes charged so far.
+         *
+         * @return the bytes written to the file.
+         */
+        /* default */ long charged() {
+            return charged.get();
+        }
+
+        /**
+         * Replaces the file by the file of another lease, which is released
+         * without being deleted. Both leases must share the quota.
+         *
+         * @param source the lease of the new content.
+         * @throws IOException if the file cannot be moved.
+         */
+        /* default */ void replaceWith(final Lease source) throws IOException {
+            Files.move(source.file.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            source.released.set(true);
+            leased.remove(source.file);
+            owner.credit(charged.getAndSet(source.charged.getAndSet(0)));
+        }
+
+        /**
+         * Returns the file to the space, once; the file must not be used
+         * afterwards.
+         *
+         * @param recycle whether the file may be kept for reuse; a file that
+         *                may still be mapped by a reader is deleted instead.
+         */
+        /* default */ void release(final boolean recycle) {
+            if (released.compareAndSet(false, true)) {
+                giveBack(this, recycle);
+            }
+        }
+    }
+
+}
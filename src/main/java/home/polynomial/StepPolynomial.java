@@ -0,0 +1,214 @@
+package home.polynomial;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
+
+import lombok.Value;
+
+/**
+ * Symbolic step polynomial 1 + x<sup>k</sup> + x<sup>2k</sup> + … +
+ * x<sup>nk</sup>, the factor of a denomination k with n notes in the mixing
+ * problem. It is described by three numbers and expanded only when needed:
+ * to its n + 1 terms with {@link #toPolynomial(CoefficientRing)}, or to its
+ * n·k + 1 dense coefficients with {@link #coefficients()}.
+ * <p>
+ * Products of step polynomials use the closed form (1 −
+ * x<sup>k(n+1)</sup>) / (1 − x<sup>k</sup>): multiplying a dense array by a
+ * factor is a subtraction at distance k(n + 1) followed by running sums at
+ * distance k, so every factor costs one pass over the product, whatever its
+ * number of terms.
+ */
+@Value
+public class StepPolynomial {
+    /** Number of steps, the highest power of x<sup>k</sup>. */
+    int steps;
+    /** The step, the exponent of x in the first non-constant term. */
+    int step;
+    /** The name of the variable. */
+    String variable;
+
+    /**
+     * Creates the step polynomial 1 + x<sup>k</sup> + … + x<sup>nk</sup>.
+     *
+     * @param steps    the number of steps n, not negative.
+     * @param step     the step k, positive.
+     * @param variable the name of the variable.
+     * @throws IllegalArgumentException if n or k are out of range or the
+     *                                  degree overflows an exponent.
+     */
+    public StepPolynomial(final int steps, final int step, final String variable) {
+        if (steps < 0 || step < 1 || (long) steps * step > Monomial.MAX_EXPONENT) {
+            throw new IllegalArgumentException("Invalid step polynomial (" + steps + ", " + step + ")");
+        }
+        this.steps = steps;
+        this.step = step;
+        this.variable = variable;
+    }
+
+    /**
+     * Returns the degree n·k.
+     *
+     * @return the degree.
+     */
+    public int degree() {
+        return steps * step;
+    }
+
+    /**
+     * Returns the dense coefficients, 1 at every multiple of the step.
+     *
+     * @return the n·k + 1 coefficients, by ascending power.
+     */
+    public double[] coefficients() {
+        final double[] coefficients = new double[degree() + 1];
+        for (int i = 0; i <= steps; i++) {
+            coefficients[i * step] = 1;
+        }
+        return coefficients;
+    }
+
+    /**
+     * Returns the dense univariate function of commons-math.
+     *
+     * @return the function.
+     */
+    public PolynomialFunction toFunction() {
+        return new PolynomialFunction(coefficients());
+    }
+
+    /**
+     * Expands the n + 1 terms.
+     *
+     * @param ring the ring of the coefficients.
+     * @return the polynomial, with the terms in ascending order.
+     * @throws IOException if an error occurs while writing the temporary file.
+     */
+    public Polynomial toPolynomial(final CoefficientRing ring) throws IOException {
+        final Polynomial polynomial = new Polynomial(MonomialOrder.DEFAULT, ring);
+        final int index = Variables.indexOf(variable);
+        for (int i = 0; i <= steps; i++) {
+            polynomial.append(Monomial.of(index, i * step), ring.one());
+        }
+        polynomial.flush();
+        return polynomial;
+    }
+
+    /**
+     * Multiplies a dense univariate polynomial in place by this step
+     * polynomial, truncated to the length of the array.
+     *
+     * @param dense the coefficients by ascending power, elements of the ring.
+     * @param ring  the ring of the coefficients.
+     */
+    /* default */ void multiplyDense(final long[] dense, final CoefficientRing ring) {
+        final long minusOne = ring.fromLong(-1);
+        // Times 1 - x^(k(n+1)), from the top so every term still sees the old values
+        final long shift = (long) step * (steps + 1);
+        for (int j = dense.length - 1; j >= shift; j--) {
+            dense[j] = ring.add(dense[j], ring.multiply(minusOne, dense[j - (int) shift]));
+        }
+        // Divided by 1 - x^k: running sums at distance k
+        for (int j = step; j < dense.length; j++) {
+            dense[j] = ring.add(dense[j], dense[j - step]);
+        }
+    }
+
+    /**
+     * Multiplies step polynomials. The factors of every variable are combined
+     * by the closed form into a dense array of the summed degrees, and the
+     * variables, whose terms never collide, are combined by sparse products.
+     *
+     * @param factors the factors.
+     * @param ring    the ring of the coefficients.
+     * @return the product, the constant 1 without factors.
+     * @throws IOException if an error occurs while writing a temporary file.
+     */
+    public static Polynomial multiply(final List<StepPolynomial> factors, final CoefficientRing ring)
+            throws IOException {
+        final Map<String, List<StepPolynomial>> byVariable = new LinkedHashMap<>();
+        for (final StepPolynomial factor : factors) {
+            byVariable.computeIfAbsent(factor.variable, name -> new ArrayList<>()).add(factor);
+        }
+        Polynomial product = null;
+        try {
+            for (final Map.Entry<String, List<StepPolynomial>> entry : byVariable.entrySet()) {
+                final Polynomial univariate = univariate(entry.getKey(), entry.getValue(), ring);
+                if (product == null) {
+                    product = univariate;
+                } else {
+                    final Polynomial next;
+                    try {
+                        next = product.multiply(univariate);
+                    } finally {
+                        univariate.discard();
+                    }
+                    product.discard();
+                    product = next;
+                }
+            }
+            if (product == null) {
+                product = new Polynomial(MonomialOrder.DEFAULT, ring);
+                product.append(Monomial.ONE, ring.one());
+                product.flush();
+            }
+        } catch (IOException | RuntimeException e) {
+            // The intermediate products are not returned to anyone
+            if (product != null) {
+                product.discard();
+            }
+            throw e;
+        }
+        return product;
+    }
+
+    /**
+     * Returns the coefficients of the product of step polynomials once every
+     * variable is replaced by t, up to a degree.
+     *
+     * @param factors   the factors.
+     * @param maxDegree the highest degree computed.
+     * @param ring      the ring of the coefficients.
+     * @return the maxDegree + 1 coefficients, by ascending power.
+     */
+    public static long[] totalDegreeCoefficients(final List<StepPolynomial> factors, final int maxDegree,
+            final CoefficientRing ring) {
+        final long[] dense = new long[maxDegree + 1];
+        dense[0] = ring.one();
+        for (final StepPolynomial factor : factors) {
+            factor.multiplyDense(dense, ring);
+        }
+        return dense;
+    }
+
+    private static Polynomial univariate(final String variable, final List<StepPolynomial> factors,
+            final CoefficientRing ring) throws IOException {
+        int degree = 0;
+        for (final StepPolynomial factor : factors) {
+            degree = Math.addExact(degree, factor.degree());
+        }
+        if (degree > Monomial.MAX_EXPONENT) {
+            throw new ArithmeticException("Exponent overflow multiplying the factors of " + variable);
+        }
+        final long[] dense = totalDegreeCoefficients(factors, degree, ring);
+        final Polynomial polynomial = new Polynomial(MonomialOrder.DEFAULT, ring);
+        try {
+            final int index = Variables.indexOf(variable);
+            for (int power = 0; power <= degree; power++) {
+                if (!ring.isZero(dense[power])) {
+                    polynomial.append(Monomial.of(index, power), dense[power]);
+                }
+            }
+            polynomial.flush();
+        } catch (IOException | RuntimeException e) {
+            polynomial.discard();
+            throw e;
+        }
+        return polynomial;
+    }
+
+}
@@ -0,0 +1,339 @@
+package home.polynomial;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * In-memory accumulator that combines the coefficients of like terms. The
+ * terms keep the order in which they were first added.
+ * <p>
+ * The terms are stored as primitive records, the packed exponent words of
+ * {@link Monomial} followed by the coefficient, one after the other in
+ * insertion order, and found through an open-addressing table of record
+ * indexes with linear probing. There is no object per term, so millions of
+ * terms cost a few words each and nothing for the garbage collector to
+ * trace. The records can live outside the heap, in a direct buffer. All
+ * records have the width of the widest monomial added, so they are widened
+ * once when a monomial with more variables shows up.
+ */
+final class TermAccumulator {
+    /** Records allocated at first. */
+    private static final int INITIAL_CAPACITY = 64;
+    /** Empty slot of the table; the other slots hold a record index plus one. */
+    private static final int EMPTY = 0;
+
+    /** Ring of the coefficients. */
+    private final CoefficientRing ring;
+    /** Whether the records live outside the heap. */
+    private final boolean offHeap;
+    /** Exponent words per record. */
+    private int stride = 1;
+    /** Records in use. */
+    private int size;
+    /** Records that fit in {@link #records}. */
+    private int capacity;
+    /** The records, {@link #stride} words and a coefficient each. */
+    private Records records;
+    /** Open-addressing table, twice the capacity, a power of two. */
+    private int[] table;
+    /** Words of the monomial being added or looked up. */
+    private long[] key = new long[1];
+
+    /**
+     * Creates an empty accumulator on the heap.
+     *
+     * @param ring the ring of the coefficients.
+     */
+    /* default */ TermAccumulator(final CoefficientRing ring) {
+        this(ring, false);
+    }
+
+    /**
+     * Creates an empty accumulator.
+     *
+     * @param ring    the ring of the coefficients.
+     * @param offHeap whether the records live in a direct buffer outside the
+     *                heap.
+     */
+    /* default */ TermAccumulator(final CoefficientRing ring, final boolean offHeap) {
+        this.ring = ring;
+        this.offHeap = offHeap;
+        capacity = INITIAL_CAPACITY;
+        records = allocate(capacity * (stride + 1));
+        table = new int[capacity * 2];
+    }
+
+    /**
+     * Adds a term, combining it with the accumulated one of the same monomial.
+     *
+     * @param monomial    the monomial of the term.
+     * @param coefficient the coefficient of the term.
+     */
+    /* default */ void add(final Monomial monomial, final long coefficient) {
+        if (monomial.words() > stride) {
+            resize(capacity, monomial.words());
+        }
+        for (int i = 0; i < stride; i++) {
+            key[i] = monomial.word(i);
+        }
+        addKey(coefficient);
+    }
+
+    /**
+     * Adds all the terms of another accumulator, in their insertion order.
+     *
+     * @param other the other accumulator.
+     */
+    /* default */ void addAll(final TermAccumulator other) {
+        if (other.stride > stride) {
+            resize(capacity, other.stride);
+        }
+        for (int index = 0; index < other.size; index++) {
+            final int base = index * (other.stride + 1);
+            for (int i = 0; i < stride; i++) {
+                key[i] = i < other.stride ? other.records.get(base + i) : 0;
+            }
+            addKey(other.records.get(base + other.stride));
+        }
+    }
+
+    private void addKey(final long coefficient) {
+        int slot = find();
+        if (table[slot] == EMPTY) {
+            if (size == capacity) {
+                resize(Math.multiplyExact(capacity, 2), stride);
+                slot = find();
+            }
+            final int base = size * (stride + 1);
+            for (int i = 0; i < stride; i++) {
+                records.set(base + i, key[i]);
+            }
+            records.set(base + stride, coefficient);
+            table[slot] = ++size;
+        } else {
+            final int position = (table[slot] - 1) * (stride + 1) + stride;
+            records.set(position, ring.add(records.get(position), coefficient));
+        }
+    }
+
+    /**
+     * Returns the slot of the key in the table, or the empty slot where it
+     * belongs.
+     */
+    private int find() {
+        final int mask = table.length - 1;
+        long hash = 0;
+        for (int i = 0; i < stride; i++) {
+            hash = hash * 31 + key[i];
+        }
+        int slot = mix(hash) & mask;
+        while (table[slot] != EMPTY && !matches(table[slot] - 1)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean matches(final int index) {
+        final int base = index * (stride + 1);
+        for (int i = 0; i < stride; i++) {
+            if (records.get(base + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int mix(final long hash) {
+        final long mixed = hash * 0x9E37_79B9_7F4A_7C15L;
+        return (int) (mixed ^ mixed >>> 32);
+    }
+
+    /**
+     * Moves the records to a new capacity and width and rebuilds the table.
+     */
+    private void resize(final int newCapacity, final int newStride) {
+        final Records resized = allocate(Math.multiplyExact(newCapacity, newStride + 1));
+        for (int index = 0; index < size; index++) {
+            final int from = index * (stride + 1);
+            final int to = index * (newStride + 1);
+            for (int i = 0; i < stride; i++) {
+                resized.set(to + i, records.get(from + i));
+            }
+            resized.set(to + newStride, records.get(from + stride));
+        }
+        records = resized;
+        capacity = newCapacity;
+        stride = newStride;
+        key = Arrays.copyOf(key, newStride);
+        table = new int[Math.multiplyExact(newCapacity, 2)];
+        final int mask = table.length - 1;
+        for (int index = 0; index < size; index++) {
+            long hash = 0;
+            for (int i = 0; i < stride; i++) {
+                hash = hash * 31 + records.get(index * (stride + 1) + i);
+            }
+            int slot = mix(hash) & mask;
+            while (table[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = index + 1;
+        }
+    }
+
+    private Records allocate(final int length) {
+        return offHeap ? new DirectRecords(length) : new HeapRecords(length);
+    }
+
+    /**
+     * Returns the number of distinct monomials accumulated.
+     *
+     * @return the number of terms.
+     */
+    /* default */ int size() {
+        return size;
+    }
+
+    /**
+     * Appends the accumulated terms with a non-zero coefficient to the sink of
+     * a polynomial and empties the accumulator.
+     *
+     * @param polynomial the polynomial that receives the terms.
+     * @throws IOException if an error occurs while writing the temporary file.
+     */
+    /* default */ void drainTo(final Polynomial polynomial) throws IOException {
+        drainTo(polynomial.sink());
+    }
+
+    /**
+     * Passes the accumulated terms with a non-zero coefficient to a consumer,
+     * in insertion order, and empties the accumulator.
+     *
+     * @param consumer the consumer of the terms.
+     * @throws IOException if the consumer fails to store a term.
+     */
+    /* default */ void drainTo(final TermConsumer consumer) throws IOException {
+        for (int index = 0; index < size; index++) {
+            final long coefficient = coefficient(index);
+            if (!ring.isZero(coefficient)) {
+                consumer.accept(monomial(index), coefficient);
+            }
+        }
+        clear();
+    }
+
+    /**
+     * Passes the accumulated terms with a non-zero coefficient to a consumer,
+     * sorted by monomial, and empties the accumulator.
+     *
+     * @param comparator the monomial order.
+     * @param consumer   the consumer of the terms.
+     * @throws IOException if the consumer fails to store a term.
+     */
+    /* default */ void drainSorted(final Comparator<Monomial> comparator, final TermConsumer consumer)
+            throws IOException {
+        final Monomial[] sorted = new Monomial[size];
+        int count = 0;
+        for (int index = 0; index < size; index++) {
+            if (!ring.isZero(coefficient(index))) {
+                sorted[count++] = monomial(index);
+            }
+        }
+        Arrays.sort(sorted, 0, count, comparator);
+        for (int i = 0; i < count; i++) {
+            for (int word = 0; word < stride; word++) {
+                key[word] = sorted[i].word(word);
+            }
+            consumer.accept(sorted[i], coefficient(table[find()] - 1));
+        }
+        clear();
+    }
+
+    private Monomial monomial(final int index) {
+        final long[] words = new long[stride];
+        final int base = index * (stride + 1);
+        for (int i = 0; i < stride; i++) {
+            words[i] = records.get(base + i);
+        }
+        return Monomial.ofWords(words);
+    }
+
+    private long coefficient(final int index) {
+        return records.get(index * (stride + 1) + stride);
+    }
+
+    /**
+     * Empties the accumulator, keeping its memory for the next terms. A few
+     * records are unlinked from the table one by one, in reverse order of
+     * insertion so the probe chain of every record is still intact when it is
+     * looked up; many records are cleared with the whole table.
+     */
+    /* default */ void clear() {
+        if (size < table.length / 8) {
+            for (int index = size - 1; index >= 0; index--) {
+                final int base = index * (stride + 1);
+                for (int i = 0; i < stride; i++) {
+                    key[i] = records.get(base + i);
+                }
+                table[find()] = EMPTY;
+            }
+        } else {
+            Arrays.fill(table, EMPTY);
+        }
+        size = 0;
+    }
+
+    /**
+     * Storage of the records.
+     */
+    private interface Records {
+        long get(int index);
+
+        void set(int index, long value);
+    }
+
+    /** Records in a heap array. */
+    private static final class HeapRecords implements Records {
+        /** The words. */
+        private final long[] words;
+
+        private HeapRecords(final int length) {
+            words = new long[length];
+        }
+
+        @Override
+        public long get(final int index) {
+            return words[index];
+        }
+
+        @Override
+        public void set(final int index, final long value) {
+            words[index] = value;
+        }
+    }
+
+    /** Records in a direct buffer, released when the buffer is collected. */
+    private static final class DirectRecords implements Records {
+        /** The words. */
+        private final LongBuffer words;
+
+        private DirectRecords(final int length) {
+            words = ByteBuffer.allocateDirect(Math.multiplyExact(length, Long.BYTES)).order(ByteOrder.nativeOrder())
+                    .asLongBuffer();
+        }
+
+        @Override
+        public long get(final int index) {
+            return words.get(index);
+        }
+
+        @Override
+        public void set(final int index, final long value) {
+            words.put(index, value);
+        }
+    }
+
+}
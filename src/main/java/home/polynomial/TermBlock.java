@@ -0,0 +1,184 @@
+package home.polynomial;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Block of parsed terms held in memory, so they can be multiplied many times
+ * without reading or parsing their text again.
+ */
+final class TermBlock {
+    /** Monomials of the terms. */
+    private final Monomial[] monomials;
+    /** Coefficients of the terms. */
+    private final long[] coefficients;
+    /** Number of terms of the block. */
+    private final int size;
+    /** Total degrees of the terms, ascending, when sorted by degree. */
+    private final int[] degrees;
+
+    private TermBlock(final Monomial[] monomials, final long[] coefficients, final int size,
+            final int... degrees) {
+        this.monomials = monomials;
+        this.coefficients = coefficients;
+        this.size = size;
+        this.degrees = degrees;
+    }
+
+    /**
+     * Reads the next terms of a term file.
+     *
+     * @param reader   the reader of the term file.
+     * @param maxTerms the maximum number of terms to read.
+     * @return the block, empty at the end of the file.
+     * @throws IOException if an error occurs while reading the file.
+     */
+    /* default */ static TermBlock read(final TermReader reader, final int maxTerms) throws IOException {
+        final int capacity = Math.max(1, maxTerms);
+        Monomial[] monomials = new Monomial[Math.min(capacity, 1024)];
+        long[] coefficients = new long[monomials.length];
+        int size = 0;
+        while (size < capacity && reader.next()) {
+            if (size == monomials.length) {
+                final int length = (int) Math.min(capacity, 2L * size);
+                monomials = Arrays.copyOf(monomials, length);
+                coefficients = Arrays.copyOf(coefficients, length);
+            }
+            monomials[size] = reader.monomial();
+            coefficients[size] = reader.coefficient();
+            size++;
+        }
+        return new TermBlock(monomials, coefficients, size, (int[]) null);
+    }
+
+    /**
+     * Reads a whole term file sorted by monomial, with like terms combined and
+     * the terms with a zero coefficient dropped.
+     *
+     * @param source     the term file.
+     * @param comparator the order of the terms.
+     * @param runTerms   the maximum number of distinct terms the sorter keeps
+     *                   in memory before spilling a run.
+     * @param quota      the quota charged with the runs.
+     * @return the sorted block.
+     * @throws IOException if an error occurs while reading or writing a file.
+     */
+    /* default */ static TermBlock sorted(final File source, final Comparator<Monomial> comparator,
+            final int runTerms, final ScratchSpace.Quota quota) throws IOException {
+        final Monomial[][] monomials = { new Monomial[1024] };
+        final long[][] coefficients = { new long[1024] };
+        final int[] size = { 0 };
+        new TermSorter(comparator, runTerms, quota).sort(source, (monomial, coefficient) -> {
+            if (size[0] == monomials[0].length) {
+                monomials[0] = Arrays.copyOf(monomials[0], 2 * size[0]);
+                coefficients[0] = Arrays.copyOf(coefficients[0], 2 * size[0]);
+            }
+            monomials[0][size[0]] = monomial;
+            coefficients[0][size[0]] = coefficient;
+            size[0]++;
+        });
+        return new TermBlock(monomials[0], coefficients[0], size[0], (int[]) null);
+    }
+
+    /**
+     * Returns the terms of this block that lie inside a window, in their
+     * order.
+     *
+     * @param window the window of kept terms.
+     * @return the filtered block.
+     */
+    /* default */ TermBlock filter(final DegreeWindow window) {
+        final Monomial[] keptMonomials = new Monomial[size];
+        final long[] keptCoefficients = new long[size];
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (window.admits(monomials[i])) {
+                keptMonomials[kept] = monomials[i];
+                keptCoefficients[kept] = coefficients[i];
+                kept++;
+            }
+        }
+        return new TermBlock(keptMonomials, keptCoefficients, kept, (int[]) null);
+    }
+
+    /**
+     * Returns the terms of this block that lie inside a window, sorted by
+     * total degree so {@link #upperBound(int)} can cut off whole ranges.
+     *
+     * @param window the window of kept terms.
+     * @return the truncated block.
+     */
+    /* default */ TermBlock truncate(final DegreeWindow window) {
+        final TermBlock kept = filter(window);
+        final Integer[] sorted = new Integer[kept.size];
+        for (int i = 0; i < kept.size; i++) {
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, (i, j) -> Integer.compare(kept.monomials[i].degree(), kept.monomials[j].degree()));
+        final Monomial[] truncatedMonomials = new Monomial[kept.size];
+        final long[] truncatedCoefficients = new long[kept.size];
+        final int[] truncatedDegrees = new int[kept.size];
+        for (int i = 0; i < kept.size; i++) {
+            truncatedMonomials[i] = kept.monomials[sorted[i]];
+            truncatedCoefficients[i] = kept.coefficients[sorted[i]];
+            truncatedDegrees[i] = truncatedMonomials[i].degree();
+        }
+        return new TermBlock(truncatedMonomials, truncatedCoefficients, kept.size, truncatedDegrees);
+    }
+
+    /**
+     * Returns the number of leading terms whose total degree does not exceed
+     * a limit. Blocks not sorted by degree return their size.
+     *
+     * @param maxDegree the degree limit.
+     * @return the index of the first term above the limit.
+     */
+    /* default */ int upperBound(final int maxDegree) {
+        if (degrees == null) {
+            return size;
+        }
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            final int middle = low + high >>> 1;
+            if (degrees[middle] <= maxDegree) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the number of terms.
+     *
+     * @return the number of terms.
+     */
+    /* default */ int size() {
+        return size;
+    }
+
+    /**
+     * Returns the monomial of a term.
+     *
+     * @param index the index of the term.
+     * @return the monomial.
+     */
+    /* default */ Monomial monomial(final int index) {
+        return monomials[index];
+    }
+
+    /**
+     * Returns the coefficient of a term.
+     *
+     * @param index the index of the term.
+     * @return the coefficient.
+     */
+    /* default */ long coefficient(final int index) {
+        return coefficients[index];
+    }
+
+}
@@ -0,0 +1,21 @@
+package home.polynomial;
+
+import java.io.IOException;
+
+/**
+ * Receives the terms produced by a polynomial operation, one at a time.
+ */
+@FunctionalInterface
+interface TermConsumer {
+
+    /**
+     * Accepts a term.
+     *
+     * @param monomial    the monomial of the term.
+     * @param coefficient the coefficient of the term, an element of the
+     *                    {@link CoefficientRing} of the operation.
+     * @throws IOException if an error occurs while storing the term.
+     */
+    void accept(Monomial monomial, long coefficient) throws IOException;
+
+}
@@ -0,0 +1,273 @@
+package home.polynomial;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary layout of a term file. All values are little endian.
+ *
+ * <pre>
+ * header   magic “PTRM” (int), version (short), coefficient type (short),
+ *          words per term (int), modulus (unsigned int), term count (long),
+ *          offset of the variable table (long)
+ * records  term count × (words per term × packed exponent word (long),
+ *          coefficient (long))
+ * table    variable count (int), then every name as a length (short) and
+ *          its UTF-8 bytes, in the order of the exponent fields
+ * </pre>
+ *
+ * A compressed file, of version {@value #COMPRESSED_VERSION}, replaces the
+ * records by blocks of terms encoded by {@link BlockCodec}, and the offset in
+ * the header is the one of the block index, followed by the variable table:
+ *
+ * <pre>
+ * blocks   block count × (term count (int), words per term (int), encoded
+ *          length (int), compressed length (int), compressed bytes)
+ * index    block count (int), then the offset (long) and the first term
+ *          (long) of every block
+ * </pre>
+ *
+ * Records are fixed width, so a file is scanned with plain loads and without
+ * parsing; the exponent words are the ones of {@link Monomial}, padded with
+ * zero words, and the coefficient is an element of the
+ * {@link CoefficientRing} given by the coefficient type and the modulus. The
+ * variable table maps the fields back to names, so a file can be read by a
+ * process that interned its variables in another order. An empty file has no
+ * terms.
+ */
+final class TermFormat {
+    /** Magic number, “PTRM”. */
+    /* default */ static final int MAGIC = 0x4D525450;
+    /** Version of the layout. */
+    /* default */ static final short VERSION = 1;
+    /** Version of the compressed layout. */
+    /* default */ static final short COMPRESSED_VERSION = 2;
+    /** Size of the header in bytes. */
+    /* default */ static final int HEADER_BYTES = 32;
+    /** Byte order of every value. */
+    /* default */ static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private TermFormat() {
+        // Utility class, not meant to be instantiated.
+    }
+
+    /**
+     * Returns the size of a record.
+     *
+     * @param words the exponent words per term.
+     * @return the size in bytes.
+     */
+    /* default */ static int recordBytes(final int words) {
+        return (words + 1) * Long.BYTES;
+    }
+
+    /**
+     * Returns the words needed by the exponents of the interned variables.
+     *
+     * @return the number of words.
+     */
+    /* default */ static int wordsForVariables() {
+        return (Variables.count() + Monomial.FIELDS_PER_WORD - 1) / Monomial.FIELDS_PER_WORD;
+    }
+
+    /**
+     * Reads the header of a non-empty term file.
+     *
+     * @param channel the channel of the file.
+     * @return the header.
+     * @throws IOException if the file is not a term file of a known version.
+     */
+    /* default */ static Header readHeader(final FileChannel channel) throws IOException {
+        final ByteBuffer buffer = read(channel, 0, HEADER_BYTES);
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a term file");
+        }
+        final short version = buffer.getShort();
+        if (version != VERSION && version != COMPRESSED_VERSION) {
+            throw new IOException("Unsupported term file version " + version);
+        }
+        final short coefficientType = buffer.getShort();
+        final int words = buffer.getInt();
+        final long modulus = Integer.toUnsignedLong(buffer.getInt());
+        final CoefficientRing ring;
+        try {
+            ring = CoefficientRing.of(coefficientType, modulus);
+        } catch (final IllegalArgumentException e) {
+            throw new IOException("Unsupported term file: " + e.getMessage(), e);
+        }
+        final long terms = buffer.getLong();
+        final long tableOffset = buffer.getLong();
+        final boolean compressed = version == COMPRESSED_VERSION;
+        if (compressed ? tableOffset < HEADER_BYTES || tableOffset > channel.size()
+                : tableOffset != HEADER_BYTES + terms * recordBytes(words)) {
+            throw new IOException("Corrupt term file: " + terms + " terms end before " + tableOffset);
+        }
+        return new Header(words, terms, tableOffset, ring, compressed);
+    }
+
+    /**
+     * Writes the header of a term file.
+     *
+     * @param channel the channel of the file.
+     * @param header  the header.
+     * @throws IOException if an error occurs while writing the file.
+     */
+    /* default */ static void writeHeader(final FileChannel channel, final Header header) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES).order(BYTE_ORDER);
+        buffer.putInt(MAGIC).putShort(header.compressed() ? COMPRESSED_VERSION : VERSION)
+                .putShort(header.ring().type()).putInt(header.words())
+                .putInt((int) header.ring().modulus()).putLong(header.terms()).putLong(header.tableOffset()).flip();
+        write(channel, buffer, 0);
+    }
+
+    /**
+     * Reads the variable table of a term file and returns, for every exponent
+     * field of the file, the index of its variable in this process.
+     *
+     * @param channel the channel of the file.
+     * @param header  the header of the file.
+     * @return the variable index of every field.
+     * @throws IOException if an error occurs while reading the file.
+     */
+    /* default */ static int[] readVariables(final FileChannel channel, final Header header) throws IOException {
+        long position = header.tableOffset();
+        if (header.compressed()) {
+            position += BlockCodec.indexBytes(read(channel, position, Integer.BYTES).getInt());
+        }
+        final ByteBuffer buffer = read(channel, position, (int) (channel.size() - position));
+        final int[] variables = new int[buffer.getInt()];
+        for (int i = 0; i < variables.length; i++) {
+            final byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            variables[i] = Variables.indexOf(new String(name, StandardCharsets.UTF_8));
+        }
+        return variables;
+    }
+
+    /**
+     * Writes the table of the interned variables.
+     *
+     * @param channel  the channel of the file.
+     * @param position the offset of the table.
+     * @throws IOException if an error occurs while writing the file.
+     */
+    /* default */ static void writeVariables(final FileChannel channel, final long position) throws IOException {
+        final int count = Variables.count();
+        final byte[][] names = new byte[count][];
+        int size = Integer.BYTES;
+        for (int i = 0; i < count; i++) {
+            names[i] = Variables.nameOf(i).getBytes(StandardCharsets.UTF_8);
+            size += Short.BYTES + names[i].length;
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate(size).order(BYTE_ORDER);
+        buffer.putInt(count);
+        for (final byte[] name : names) {
+            buffer.putShort((short) name.length).put(name);
+        }
+        buffer.flip();
+        write(channel, buffer, position);
+    }
+
+    /**
+     * Reads a text term file, one “key=coefficient” line per term.
+     *
+     * @param source   the text file.
+     * @param ring     the ring of the coefficients.
+     * @param consumer the consumer of the terms.
+     * @throws IOException if an error occurs while reading the file.
+     */
+    /* default */ static void readText(final Path source, final CoefficientRing ring, final TermConsumer consumer)
+            throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(source)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    final int separator = line.lastIndexOf('=');
+                    consumer.accept(Monomial.parse(line.substring(0, separator).trim()),
+                            ring.parse(line.substring(separator + 1).trim()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a consumer that writes terms as “key=coefficient” lines.
+     *
+     * @param writer the writer of the text file.
+     * @param ring   the ring of the coefficients.
+     * @return the consumer.
+     */
+    /* default */ static TermConsumer textWriter(final BufferedWriter writer, final CoefficientRing ring) {
+        return (monomial, coefficient) -> {
+            writer.write(monomial + "=" + ring.format(coefficient));
+            writer.newLine();
+        };
+    }
+
+    /**
+     * Reads bytes of a file.
+     *
+     * @param channel  the channel of the file.
+     * @param position the offset of the bytes.
+     * @param size     the number of bytes.
+     * @return the bytes, ready to be read in {@link #BYTE_ORDER}.
+     * @throws IOException if the file ends before.
+     */
+    /* default */ static ByteBuffer read(final FileChannel channel, final long position, final int size)
+            throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(size).order(BYTE_ORDER);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Truncated term file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void write(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    /**
+     * Header of a term file.
+     *
+     * @param words       the exponent words per term.
+     * @param terms       the number of terms.
+     * @param tableOffset the offset of the variable table, right after the
+     *                    records, or of the block index of a compressed file.
+     * @param ring        the ring of the coefficients.
+     * @param compressed  whether the terms are compressed in blocks.
+     */
+    /* default */ record Header(int words, long terms, long tableOffset, CoefficientRing ring,
+            boolean compressed) {
+    }
+
+    /**
+     * Indicates whether a term file is compressed.
+     *
+     * @param file the term file.
+     * @return {@code true} if the terms are compressed in blocks; an empty
+     *         file is not.
+     * @throws IOException if the file cannot be read or is not a term file.
+     */
+    /* default */ static boolean isCompressed(final File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.size() > 0 && readHeader(channel).compressed();
+        }
+    }
+
+}
@@ -0,0 +1,245 @@
+package home.polynomial;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Cursor over the terms of a binary term file in the {@link TermFormat}
+ * layout. The records are read through windows of a memory mapping, so a
+ * large operand is scanned without copying it to the heap or parsing it.
+ * The current term is exposed through {@link #monomial()} and
+ * {@link #coefficient()} after every successful call to {@link #next()}.
+ * <p>
+ * A compressed file is read one {@link BlockCodec} block at a time. Both
+ * layouts can {@link #seek(long) seek} to any term, so several readers can
+ * scan disjoint ranges of the same file in parallel.
+ */
+final class TermReader implements Closeable {
+    /** Maximum size of a mapped window in bytes. */
+    private static final long WINDOW_BYTES = 1L << 26;
+
+    /** Channel of the term file. */
+    private final FileChannel channel;
+    /** Exponent words per record. */
+    private final int words;
+    /** Size of a record in bytes. */
+    private final int recordBytes;
+    /** Ring of the coefficients. */
+    private final CoefficientRing ring;
+    /** Variable index of every exponent field, {@code null} if unchanged. */
+    private final int[] variables;
+    /** Number of terms of the file. */
+    private final long terms;
+    /** Index of the blocks of a compressed file, {@code null} for records. */
+    private final BlockCodec.Index index;
+    /** Decoder of the current block of a compressed file. */
+    private final BlockCodec.Decoder decoder;
+    /** Next block to decode. */
+    private int block;
+    /** Number of terms not mapped yet. */
+    private long unmapped;
+    /** Offset of the first record not mapped yet. */
+    private long offset;
+    /** Current window of records. */
+    private MappedByteBuffer window;
+    /** Offset of the first record of the current window. */
+    private long windowOffset;
+    /** Monomial of the current term. */
+    private Monomial monomial;
+    /** Coefficient of the current term. */
+    private long coefficient;
+
+    /**
+     * Opens a term file.
+     *
+     * @param file the term file.
+     * @throws IOException if the file cannot be opened or is not a term file.
+     */
+    /* default */ TermReader(final File file) throws IOException {
+        this(file, null);
+    }
+
+    /**
+     * Opens a term file whose coefficients must belong to a ring.
+     *
+     * @param file the term file.
+     * @param ring the expected ring, or {@code null} to accept any ring; an
+     *             empty file belongs to every ring.
+     * @throws IOException if the file cannot be opened, is not a term file or
+     *                     belongs to another ring.
+     */
+    /* default */ TermReader(final File file, final CoefficientRing ring) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            if (channel.size() == 0) {
+                words = 0;
+                variables = null;
+                terms = 0;
+                index = null;
+                this.ring = ring == null ? CoefficientRing.DOUBLE : ring;
+            } else {
+                final TermFormat.Header header = TermFormat.readHeader(channel);
+                if (ring != null && !ring.equals(header.ring())) {
+                    throw new IOException("Coefficients of " + file.getName() + " are " + header.ring() + ", not "
+                            + ring);
+                }
+                this.ring = header.ring();
+                words = header.words();
+                terms = header.terms();
+                unmapped = terms;
+                variables = remapping(TermFormat.readVariables(channel, header));
+                index = header.compressed() ? BlockCodec.Index.read(channel, header) : null;
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        recordBytes = TermFormat.recordBytes(words);
+        offset = TermFormat.HEADER_BYTES;
+        decoder = index == null ? null : new BlockCodec.Decoder();
+    }
+
+    /**
+     * Returns the number of terms of the file.
+     *
+     * @return the number of terms.
+     */
+    /* default */ long terms() {
+        return terms;
+    }
+
+    /**
+     * Moves before a term, so the next call to {@link #next()} reads it.
+     *
+     * @param term the index of the term, from zero to {@link #terms()}.
+     * @throws IOException if an error occurs while reading the file.
+     */
+    /* default */ void seek(final long term) throws IOException {
+        if (term < 0 || term > terms) {
+            throw new IndexOutOfBoundsException("Term " + term + " of " + terms);
+        }
+        if (index == null) {
+            final long target = TermFormat.HEADER_BYTES + term * recordBytes;
+            if (window != null && target >= windowOffset && target < windowOffset + window.limit()) {
+                // Inside the current window: random reads do not map it again
+                window.position((int) (target - windowOffset));
+            } else {
+                window = null;
+                offset = target;
+                unmapped = terms - term;
+            }
+            return;
+        }
+        block = index.blockOf(term);
+        if (block < 0 || term == terms) {
+            // Past the last term
+            block = index.size();
+            decoder.clear();
+            return;
+        }
+        decoder.load(channel, index.offset(block));
+        for (long skipped = index.firstTerm(block++); skipped < term; skipped++) {
+            decoder.next();
+        }
+    }
+
+    /**
+     * Returns the remapping of the exponent fields, or {@code null} when every
+     * field keeps its index, as in the files written by this process.
+     */
+    private static int[] remapping(final int... variables) {
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i] != i) {
+                return variables;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Moves to the next term.
+     *
+     * @return {@code false} at the end of the file.
+     * @throws IOException if an error occurs while reading the file.
+     */
+    /* default */ boolean next() throws IOException {
+        if (decoder != null) {
+            while (!decoder.next()) {
+                if (block == index.size()) {
+                    return false;
+                }
+                decoder.load(channel, index.offset(block++));
+            }
+            coefficient = decoder.coefficient();
+            monomial = variables == null ? decoder.monomial() : remap(decoder.monomial());
+            return true;
+        }
+        if (window == null || !window.hasRemaining()) {
+            if (unmapped == 0) {
+                return false;
+            }
+            final long records = Math.min(unmapped, Math.max(1, WINDOW_BYTES / recordBytes));
+            window = channel.map(FileChannel.MapMode.READ_ONLY, offset, records * recordBytes);
+            window.order(TermFormat.BYTE_ORDER);
+            windowOffset = offset;
+            offset += records * recordBytes;
+            unmapped -= records;
+        }
+        final long[] packed = new long[words];
+        for (int i = 0; i < words; i++) {
+            packed[i] = window.getLong();
+        }
+        coefficient = window.getLong();
+        monomial = variables == null ? Monomial.ofWords(packed) : remap(Monomial.ofWords(packed));
+        return true;
+    }
+
+    private Monomial remap(final Monomial packed) {
+        final int[] exponents = new int[variables.length];
+        for (int field = 0; field < variables.length; field++) {
+            exponents[field] = packed.exponent(field);
+        }
+        return Monomial.of(variables, exponents);
+    }
+
+    /**
+     * Returns the monomial of the current term.
+     *
+     * @return the monomial.
+     */
+    /* default */ Monomial monomial() {
+        return monomial;
+    }
+
+    /**
+     * Returns the coefficient of the current term.
+     *
+     * @return the coefficient, an element of {@link #ring()}.
+     */
+    /* default */ long coefficient() {
+        return coefficient;
+    }
+
+    /**
+     * Returns the ring of the coefficients.
+     *
+     * @return the ring.
+     */
+    /* default */ CoefficientRing ring() {
+        return ring;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        if (decoder != null) {
+            decoder.end();
+        }
+        channel.close();
+    }
+
+}
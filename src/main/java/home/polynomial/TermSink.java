@@ -0,0 +1,121 @@
+package home.polynomial;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Long-lived sink of the terms added to a {@link Polynomial}. The term file is
+ * opened on the first term and kept open, so consecutive terms are batched in
+ * the write buffer of a {@link TermWriter} instead of reopening the file for
+ * every term. The sink must be closed before the file is read: closing writes
+ * the pending terms and the header and releases the file, and the next term
+ * opens it again.
+ */
+final class TermSink implements TermConsumer, Closeable {
+    /** Lease of the term file of the polynomial. */
+    private final ScratchSpace.Lease lease;
+    /** Ring of the coefficients. */
+    private final CoefficientRing ring;
+    /** Size of the write buffer in bytes. */
+    private int bufferBytes = TermWriter.DEFAULT_BUFFER_BYTES;
+    /** Whether the write buffer is a direct buffer. */
+    private boolean direct;
+    /** Limit of the write bandwidth, {@code null} for none. */
+    private IoThrottle throttle;
+    /** Whether a new term file is compressed. */
+    private boolean compressed;
+    /** Counters of the running product, {@code null} when not in a product. */
+    private ProductProgress progress;
+    /** Open writer of the term file, {@code null} when closed. */
+    private TermWriter writer;
+
+    /**
+     * Creates the sink of a term file.
+     *
+     * @param lease the lease of the term file, charged with the writes.
+     * @param ring  the ring of the coefficients.
+     */
+    /* default */ TermSink(final ScratchSpace.Lease lease, final CoefficientRing ring) {
+        this.lease = lease;
+        this.ring = ring;
+    }
+
+    /**
+     * Sets the write buffer, the bandwidth limit and the layout used the next
+     * time the file is opened, from the options of a product.
+     *
+     * @param options the multiplication options.
+     */
+    /* default */ void configure(final MultiplyOptions options) {
+        if (options.getWriteBufferBytes() < 1) {
+            throw new IllegalArgumentException("The buffer size must be positive: " + options.getWriteBufferBytes());
+        }
+        this.bufferBytes = options.getWriteBufferBytes();
+        this.direct = options.isDirectBuffer();
+        this.throttle = options.getIoThrottle();
+        this.compressed = options.isCompressed();
+    }
+
+    /**
+     * Sets the counters of the product whose terms are written.
+     *
+     * @param progress the counters, {@code null} when the product is done.
+     */
+    /* default */ void track(final ProductProgress progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Returns the counters of the product whose terms are written.
+     *
+     * @return the counters, {@code null} when not in a product.
+     */
+    /* default */ ProductProgress progress() {
+        return progress;
+    }
+
+    /**
+     * Adds a term, opening the term file if needed.
+     *
+     * @param monomial    the monomial of the term.
+     * @param coefficient the coefficient of the term.
+     * @throws IOException if an error occurs while writing the file.
+     */
+    @Override
+    public void accept(final Monomial monomial, final long coefficient) throws IOException {
+        if (writer == null) {
+            writer = TermWriter.append(lease.file(), ring, bufferBytes, direct, compressed);
+            writer.throttle(throttle);
+            writer.account(lease);
+        }
+        writer.accept(monomial, coefficient);
+        if (progress != null) {
+            progress.emit();
+        }
+    }
+
+    /**
+     * Indicates whether the term file is open for writing.
+     *
+     * @return {@code true} if there may be terms not readable yet.
+     */
+    /* default */ boolean isOpen() {
+        return writer != null;
+    }
+
+    /**
+     * Writes the pending terms and the header, so the file can be read, and
+     * releases the file.
+     *
+     * @throws IOException if an error occurs while writing the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            final TermWriter open = writer;
+            writer = null;
+            open.close();
+        }
+    }
+
+}
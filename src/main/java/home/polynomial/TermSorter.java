@@ -0,0 +1,221 @@
+package home.polynomial;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * External-memory sort-merge of a term file. Terms are combined in memory up
+ * to a budget of distinct monomials; every time the budget is reached the
+ * combined terms are spilled, sorted, to a run file. The runs are then merged
+ * with a k-way merge that combines the coefficients of like terms, so memory
+ * stays bounded no matter how large the polynomial is. At most a fan-in of
+ * runs are open at once: with more runs, groups of them are first merged into
+ * longer runs, in as many passes as needed. The runs are leased
+ * from the scratch space of a quota, the one of the sorted polynomial or of
+ * the product being computed.
+ */
+@Slf4j
+final class TermSorter {
+    /** Default maximum number of distinct terms kept in memory. */
+    /* default */ static final int DEFAULT_RUN_TERMS = 1_000_000;
+    /** Default maximum number of runs merged at once. */
+    /* default */ static final int DEFAULT_FAN_IN = 64;
+
+    /** Order of the output terms. */
+    private final Comparator<Monomial> comparator;
+    /** Maximum number of distinct terms kept in memory. */
+    private final int runTerms;
+    /** Whether the terms in memory live outside the heap. */
+    private final boolean offHeap;
+    /** Quota charged with the runs, which gives their scratch space. */
+    private final ScratchSpace.Quota quota;
+    /** Maximum number of runs merged at once, each an open file. */
+    private final int fanIn;
+
+    /**
+     * Creates a sorter.
+     *
+     * @param comparator the order of the output terms.
+     * @param runTerms   the maximum number of distinct terms kept in memory.
+     * @param quota      the quota charged with the runs, which gives their
+     *                   scratch space.
+     */
+    /* default */ TermSorter(final Comparator<Monomial> comparator, final int runTerms,
+            final ScratchSpace.Quota quota) {
+        this(comparator, runTerms, false, quota);
+    }
+
+    /**
+     * Creates a sorter.
+     *
+     * @param comparator the order of the output terms.
+     * @param runTerms   the maximum number of distinct terms kept in memory.
+     * @param offHeap    whether the terms in memory live outside the heap, see
+     *                   {@link TermAccumulator}.
+     * @param quota      the quota charged with the runs, which gives their
+     *                   scratch space.
+     */
+    /* default */ TermSorter(final Comparator<Monomial> comparator, final int runTerms, final boolean offHeap,
+            final ScratchSpace.Quota quota) {
+        this(comparator, runTerms, offHeap, quota, DEFAULT_FAN_IN);
+    }
+
+    /**
+     * Creates a sorter.
+     *
+     * @param comparator the order of the output terms.
+     * @param runTerms   the maximum number of distinct terms kept in memory.
+     * @param offHeap    whether the terms in memory live outside the heap, see
+     *                   {@link TermAccumulator}.
+     * @param quota      the quota charged with the runs, which gives their
+     *                   scratch space.
+     * @param fanIn      the maximum number of runs merged at once, at least 2.
+     */
+    /* default */ TermSorter(final Comparator<Monomial> comparator, final int runTerms, final boolean offHeap,
+            final ScratchSpace.Quota quota, final int fanIn) {
+        if (runTerms < 1) {
+            throw new IllegalArgumentException("The run size must be positive: " + runTerms);
+        }
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("At least two runs must be merged at once: " + fanIn);
+        }
+        this.comparator = comparator;
+        this.runTerms = runTerms;
+        this.offHeap = offHeap;
+        this.quota = quota;
+        this.fanIn = fanIn;
+    }
+
+    /**
+     * Sorts the terms of a file, combining like terms in the ring of the file
+     * and dropping the ones with a zero coefficient.
+     *
+     * @param source   the term file.
+     * @param consumer the consumer of the sorted terms.
+     * @throws IOException if an error occurs while reading or writing a file.
+     */
+    /* default */ void sort(final File source, final TermConsumer consumer) throws IOException {
+        final List<ScratchSpace.Lease> runs = new ArrayList<>();
+        try {
+            final TermAccumulator accumulator;
+            final CoefficientRing ring;
+            try (TermReader reader = new TermReader(source)) {
+                ring = reader.ring();
+                accumulator = new TermAccumulator(ring, offHeap);
+                while (reader.next()) {
+                    Cancellation.check();
+                    accumulator.add(reader.monomial(), reader.coefficient());
+                    if (accumulator.size() >= runTerms) {
+                        runs.add(spill(accumulator, ring));
+                    }
+                }
+            }
+            if (runs.isEmpty()) {
+                accumulator.drainSorted(comparator, consumer);
+            } else {
+                if (accumulator.size() > 0) {
+                    runs.add(spill(accumulator, ring));
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Merging {} runs of {}", runs.size(), source.getName());
+                }
+                while (runs.size() > fanIn) {
+                    runs.add(mergePass(runs, ring));
+                }
+                merge(runs, ring, consumer);
+            }
+        } finally {
+            for (final ScratchSpace.Lease run : runs) {
+                run.release(true);
+            }
+        }
+    }
+
+    private ScratchSpace.Lease spill(final TermAccumulator accumulator, final CoefficientRing ring)
+            throws IOException {
+        final ScratchSpace.Lease run = quota.space().lease("polynomial-run", quota);
+        try (TermWriter writer = TermWriter.create(run.file(), ring)) {
+            writer.account(run);
+            accumulator.drainSorted(comparator, writer);
+        } catch (IOException | RuntimeException e) {
+            run.release(true);
+            throw e;
+        }
+        return run;
+    }
+
+    /**
+     * Merges the first runs, up to the fan-in, into a new run; the merged runs
+     * are removed from the list and released.
+     */
+    private ScratchSpace.Lease mergePass(final List<ScratchSpace.Lease> runs, final CoefficientRing ring)
+            throws IOException {
+        final List<ScratchSpace.Lease> group = runs.subList(0, fanIn);
+        final ScratchSpace.Lease merged = quota.space().lease("polynomial-run", quota);
+        try (TermWriter writer = TermWriter.create(merged.file(), ring)) {
+            writer.account(merged);
+            merge(group, ring, writer);
+        } catch (IOException | RuntimeException e) {
+            merged.release(true);
+            throw e;
+        }
+        for (final ScratchSpace.Lease run : group) {
+            run.release(true);
+        }
+        group.clear();
+        return merged;
+    }
+
+    private void merge(final List<ScratchSpace.Lease> runs, final CoefficientRing ring, final TermConsumer consumer)
+            throws IOException {
+        final PriorityQueue<TermReader> queue = new PriorityQueue<>(runs.size(),
+                (reader1, reader2) -> comparator.compare(reader1.monomial(), reader2.monomial()));
+        try {
+            for (final ScratchSpace.Lease run : runs) {
+                advance(new TermReader(run.file()), queue);
+            }
+            while (!queue.isEmpty()) {
+                final Monomial monomial = queue.peek().monomial();
+                long coefficient = ring.fromLong(0);
+                while (!queue.isEmpty() && comparator.compare(queue.peek().monomial(), monomial) == 0) {
+                    final TermReader reader = queue.poll();
+                    coefficient = ring.add(coefficient, reader.coefficient());
+                    advance(reader, queue);
+                }
+                if (!ring.isZero(coefficient)) {
+                    consumer.accept(monomial, coefficient);
+                }
+            }
+        } finally {
+            for (final TermReader reader : queue) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Moves a reader that is not in the queue to its next term and queues it,
+     * or closes it at the end of its run or when the read fails.
+     */
+    private static void advance(final TermReader reader, final PriorityQueue<TermReader> queue)
+            throws IOException {
+        boolean queued = false;
+        try {
+            if (reader.next()) {
+                queue.add(reader);
+                queued = true;
+            }
+        } finally {
+            if (!queued) {
+                reader.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package home.polynomial;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Size of a polynomial: its number of terms and the maximum exponent of every
+ * variable, gathered in one pass over the term file. It bounds the size of a
+ * product before computing it, for the planning of products of many factors
+ * and for the admission of scheduled products.
+ */
+final class TermStatistics {
+    /** Number of terms. */
+    private long terms;
+    /** Maximum exponent of every variable. */
+    private int[] maxExponents = new int[0];
+
+    private TermStatistics() {
+    }
+
+    /**
+     * Reads the statistics of a polynomial.
+     *
+     * @param polynomial the polynomial.
+     * @return the statistics.
+     * @throws IOException if an error occurs while reading the term file.
+     */
+    /* default */ static TermStatistics of(final Polynomial polynomial) throws IOException {
+        final TermStatistics statistics = new TermStatistics();
+        try (TermReader reader = new TermReader(polynomial.termFile())) {
+            while (reader.next()) {
+                Cancellation.check();
+                statistics.add(reader.monomial());
+            }
+        }
+        return statistics;
+    }
+
+    private void add(final Monomial monomial) {
+        terms++;
+        if (monomial.fields() > maxExponents.length) {
+            maxExponents = Arrays.copyOf(maxExponents, monomial.fields());
+        }
+        for (int variable = 0; variable < monomial.fields(); variable++) {
+            maxExponents[variable] = Math.max(maxExponents[variable], monomial.exponent(variable));
+        }
+    }
+
+    /**
+     * Returns the number of terms.
+     *
+     * @return the number of terms.
+     */
+    /* default */ long terms() {
+        return terms;
+    }
+
+    /**
+     * Returns the number of variables with an exponent field.
+     *
+     * @return the number of variables.
+     */
+    /* default */ int variables() {
+        return maxExponents.length;
+    }
+
+    /**
+     * Estimates the number of terms of the product by another polynomial with
+     * like terms combined: the smaller of the number of pairs and the number
+     * of monomials below the sum of the exponent bounds.
+     *
+     * @param other the statistics of the other polynomial.
+     * @return the estimated number of terms.
+     */
+    /* default */ double productSize(final TermStatistics other) {
+        double box = 1;
+        for (int variable = 0; variable < Math.max(maxExponents.length, other.maxExponents.length); variable++) {
+            box *= maxExponent(variable) + other.maxExponent(variable) + 1;
+        }
+        return Math.min((double) terms * other.terms, box);
+    }
+
+    private int maxExponent(final int variable) {
+        return variable < maxExponents.length ? maxExponents[variable] : 0;
+    }
+
+}
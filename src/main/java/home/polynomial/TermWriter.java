@@ -0,0 +1,320 @@
+package home.polynomial;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Buffered writer of a binary term file in the {@link TermFormat} layout.
+ * Terms are appended as fixed-width records; the header and the variable
+ * table are written when the writer is closed, so a term file is only valid
+ * once its writer is closed.
+ * <p>
+ * The records are as wide as the variables interned when the writer opens
+ * the file. A term with a variable interned later widens every record of the
+ * file, in place and from the end, which happens at most once every
+ * {@value Monomial#FIELDS_PER_WORD} new variables.
+ * <p>
+ * A compressed file is written in blocks of {@link BlockCodec} instead, and
+ * a term with more variables just starts a wider block.
+ */
+final class TermWriter implements TermConsumer, Closeable {
+    /** Default size of the write buffer in bytes. */
+    /* default */ static final int DEFAULT_BUFFER_BYTES = 1 << 16;
+    /** Records moved at once while widening. */
+    private static final int WIDEN_RECORDS = 4096;
+
+    /** Channel of the term file. */
+    private final FileChannel channel;
+    /** Ring of the coefficients. */
+    private final CoefficientRing ring;
+    /** Whether the write buffer is allocated outside the heap. */
+    private final boolean direct;
+    /** Encoder of the current block of a compressed file, {@code null} for records. */
+    private final BlockCodec.Encoder encoder;
+    /** Index of the blocks of a compressed file. */
+    private final BlockCodec.Index index;
+    /** Limit of the write bandwidth, {@code null} for none. */
+    private IoThrottle throttle;
+    /** Lease of the file charged with the writes, {@code null} for none. */
+    private ScratchSpace.Lease lease;
+    /** Pending records. */
+    private ByteBuffer buffer;
+    /** Exponent words per record. */
+    private int words;
+    /** Number of terms, including the pending ones. */
+    private long terms;
+    /** End of the records already written to the channel. */
+    private long position;
+    /** Size of the file when it was opened. */
+    private final long opened;
+    /** Bytes charged to the lease by this writer. */
+    private long charged;
+
+    private TermWriter(final FileChannel channel, final CoefficientRing ring, final int words, final long terms,
+            final long position, final long opened, final int bufferBytes, final boolean direct,
+            final BlockCodec.Index index) {
+        this.channel = channel;
+        this.opened = opened;
+        this.ring = ring;
+        this.words = words;
+        this.terms = terms;
+        this.position = position;
+        this.direct = direct;
+        this.index = index;
+        this.encoder = index == null ? null : new BlockCodec.Encoder();
+        this.buffer = index == null ? allocate(Math.max(bufferBytes, TermFormat.recordBytes(words))) : null;
+    }
+
+    /**
+     * Allocates a write buffer. A direct buffer is handed to the channel
+     * without the copy to a temporary native buffer that a heap one needs.
+     */
+    private ByteBuffer allocate(final int bytes) {
+        return (direct ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes)).order(TermFormat.BYTE_ORDER);
+    }
+
+    /**
+     * Creates an empty term file, replacing its contents.
+     *
+     * @param file the term file.
+     * @param ring the ring of the coefficients.
+     * @return the writer.
+     * @throws IOException if the file cannot be opened.
+     */
+    /* default */ static TermWriter create(final File file, final CoefficientRing ring) throws IOException {
+        return create(file, ring, false);
+    }
+
+    /**
+     * Creates an empty term file, replacing its contents, optionally
+     * compressed.
+     *
+     * @param file       the term file.
+     * @param ring       the ring of the coefficients.
+     * @param compressed whether the terms are compressed in blocks.
+     * @return the writer.
+     * @throws IOException if the file cannot be opened.
+     */
+    /* default */ static TermWriter create(final File file, final CoefficientRing ring, final boolean compressed)
+            throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new TermWriter(channel, ring, TermFormat.wordsForVariables(), 0, TermFormat.HEADER_BYTES, 0,
+                DEFAULT_BUFFER_BYTES, false, compressed ? new BlockCodec.Index() : null);
+    }
+
+    /**
+     * Opens a term file to append terms after the existing ones. An empty
+     * file is a term file without terms.
+     *
+     * @param file the term file.
+     * @param ring the ring of the coefficients.
+     * @return the writer.
+     * @throws IOException if the file cannot be opened, is not a term file or
+     *                     belongs to another ring.
+     */
+    /* default */ static TermWriter append(final File file, final CoefficientRing ring) throws IOException {
+        return append(file, ring, DEFAULT_BUFFER_BYTES, false, false);
+    }
+
+    /**
+     * Opens a term file to append terms after the existing ones, with a write
+     * buffer of the given size.
+     *
+     * @param file        the term file.
+     * @param ring        the ring of the coefficients.
+     * @param bufferBytes the size of the write buffer in bytes.
+     * @param direct      whether the write buffer is a direct buffer.
+     * @param compressed  whether the terms are compressed in blocks if the
+     *                    file is empty; otherwise the file keeps its layout.
+     * @return the writer.
+     * @throws IOException if the file cannot be opened, is not a term file or
+     *                     belongs to another ring.
+     */
+    /* default */ static TermWriter append(final File file, final CoefficientRing ring, final int bufferBytes,
+            final boolean direct, final boolean compressed) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                return new TermWriter(channel, ring, TermFormat.wordsForVariables(), 0, TermFormat.HEADER_BYTES, 0,
+                        bufferBytes, direct, compressed ? new BlockCodec.Index() : null);
+            }
+            final TermFormat.Header header = TermFormat.readHeader(channel);
+            if (!ring.equals(header.ring())) {
+                throw new IOException("Cannot append " + ring + " coefficients to " + header.ring() + " ones");
+            }
+            // The index of a compressed file is rewritten after the new blocks
+            return new TermWriter(channel, ring, header.words(), header.terms(), header.tableOffset(), channel.size(),
+                    bufferBytes, direct, header.compressed() ? BlockCodec.Index.read(channel, header) : null);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Limits the bandwidth of the next writes.
+     *
+     * @param throttle the shared limit, {@code null} for none.
+     */
+    /* default */ void throttle(final IoThrottle throttle) {
+        this.throttle = throttle;
+    }
+
+    /**
+     * Charges the next writes to the quota of a scratch file: the records,
+     * their growth when they widen, and the growth of the header, the block
+     * index and the variable table when the writer is closed.
+     *
+     * @param lease the lease of the file, {@code null} for none.
+     */
+    /* default */ void account(final ScratchSpace.Lease lease) {
+        this.lease = lease;
+    }
+
+    /**
+     * Appends a term.
+     *
+     * @param monomial    the monomial of the term.
+     * @param coefficient the coefficient of the term.
+     * @throws IOException if an error occurs while writing the file.
+     */
+    @Override
+    public void accept(final Monomial monomial, final long coefficient) throws IOException {
+        if (encoder != null) {
+            if (monomial.words() > words) {
+                flush();
+                words = monomial.words();
+            }
+            encoder.add(monomial, coefficient, words);
+            terms++;
+            if (encoder.terms() == BlockCodec.BLOCK_TERMS) {
+                flush();
+            }
+            return;
+        }
+        if (monomial.words() > words) {
+            widen(monomial.words());
+        }
+        if (buffer.remaining() < TermFormat.recordBytes(words)) {
+            flush();
+        }
+        for (int i = 0; i < words; i++) {
+            buffer.putLong(monomial.word(i));
+        }
+        buffer.putLong(coefficient);
+        terms++;
+    }
+
+    /**
+     * Writes the pending records to the file.
+     *
+     * @throws IOException if an error occurs while writing the file.
+     */
+    /* default */ void flush() throws IOException {
+        if (encoder != null) {
+            // A partial block is a valid block, just a shorter one
+            if (encoder.terms() > 0) {
+                index.add(position, terms - encoder.terms());
+                write(encoder.finish());
+            }
+            return;
+        }
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+    }
+
+    private void write(final ByteBuffer bytes) throws IOException {
+        charge(bytes.remaining());
+        if (throttle != null && bytes.hasRemaining()) {
+            throttle.acquire(bytes.remaining());
+        }
+        while (bytes.hasRemaining()) {
+            position += channel.write(bytes, position);
+        }
+    }
+
+    private void charge(final long bytes) throws IOException {
+        if (lease != null && bytes > 0) {
+            lease.charge(bytes);
+            charged += bytes;
+        }
+    }
+
+    /**
+     * Rewrites the records with more exponent words, moving them from the last
+     * one so no record is overwritten before it is read.
+     */
+    private void widen(final int newWords) throws IOException {
+        flush();
+        final int oldBytes = TermFormat.recordBytes(words);
+        final int newBytes = TermFormat.recordBytes(newWords);
+        final long count = terms;
+        charge(count * (newBytes - oldBytes));
+        long end = count;
+        while (end > 0) {
+            final int batch = (int) Math.min(WIDEN_RECORDS, end);
+            final long start = end - batch;
+            final ByteBuffer source = ByteBuffer.allocate(batch * oldBytes).order(TermFormat.BYTE_ORDER);
+            while (source.hasRemaining()) {
+                if (channel.read(source, TermFormat.HEADER_BYTES + start * oldBytes + source.position()) < 0) {
+                    throw new EOFException("Truncated term file while widening its records");
+                }
+            }
+            source.flip();
+            final ByteBuffer target = ByteBuffer.allocate(batch * newBytes).order(TermFormat.BYTE_ORDER);
+            for (int i = 0; i < batch; i++) {
+                for (int w = 0; w < words; w++) {
+                    target.putLong(source.getLong());
+                }
+                for (int w = words; w < newWords; w++) {
+                    target.putLong(0);
+                }
+                target.putLong(source.getLong());
+            }
+            target.flip();
+            long offset = TermFormat.HEADER_BYTES + start * newBytes;
+            while (target.hasRemaining()) {
+                offset += channel.write(target, offset);
+            }
+            end = start;
+        }
+        words = newWords;
+        position = TermFormat.HEADER_BYTES + count * newBytes;
+        if (buffer.capacity() < newBytes) {
+            buffer = allocate(newBytes);
+        }
+    }
+
+    /**
+     * Writes the pending records, the variable table and the header, and
+     * closes the file.
+     *
+     * @throws IOException if an error occurs while writing the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            channel.truncate(position);
+            final long variables = index == null ? position : index.write(channel, position);
+            TermFormat.writeVariables(channel, variables);
+            // The growth beyond the charged records: the header, the block index and the variable table
+            charge(channel.size() - opened - charged);
+            TermFormat.writeHeader(channel, new TermFormat.Header(words, terms, position, ring, index != null));
+        } finally {
+            if (encoder != null) {
+                encoder.end();
+            }
+            channel.close();
+        }
+    }
+
+}
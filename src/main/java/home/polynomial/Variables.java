@@ -0,0 +1,88 @@
+package home.polynomial;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interned table of variable names. Every distinct name gets a stable index
+ * that selects its exponent field inside a packed {@link Monomial}, so two
+ * monomials can be multiplied without ever looking at the names again.
+ */
+final class Variables {
+    /** Index of every interned variable name. */
+    private static final Map<String, Integer> INDEXES = new ConcurrentHashMap<>();
+    /** Variable names by index (copy on write). */
+    private static volatile String[] names = new String[0];
+    /** Variable indexes sorted by name (copy on write). */
+    private static volatile int[] byName = new int[0];
+
+    private Variables() {
+        // Utility class, not meant to be instantiated.
+    }
+
+    /**
+     * Returns the index of a variable, interning the name the first time it is
+     * seen.
+     *
+     * @param name the variable name (example: “x”).
+     * @return the index of the exponent field of the variable.
+     */
+    /* default */ static int indexOf(final String name) {
+        final Integer index = INDEXES.get(name);
+        if (index != null) {
+            return index;
+        }
+        return register(name);
+    }
+
+    private static synchronized int register(final String name) {
+        final Integer index = INDEXES.get(name);
+        if (index != null) {
+            return index;
+        }
+        if (name.isEmpty() || name.indexOf('*') >= 0 || name.indexOf('^') >= 0 || name.indexOf('=') >= 0) {
+            throw new IllegalArgumentException("Invalid variable name: '" + name + "'");
+        }
+        final String[] newNames = Arrays.copyOf(names, names.length + 1);
+        final int newIndex = names.length;
+        newNames[newIndex] = name;
+        final Integer[] sorted = new Integer[newNames.length];
+        Arrays.setAll(sorted, i -> i);
+        Arrays.sort(sorted, (a, b) -> newNames[a].compareTo(newNames[b]));
+        names = newNames;
+        byName = Arrays.stream(sorted).mapToInt(Integer::intValue).toArray();
+        INDEXES.put(name, newIndex);
+        return newIndex;
+    }
+
+    /**
+     * Returns the name of the variable with the given index.
+     *
+     * @param index the index of the variable.
+     * @return the variable name.
+     */
+    /* default */ static String nameOf(final int index) {
+        return names[index];
+    }
+
+    /**
+     * Returns the number of interned variables.
+     *
+     * @return the number of variables.
+     */
+    /* default */ static int count() {
+        return names.length;
+    }
+
+    /**
+     * Returns the variable indexes sorted by variable name. The returned array
+     * is shared and must not be modified.
+     *
+     * @return the indexes sorted by name.
+     */
+    /* default */ static int[] sortedByName() {
+        return byName;
+    }
+
+}
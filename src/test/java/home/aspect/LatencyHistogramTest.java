@@ -0,0 +1,55 @@
+package home.aspect;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link LatencyHistogram}.
+ */
+class LatencyHistogramTest { // NOPMD AtLeastOneConstructor
+
+    @Test
+    void bucketsCoverEveryValue() {
+        long previous = -1;
+        for (final long value : new long[] { 0, 1, 7, 8, 9, 15, 16, 17, 1000, 123_456_789, Long.MAX_VALUE }) {
+            final int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value <= LatencyHistogram.upperBound(bucket), "Upper bound of " + value);
+            assertTrue(LatencyHistogram.upperBound(bucket) - value <= value / 8, "Width of the bucket of " + value);
+            assertTrue(bucket >= previous, "Buckets in order");
+            previous = bucket;
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.bucketOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void percentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 10_000; nanos++) {
+            histogram.record(nanos * 1000, nanos % 100 == 0);
+        }
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10_000, snapshot.count(), "Count");
+        assertEquals(100, snapshot.errors(), "Errors");
+        assertEquals(10_000_000, snapshot.max(), "Max");
+        assertEquals(5_000_500, snapshot.mean(), 1e-6, "Mean");
+        assertNear(5_000_000, snapshot.p50(), "p50");
+        assertNear(9_000_000, snapshot.p90(), "p90");
+        assertNear(9_900_000, snapshot.p99(), "p99");
+        assertNear(9_990_000, snapshot.p999(), "p99.9");
+    }
+
+    @Test
+    void empty() {
+        final LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0, snapshot.count(), "Count");
+        assertEquals(0, snapshot.p99(), "p99");
+        assertEquals(0, snapshot.mean(), "Mean");
+    }
+
+    private static void assertNear(final long expected, final long actual, final String message) {
+        assertTrue(actual >= expected && actual <= expected + expected / 8, message + ": " + actual);
+    }
+
+}
@@ -0,0 +1,58 @@
+package home.polynomial;
+
+import static home.polynomial.PolynomialBuilder.build;
+import static home.polynomial.PolynomialUtils.fromString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the {@link CoefficientExtractor} class.
+ */
+class CoefficientExtractorTest {
+
+    @Test
+    void countWaysOfBuilderFactors() {
+        final List<PolynomialFunction> factors = List.of(build(3, 2, "x"), build(2, 5, "x"), build(5, 10, "x"),
+                build(4, 20, "x"));
+        final double[] expected = factors.get(0).multiply(factors.get(1)).multiply(factors.get(2))
+                .multiply(factors.get(3)).getCoefficients();
+        for (int amount = 0; amount < expected.length + 5; amount++) {
+            final long ways = amount < expected.length ? (long) expected[amount] : 0;
+            assertEquals(ways, CoefficientExtractor.exactCoefficientOf(factors, amount),
+                    "Wrong number of ways for amount " + amount);
+        }
+    }
+
+    @Test
+    void countWaysOfStepFactors() {
+        final List<PolynomialFunction> dense = List.of(build(3, 2, "x"), build(2, 5, "y"), build(5, 10, "z"),
+                build(4, 20, "w"));
+        final List<StepPolynomial> steps = List.of(PolynomialBuilder.step(3, 2, "x"),
+                PolynomialBuilder.step(2, 5, "y"), PolynomialBuilder.step(5, 10, "z"),
+                PolynomialBuilder.step(4, 20, "w"));
+        for (int amount = -1; amount < 150; amount++) {
+            assertEquals(CoefficientExtractor.exactCoefficientOf(dense, amount),
+                    CoefficientExtractor.exactStepCoefficientOf(steps, amount),
+                    "Wrong number of ways for amount " + amount);
+        }
+    }
+
+    @Test
+    void multivariateCoefficients() throws IOException {
+        final Polynomial poly1 = fromString("1 + 1*x^50 + 1*x^100 + 2*x^50*y");
+        final Polynomial poly2 = fromString("1 + 1*y^100 + 1*y^200 - 1*y");
+        final Polynomial poly3 = fromString("1 + 1*x^50*y^100");
+        final List<Polynomial> factors = List.of(poly1, poly2, poly3);
+        // x^100*y^200 = x^100 * y^200 * 1 + x^50 * y^100 * x^50*y^100
+        assertEquals(2.0, CoefficientExtractor.coefficientOf(factors, "x^100*y^200"), "Wrong coefficient");
+        assertEquals(-2.0, CoefficientExtractor.coefficientOf(factors, "x^50*y^2"), "Wrong coefficient");
+        // Total degree 150: x^50 * y^100 * 1 + 1 * 1 * x^50*y^100
+        assertEquals(2.0, CoefficientExtractor.coefficientOf(factors, 150), "Wrong coefficient of degree 150");
+    }
+
+}
@@ -0,0 +1,109 @@
+package home.polynomial;
+
+import static home.polynomial.PolynomialUtils.fromString;
+import static home.polynomial.PolynomialUtils.simplify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the exact {@link CoefficientRing} modes and the
+ * {@link MultiModular} reconstruction.
+ */
+class CoefficientRingTest {
+
+    @Test
+    void longCountsExactlyAbove53Bits() throws IOException {
+        final Polynomial binomial = fromString("1 + 1*x", MonomialOrder.DEFAULT, CoefficientRing.LONG);
+        Polynomial product = binomial;
+        for (int i = 1; i < 60; i++) {
+            product = product.multiply(binomial, MultiplyOptions.builder().accumulate(true).build());
+        }
+        final Polynomial power = binomial.pow(60);
+        simplify(product);
+        simplify(power);
+        // C(60, 30) = 118264581564861424 is not a double
+        assertEquals(118_264_581_564_861_424L, coefficient(product, "x^30"), "Exact central coefficient");
+        assertEquals(product.toString(), power.toString(), "The power should be the repeated product");
+    }
+
+    @Test
+    void longOverflowFails() throws IOException {
+        final Polynomial binomial = fromString("1 + 1*x", MonomialOrder.DEFAULT, CoefficientRing.LONG);
+        assertThrows(ArithmeticException.class, () -> binomial.pow(70), "C(70, 35) does not fit in a long");
+    }
+
+    @Test
+    void builderUsesTheRing() throws IOException {
+        final Polynomial steps = PolynomialBuilder.polynomial(3, 50, "x", CoefficientRing.LONG);
+        assertEquals(CoefficientRing.LONG, steps.getRing(), "The ring of the builder");
+        assertEquals("1 + 1*x^50 + 1*x^100 + 1*x^150", steps.toString(), "Exact step polynomial");
+    }
+
+    @Test
+    void modularMatchesReducedLong() throws IOException {
+        final CoefficientRing ring = CoefficientRing.modulo(1_000_003);
+        final Polynomial square = fromString("3 + 2*x + 1*y", MonomialOrder.DEFAULT, ring).pow(12);
+        final Polynomial exact = fromString("3 + 2*x + 1*y", MonomialOrder.DEFAULT, CoefficientRing.LONG).pow(12);
+        simplify(square);
+        simplify(exact);
+        try (TermReader modular = new TermReader(square.termFile());
+                TermReader integer = new TermReader(exact.termFile())) {
+            while (integer.next()) {
+                final long residue = Math.floorMod(integer.coefficient(), 1_000_003);
+                if (residue != 0) {
+                    modular.next();
+                    assertEquals(integer.monomial(), modular.monomial(), "Same terms");
+                    assertEquals(residue, modular.coefficient(), "Residue of " + integer.monomial());
+                }
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> square.multiply(exact), "Rings cannot be mixed");
+    }
+
+    @Test
+    void multiModularReconstructsBeyondLong() throws IOException {
+        final int power = 40;
+        final Map<String, BigInteger> terms = new HashMap<>();
+        MultiModular.reconstruct(4,
+                ring -> fromString("1 + 2*x + 3*y", MonomialOrder.DEFAULT, ring).pow(power),
+                (monomial, coefficient) -> terms.put(monomial.toString(), coefficient));
+        final int x = Variables.indexOf("x");
+        final int y = Variables.indexOf("y");
+        final BigInteger[] factorials = new BigInteger[power + 1];
+        factorials[0] = BigInteger.ONE;
+        for (int i = 1; i <= power; i++) {
+            factorials[i] = factorials[i - 1].multiply(BigInteger.valueOf(i));
+        }
+        int count = 0;
+        for (int b = 0; b <= power; b++) {
+            for (int c = 0; b + c <= power; c++) {
+                final BigInteger expected = factorials[power]
+                        .divide(factorials[power - b - c].multiply(factorials[b]).multiply(factorials[c]))
+                        .multiply(BigInteger.TWO.pow(b)).multiply(BigInteger.valueOf(3).pow(c));
+                final String key = Monomial.of(x, b).multiply(Monomial.of(y, c)).toString();
+                assertEquals(expected, terms.get(key), "Coefficient of " + key);
+                count++;
+            }
+        }
+        assertEquals(count, terms.size(), "Every term should be reconstructed");
+    }
+
+    private static long coefficient(final Polynomial polynomial, final String key) throws IOException {
+        try (TermReader reader = new TermReader(polynomial.termFile())) {
+            while (reader.next()) {
+                if (reader.monomial().equals(Monomial.parse(key))) {
+                    return reader.coefficient();
+                }
+            }
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,69 @@
+package home.polynomial;
+
+import static home.polynomial.PolynomialBuilder.build;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the {@link DenseMultiplier} class.
+ */
+class DenseMultiplierTest {
+
+    @Test
+    void allAlgorithmsAgree() {
+        final Random random = new Random(42);
+        final long[] exact1 = random.longs(700, -1000, 1000).toArray();
+        final long[] exact2 = random.longs(900, -1000, 1000).toArray();
+        final long[] expected = DenseMultiplier.schoolbook(exact1, exact2);
+        assertArrayEquals(expected, DenseMultiplier.karatsuba(exact1, exact2), "Karatsuba should be exact");
+        assertArrayEquals(expected, DenseMultiplier.ntt(exact1, exact2), "The NTT should be exact");
+
+        final double[] real1 = random.doubles(600).toArray();
+        final double[] real2 = random.doubles(300).toArray();
+        final double[] schoolbook = DenseMultiplier.schoolbook(real1, real2);
+        assertArrayEquals(schoolbook, DenseMultiplier.karatsuba(real1, real2), 1e-9, "Karatsuba should agree");
+        assertArrayEquals(schoolbook, DenseMultiplier.fft(real1, real2), 1e-9, "The FFT should agree");
+    }
+
+    @Test
+    void multiplyBuilderFactors() {
+        final PolynomialFunction polynomial1 = build(300, 2, "x");
+        final PolynomialFunction polynomial2 = build(200, 5, "x");
+        assertArrayEquals(polynomial1.multiply(polynomial2).getCoefficients(),
+                DenseMultiplier.multiply(polynomial1, polynomial2).getCoefficients(),
+                "The fast product should match the commons-math one");
+        final long[] counts = DenseMultiplier.multiplyExact(DenseMultiplier.toExact(polynomial1.getCoefficients()),
+                DenseMultiplier.toExact(polynomial2.getCoefficients()));
+        assertArrayEquals(DenseMultiplier.toExact(polynomial1.multiply(polynomial2).getCoefficients()), counts,
+                "The exact product should count the same ways");
+    }
+
+    @Test
+    void exactOverflow() {
+        final long[] big = new long[1000];
+        Arrays.fill(big, 1L << 40);
+        assertThrows(ArithmeticException.class, () -> DenseMultiplier.multiplyExact(big, big),
+                "A product that may overflow should be rejected");
+    }
+
+    @Test
+    void interruptedTransform() {
+        final long[] coefficients = new long[4096];
+        Arrays.fill(coefficients, 1);
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(CancellationException.class, () -> DenseMultiplier.multiplyExact(coefficients, coefficients),
+                    "An interrupted transform should stop");
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+}
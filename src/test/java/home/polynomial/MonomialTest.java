@@ -0,0 +1,48 @@
+package home.polynomial;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the {@link Monomial} class.
+ */
+class MonomialTest {
+
+    @Test
+    void parseAndRender() {
+        assertEquals("x^2*y^3", Monomial.parse("y^3*x^2").toString(), "Variables should be sorted by name");
+        assertEquals("x^2", Monomial.parse("x*x").toString(), "Repeated variables should be combined");
+        assertTrue(Monomial.parse("").isOne(), "The empty key is the independent term");
+    }
+
+    @Test
+    void multiplyAddsExponents() {
+        final Monomial product = Monomial.parse("x^50*y^100").multiply(Monomial.parse("y^100*z"));
+        assertEquals("x^50*y^200*z", product.toString(), "The exponents should be added");
+        assertEquals(251, product.degree(), "The total degree is the sum of the exponents");
+        assertEquals(Monomial.parse("z*y^200*x^50"), product, "Equal exponents should give equal monomials");
+    }
+
+    @Test
+    void monomialOrders() {
+        final Monomial x2 = Monomial.parse("x^2");
+        final Monomial xy3 = Monomial.parse("x*y^3");
+        final Monomial xz2 = Monomial.parse("x*z^2");
+        assertTrue(MonomialOrder.LEX.compare(x2, xy3) > 0, "LEX: x^2 > x*y^3");
+        assertTrue(MonomialOrder.GRLEX.compare(x2, xy3) < 0, "GRLEX: x^2 < x*y^3");
+        assertTrue(MonomialOrder.GRLEX.compare(Monomial.parse("x*y^2"), xz2) > 0, "GRLEX: x*y^2 > x*z^2");
+        assertTrue(MonomialOrder.GREVLEX.compare(Monomial.parse("x*y^5*z^2"), Monomial.parse("x^4*y*z^3")) > 0,
+                "GREVLEX: x*y^5*z^2 > x^4*y*z^3");
+    }
+
+    @Test
+    void exponentOverflow() {
+        final Monomial big = Monomial.of(Variables.indexOf("x"), Monomial.MAX_EXPONENT);
+        assertThrows(ArithmeticException.class, () -> big.multiply(Monomial.parse("x")),
+                "An exponent above the maximum should be rejected");
+    }
+
+}
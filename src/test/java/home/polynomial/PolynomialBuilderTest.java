@@ -1,6 +1,10 @@
 package home.polynomial;
 
 import static home.polynomial.PolynomialBuilder.build;
+import static home.polynomial.PolynomialBuilder.step;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
 import org.junit.jupiter.api.Test;
@@ -21,4 +25,12 @@ class PolynomialBuilderTest {
                 polynomial1.multiply(polynomial2).multiply(polynomial3).multiply(polynomial4));
     }
 
-}
\ No newline at end of file
+    @Test
+    void buildAcceptsAnyDenseStep() {
+        assertArrayEquals(new double[] {1}, build(3, 0, "x").getCoefficients(), "A zero step is the constant 1");
+        assertEquals(1 << 21, build(2, 1 << 20, "x").degree(), "Beyond the exponents of a term");
+        assertThrows(IllegalArgumentException.class, () -> step(3, 0, "x"), "A step polynomial needs a step");
+        assertThrows(IllegalArgumentException.class, () -> step(2, 1 << 20, "x"), "Its degree is an exponent");
+    }
+
+}
@@ -2,6 +2,7 @@ package home.polynomial;
 
 import static home.polynomial.PolynomialUtils.fromString;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 
@@ -31,6 +32,9 @@ class PolynomialSpringTest { // NOPMD AtLeastOneConstructor
      */
     @Autowired
     private PolynomialService polynomialService;
+    /** Aspecto que mide los tiempos de ejecución. */
+    @Autowired
+    private ExecutionTimeAspect executionTimeAspect;
 
     @Test
     void multiplyShort() throws IOException {
@@ -46,6 +50,9 @@ class PolynomialSpringTest { // NOPMD AtLeastOneConstructor
         result.printOrderedByDegree();
         // 1 + y^100 + y^200 + x^50 + x^50*y^100 + x^50*y^200
         assert "1.0 + 1.0*y^100 + 1.0*y^200 + 1.0*x^50 + 1.0*x^50*y^100 + 1.0*x^50*y^200".equals(result.toString());
+        assertTrue(executionTimeAspect.snapshot().keySet().stream()
+                .anyMatch(method -> method.startsWith(PolynomialService.class.getName() + ".multiply(")),
+                "The multiplication should be measured");
     }
 
 }
\ No newline at end of file
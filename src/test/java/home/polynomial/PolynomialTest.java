@@ -4,9 +4,11 @@ import static home.polynomial.PolynomialUtils.fromString;
 import static home.polynomial.PolynomialUtils.simplify;
 import static home.polynomial.PolynomialBuilder.build;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.List;
 
 import org.apache.commons.math3.analysis.polynomials.PolynomialFunction;
 import org.junit.jupiter.api.Test;
@@ -112,6 +114,212 @@ class PolynomialTest {
         assertEquals("", result, "El término con coeficiente cero no debería estar presente");
     }
 
+    @Test
+    void testSimplifyMergesReorderedFactors() throws IOException {
+        final Polynomial polynomial = fromString("1*x^50*y^100 + 2*y^100*x^50 + 3*z", MonomialOrder.LEX);
+        simplify(polynomial);
+        // Ascending lexicographic order: z < x^50*y^100
+        assertEquals("3.0*z + 3.0*x^50*y^100", polynomial.toString(), "Like terms should be merged");
+    }
+
+    @Test
+    void multiplyAccumulate() throws IOException {
+        final Polynomial poly1 = fromString("1 + 1*x + 1*x^2");
+        final Polynomial poly2 = fromString("1 + 1*x");
+        final Polynomial result = poly1.multiply(poly2, MultiplyOptions.builder().accumulate(true).build());
+        assertEquals("1.0 + 2.0*x + 2.0*x^2 + 1.0*x^3", result.toString(), "Like terms should be merged");
+
+        // A budget of one term forces several flushes that are merged at the end
+        final Polynomial spilled = poly1.multiply(poly2,
+                MultiplyOptions.builder().accumulate(true).accumulatorTerms(1).build());
+        assertEquals(result.toString(), spilled.toString(), "Flushed terms should be merged");
+    }
+
+    @Test
+    void multiplyParallelMatchesSequential() throws IOException {
+        final StringBuilder terms1 = new StringBuilder("0.1");
+        final StringBuilder terms2 = new StringBuilder("0.3");
+        for (int i = 1; i <= 40; i++) {
+            terms1.append(" + 0.").append(i).append("*x^").append(i % 7).append("*y^").append(i % 5);
+            terms2.append(" + 0.").append(i + 3).append("*y^").append(i % 4).append("*z^").append(i % 3);
+        }
+        final Polynomial poly1 = fromString(terms1.toString());
+        final Polynomial poly2 = fromString(terms2.toString());
+        final MultiplyOptions sequential = MultiplyOptions.builder().accumulate(true).blockTerms(3)
+                .accumulatorTerms(20).denseLength(0).build();
+        final Polynomial expected = poly1.multiply(poly2, sequential);
+        final Polynomial parallel = poly1.multiply(poly2, sequential.toBuilder().parallelism(4).build());
+        assertEquals(expected.toString(), parallel.toString(), "The parallel result should match the sequential one");
+    }
+
+    @Test
+    void multiplyResidentChunks() throws IOException {
+        final Polynomial poly1 = fromString("1 + 1*x + 2*x*y + 1*y^2");
+        final Polynomial poly2 = fromString("1 + 3*y + 1*x^2 + 1*x*y + 1*z + 4*y^3");
+        final Polynomial expected = poly1.multiply(poly2);
+        simplify(expected);
+        // Neither operand fits in two terms: chunks of the smaller one are kept resident
+        final MultiplyOptions chunked = MultiplyOptions.builder().residentTerms(2).build();
+        final Polynomial raw = poly1.multiply(poly2, chunked);
+        simplify(raw);
+        assertEquals(expected.toString(), raw.toString(), "Chunked multiply should give the same terms");
+        final Polynomial accumulated = poly1.multiply(poly2, chunked.toBuilder().accumulate(true).build());
+        simplify(accumulated);
+        assertEquals(expected.toString(), accumulated.toString(), "Chunked accumulate should give the same terms");
+    }
+
+    @Test
+    void multiplyDenseMatchesPairwise() throws IOException {
+        final StringBuilder terms1 = new StringBuilder("1");
+        final StringBuilder terms2 = new StringBuilder("2");
+        for (int i = 1; i < 100; i++) {
+            terms1.append(" + ").append(i).append("*x^").append(50 * (i / 10)).append("*y^").append(i % 10);
+            terms2.append(" - 1*x^").append(100 * (i % 10)).append("*y^").append(2 * (i / 10));
+        }
+        final Polynomial poly1 = fromString(terms1.toString());
+        final Polynomial poly2 = fromString(terms2.toString());
+        final MultiplyOptions accumulate = MultiplyOptions.builder().accumulate(true).build();
+        final Polynomial dense = poly1.multiply(poly2, accumulate);
+        final Polynomial pairwise = poly1.multiply(poly2, accumulate.toBuilder().denseLength(0).build());
+        simplify(dense);
+        simplify(pairwise);
+        assertEquals(pairwise.toString(), dense.toString(), "The Kronecker product should match the pairwise one");
+    }
+
+    @Test
+    void multiplyDenseFractionalMatchesPairwise() throws IOException {
+        final StringBuilder terms1 = new StringBuilder("0.1");
+        final StringBuilder terms2 = new StringBuilder("0.3");
+        for (int i = 1; i < 100; i++) {
+            terms1.append(" + ").append(i / 7.0).append("*x^").append(50 * (i / 10)).append("*y^").append(i % 10);
+            terms2.append(" - ").append(0.01 * i).append("*x^").append(100 * (i % 10)).append("*y^")
+                    .append(2 * (i / 10));
+        }
+        final Polynomial poly1 = fromString(terms1.toString());
+        final Polynomial poly2 = fromString(terms2.toString());
+        final MultiplyOptions accumulate = MultiplyOptions.builder().accumulate(true).build();
+        final Polynomial dense = poly1.multiply(poly2, accumulate);
+        final Polynomial pairwise = poly1.multiply(poly2, accumulate.toBuilder().denseLength(0).build());
+        simplify(dense);
+        simplify(pairwise);
+        assertEquals(pairwise.toString(), dense.toString(),
+                "Fractional coefficients should not leave rounding noise in the product");
+    }
+
+    @Test
+    void multiplyTruncated() throws IOException {
+        final Polynomial poly1 = fromString("1 + 1*x + 1*x*y + 1*y^2");
+        final Polynomial poly2 = fromString("1 + 1*y + 1*x^2");
+        final MultiplyOptions truncated = MultiplyOptions.builder().maxDegree(2).maxExponent("y", 1).build();
+        final Polynomial raw = poly1.multiply(poly2, truncated);
+        simplify(raw);
+        assertEquals("1.0 + 1.0*y + 1.0*x + 2.0*x*y + 1.0*x^2", raw.toString(),
+                "Only the terms inside the bounds should be kept");
+        final Polynomial accumulated = poly1.multiply(poly2,
+                truncated.toBuilder().accumulate(true).residentTerms(2).build());
+        simplify(accumulated);
+        assertEquals(raw.toString(), accumulated.toString(), "Chunked accumulate should truncate the same way");
+    }
+
+    @Test
+    void multiplySorted() throws IOException {
+        final Polynomial poly1 = fromString("1 + 1*x + 2*x*y + 1*y^2 + 3*z^3");
+        final Polynomial poly2 = fromString("1 + 3*y - 1*x + 1*x*y + 1*z + 4*y^3");
+        final Polynomial expected = poly1.multiply(poly2);
+        simplify(expected);
+        final MultiplyOptions sorted = MultiplyOptions.builder().sorted(true).build();
+        // The default order is graded, so the simplified terms are sorted by degree too
+        assertEquals(expected.toString(), poly1.multiply(poly2, sorted).toString(),
+                "The heap product should be combined and sorted by degree");
+        final Polynomial truncated = fromString("1 + 1*x + 1*x*y + 1*y^2")
+                .multiply(fromString("1 + 1*y + 1*x^2"), sorted.toBuilder().maxDegree(2).maxExponent("y", 1).build());
+        assertEquals("1.0 + 1.0*y + 1.0*x + 2.0*x*y + 1.0*x^2", truncated.toString(),
+                "The heap product should stop at the degree bound");
+    }
+
+    @Test
+    void multiplyThroughSmallDirectBuffer() throws IOException {
+        final Polynomial poly1 = fromString("1 + 1*x + 2*x*y + 1*y^2");
+        final Polynomial poly2 = fromString("1 + 3*y + 1*x^2 + 1*z");
+        final Polynomial expected = poly1.multiply(poly2);
+        // A buffer smaller than a record still holds one term at a time
+        final Polynomial buffered = poly1.multiply(poly2,
+                MultiplyOptions.builder().writeBufferBytes(1).directBuffer(true).build());
+        assertEquals(expected.toString(), buffered.toString(), "The buffer should not change the terms");
+        buffered.addTerm("w", 1);
+        assertEquals(expected + " + 1.0*w", buffered.toString(), "Terms added later should be appended");
+    }
+
+    @Test
+    void multiplyAllMatchesChainedProduct() throws IOException {
+        final List<Polynomial> factors = List.of(fromString("1 + 1*x^2 + 1*x^4"), fromString("1 + 1*y^3"),
+                fromString("1 + 1*x + 1*x^2 + 1*x^3 + 1*x^4 + 1*x^5"), fromString("2 + 1*y^3 + 1*z"));
+        final MultiplyOptions accumulate = MultiplyOptions.builder().accumulate(true).build();
+        Polynomial expected = factors.get(0);
+        for (int i = 1; i < factors.size(); i++) {
+            expected = expected.multiply(factors.get(i), accumulate);
+        }
+        simplify(expected);
+        final Polynomial product = new PolynomialService().multiplyAll(factors);
+        simplify(product);
+        assertEquals(expected.toString(), product.toString(), "The order of the products should not matter");
+        assertEquals("1.0 + 1.0*y^3", factors.get(1).toString(), "The factors should be left untouched");
+        assertEquals("1.0", new PolynomialService().multiplyAll(List.of()).toString(), "The empty product is 1");
+    }
+
+    @Test
+    void multiplyAllSingleFactorIsACopy() throws IOException {
+        final Polynomial factor = fromString("1 + 1*x + 1*x^2");
+        final MultiplyOptions truncated = MultiplyOptions.builder().maxDegree(1).build();
+        try (Polynomial product = new PolynomialService().multiplyAll(List.of(factor), truncated)) {
+            assertNotSame(factor, product, "The product should be a new polynomial");
+            assertEquals("1.0 + 1.0*x", product.toString(), "The options should apply to a single factor");
+        }
+        assertEquals("1.0 + 1.0*x + 1.0*x^2", factor.toString(), "Closing the product should keep the factor");
+    }
+
+    @Test
+    void powMatchesRepeatedProduct() throws IOException {
+        final MultiplyOptions accumulate = MultiplyOptions.builder().accumulate(true).build();
+        for (final String base : new String[] { "1 + 2*x*y - 1*z + 1*y^2", "2*x - 3*y^2", "2 + 2*x^3 + 2*x^6" }) {
+            final Polynomial polynomial = fromString(base);
+            Polynomial expected = polynomial;
+            for (int power = 2; power <= 5; power++) {
+                expected = expected.multiply(polynomial, accumulate);
+                simplify(expected);
+                final Polynomial actual = polynomial.pow(power);
+                simplify(actual);
+                assertEquals(expected.toString(), actual.toString(), "(" + base + ")^" + power);
+            }
+        }
+        assertEquals("1.0", fromString("3*x").pow(0).toString(), "The power zero is 1");
+    }
+
+    @Test
+    void evaluateAtManyPoints() throws IOException {
+        final int count = 3 * Evaluator.CHUNK_POINTS + 7;
+        final double[][] points = new double[count][];
+        final double[][] xs = new double[count][];
+        for (int i = 0; i < count; i++) {
+            points[i] = new double[] { i * 0.001 - 1, 1 - i * 0.0005 };
+            xs[i] = new double[] { points[i][0] };
+        }
+        final Polynomial dense = fromString("1 + 2*x - 3*x^2 + 0.5*x^4");
+        final PolynomialFunction function = new PolynomialFunction(new double[] { 1, 2, -3, 0, 0.5 });
+        final Polynomial sparse = fromString("1 + 2*x*y^3 - 1*y^2 + 0.5*x^5");
+        final double[] horner = dense.evaluate(List.of("x"), xs, 4);
+        final double[] terms = sparse.evaluate(List.of("x", "y"), points, 4);
+        assertEquals(count, terms.length, "One value per point");
+        for (int i = 0; i < count; i++) {
+            final double x = points[i][0];
+            final double y = points[i][1];
+            assertEquals(function.value(x), horner[i], 1e-12, "Dense value at " + x);
+            assertEquals(1 + 2 * x * y * y * y - y * y + 0.5 * Math.pow(x, 5), terms[i], 1e-12,
+                    "Sparse value at " + x + ", " + y);
+        }
+        assertEquals(terms[5], sparse.evaluate(List.of("x", "y"), points)[5], "Same value without threads");
+    }
+
     /**
      * Main method to execute the polynomial multiplication test.
      *
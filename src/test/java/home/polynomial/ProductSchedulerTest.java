@@ -0,0 +1,113 @@
+package home.polynomial;
+
+import static home.polynomial.PolynomialUtils.fromString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the asynchronous products of {@link ProductScheduler}.
+ */
+class ProductSchedulerTest {
+    /** Budget large enough for every product of the tests. */
+    private static final long UNLIMITED = Long.MAX_VALUE / 4;
+
+    @Test
+    void asyncProductMatchesSync() throws Exception {
+        final PolynomialService service = new PolynomialService();
+        final Polynomial first = fromString("1 + 2*x + 1*y^2");
+        final Polynomial other = fromString("3 - 1*x*y");
+        final Polynomial product = service.multiplyAsync(first, other).get(30, TimeUnit.SECONDS);
+        assertEquals(service.multiply(first, other).toString(), product.toString(), "Same product");
+    }
+
+    @Test
+    void limitsTheRunningProducts() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        final Polynomial factor = fromString("1 + 1*x");
+        try (ProductScheduler scheduler = new ProductScheduler(2, UNLIMITED, UNLIMITED)) {
+            final List<CompletableFuture<Polynomial>> futures = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                futures.add(scheduler.submit(factor, factor, MultiplyOptions.DEFAULT, (first, other, options) -> {
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(50);
+                    } catch (final InterruptedException e) {
+                        throw new InterruptedIOException();
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                    return first.multiply(other, options);
+                }));
+            }
+            for (final CompletableFuture<Polynomial> future : futures) {
+                final Polynomial product = future.get(30, TimeUnit.SECONDS);
+                PolynomialUtils.simplify(product);
+                assertEquals("1.0 + 2.0*x + 1.0*x^2", product.toString(), "Every product is computed");
+            }
+        }
+        assertEquals(2, peak.get(), "At most two products at once");
+    }
+
+    @Test
+    void cancelInterruptsTheProduct() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final Polynomial factor = fromString("1 + 1*x");
+        try (ProductScheduler scheduler = new ProductScheduler(1, UNLIMITED, UNLIMITED)) {
+            final CompletableFuture<Polynomial> future = scheduler.submit(factor, factor, MultiplyOptions.DEFAULT,
+                    (first, other, options) -> {
+                        started.countDown();
+                        try {
+                            Thread.sleep(TimeUnit.MINUTES.toMillis(5));
+                        } catch (final InterruptedException e) {
+                            interrupted.countDown();
+                            throw new InterruptedIOException();
+                        }
+                        return first;
+                    });
+            assertTrue(started.await(30, TimeUnit.SECONDS), "The product started");
+            assertTrue(future.cancel(true), "Cancelled");
+            assertTrue(interrupted.await(30, TimeUnit.SECONDS), "The product was interrupted");
+        }
+    }
+
+    @Test
+    void interruptedMultiplyFails() throws IOException {
+        final Polynomial first = fromString("1 + 2*x + 1*y^2");
+        final Polynomial other = fromString("3 - 1*x*y");
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(IOException.class, () -> first.multiply(other), "An interrupted product stops");
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    void rejectsProductsOverTheBudget() throws Exception {
+        final Polynomial factor = fromString("1 + 1*x + 1*x^2");
+        try (ProductScheduler scheduler = new ProductScheduler(1, 16, UNLIMITED)) {
+            final CompletableFuture<Polynomial> future = scheduler.submit(factor, factor, MultiplyOptions.DEFAULT);
+            final ExecutionException e = assertThrows(ExecutionException.class,
+                    () -> future.get(30, TimeUnit.SECONDS), "Too large for the disk budget");
+            assertInstanceOf(RejectedExecutionException.class, e.getCause(), "Rejected");
+        }
+    }
+
+}
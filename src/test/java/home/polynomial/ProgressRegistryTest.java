@@ -0,0 +1,69 @@
+package home.polynomial;
+
+import static home.polynomial.PolynomialUtils.fromString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests of {@link ProgressRegistry}.
+ */
+class ProgressRegistryTest { // NOPMD AtLeastOneConstructor
+
+    @Test
+    void countersAndEstimate() throws IOException {
+        final Polynomial first = fromString("1 + 1*x + 1*x^2");
+        final Polynomial other = fromString("1 + 1*y");
+        final Polynomial result = new Polynomial();
+        final ProgressRegistry registry = ProgressRegistry.getDefault();
+        final ProductProgress progress = registry.start(first, other, result, 1000);
+        try {
+            assertTrue(registry.running().contains(progress), "Running");
+            assertEquals(6, progress.getTotalPairs(), "Pairs");
+            assertEquals(-1, progress.getEstimatedRemainingMillis(), "Unknown estimate");
+            progress.advance(1, 2);
+            progress.advance(2, 4);
+            progress.emit();
+            progress.accumulator(5);
+            assertEquals(3, progress.getOuterTerms(), "Outer terms");
+            assertEquals(6, progress.getInnerTerms(), "Inner terms");
+            assertEquals(1, progress.getEmittedTerms(), "Emitted terms");
+            assertEquals(5, progress.getAccumulatorTerms(), "Accumulator terms");
+            assertEquals(0, progress.getEstimatedRemainingMillis(), "Estimate when done");
+        } finally {
+            registry.finish(progress);
+        }
+        assertFalse(registry.running().contains(progress), "Finished");
+    }
+
+    @Test
+    void publishedThroughJmx() throws IOException, JMException, InterruptedException {
+        final ProgressRegistry registry = ProgressRegistry.getDefault();
+        final ProductProgress progress = registry.start(fromString("1 + 1*x"), fromString("1 + 1*y"),
+                new Polynomial(), 1000);
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = ProgressRegistry.name(progress);
+        try {
+            progress.advance(1, 2);
+            for (int i = 0; i < 50 && !server.isRegistered(name); i++) {
+                Thread.sleep(100);
+            }
+            assertTrue(server.isRegistered(name), "Registered after a sample");
+            assertEquals(2L, server.getAttribute(name, "InnerTerms"), "Inner terms");
+            assertEquals(4L, server.getAttribute(name, "TotalPairs"), "Pairs");
+        } finally {
+            registry.finish(progress);
+        }
+        assertFalse(server.isRegistered(name), "Unregistered when finished");
+    }
+
+}
@@ -0,0 +1,79 @@
+package home.polynomial;
+
+import static home.polynomial.PolynomialUtils.fromString;
+import static home.polynomial.PolynomialUtils.simplify;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for the {@link ResultCache} of {@link PolynomialService}.
+ */
+class ResultCacheTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void commutedProductHitsMemory() throws IOException {
+        final PolynomialService service = new PolynomialService();
+        service.setCache(new ResultCache(1 << 20));
+        final Polynomial first = fromString("1 + 2*x + 1*y^2");
+        final Polynomial other = fromString("3 - 1*x*y");
+        final Polynomial computed = service.multiply(first, other);
+        // Same terms, written in another order
+        final Polynomial cached = service.multiply(fromString("3 - 1*y*x"), fromString("1*y^2 + 2*x + 1"));
+        simplify(computed);
+        simplify(cached);
+        assertEquals(computed.toString(), cached.toString(), "The cached product should be the same");
+        final ResultCache.Stats stats = service.getCache().stats();
+        assertEquals(1, stats.misses(), "Computed once");
+        assertEquals(1, stats.memoryHits(), "Served from memory");
+        assertEquals(0.5, stats.hitRatio(), "Half of the products were cached");
+        final MultiplyOptions truncated = MultiplyOptions.builder().maxDegree(1).build();
+        service.multiply(first, other, truncated);
+        assertEquals(2, service.getCache().stats().misses(), "Other options are another entry");
+    }
+
+    @Test
+    void diskTierSurvivesTheCache() throws IOException {
+        final Polynomial first = fromString("1 + 1*x^50 + 1*x^100");
+        final Polynomial other = fromString("1 + 1*y^100");
+        final Polynomial computed = new ResultCache(directory, 0, 1 << 20).multiply(first, other,
+                MultiplyOptions.DEFAULT);
+        final ResultCache reopened = new ResultCache(directory, 0, 1 << 20);
+        final Polynomial cached = reopened.multiply(other, first, MultiplyOptions.DEFAULT);
+        assertEquals(computed.toString(), cached.toString(), "Same terms from disk");
+        assertEquals(1, reopened.stats().diskHits(), "Served from disk");
+        assertEquals(1, reopened.stats().diskCount(), "One file");
+        // Each result takes more than half of the budget
+        final ResultCache small = new ResultCache(directory, 0, reopened.stats().diskBytes() * 3 / 2);
+        small.multiply(first, fromString("1 + 1*z"), MultiplyOptions.DEFAULT);
+        assertEquals(1, small.stats().evictions(), "The least recently used file is evicted");
+        assertEquals(1, small.stats().diskCount(), "Only the new file is kept");
+        small.clear();
+        assertEquals(0, small.stats().diskBytes(), "Cleared");
+    }
+
+    @Test
+    void modifiedOperandIsAnotherEntry() throws IOException {
+        final ResultCache cache = new ResultCache(1 << 20);
+        final Polynomial first = fromString("1 + 2*x");
+        final Polynomial other = fromString("1 - 1*y");
+        cache.multiply(first, other, MultiplyOptions.DEFAULT);
+        cache.multiply(first, other, MultiplyOptions.DEFAULT);
+        assertEquals(1, cache.stats().memoryHits(), "The digests are reused");
+        first.addTerm("z", 1);
+        final Polynomial product = cache.multiply(first, other, MultiplyOptions.DEFAULT);
+        simplify(product);
+        assertEquals(2, cache.stats().misses(), "The added term changes the digest");
+        assertEquals(6, product.toString().split(" [+-] ").length, "The product of the new terms");
+        cache.multiply(first, other, MultiplyOptions.builder().compressed(true).build());
+        assertEquals(3, cache.stats().misses(), "A compressed result is another entry");
+    }
+
+}
@@ -0,0 +1,149 @@
+package home.polynomial;
+
+import static home.polynomial.PolynomialUtils.fromString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for the {@link ScratchSpace} of the polynomials.
+ */
+class ScratchSpaceTest {
+    /** Default space of the other tests. */
+    private final ScratchSpace previous = ScratchSpace.getDefault();
+
+    @TempDir
+    private Path directory;
+
+    @AfterEach
+    void restoreDefault() {
+        ScratchSpace.setDefault(previous);
+    }
+
+    @Test
+    void closedPolynomialsRecycleTheirFiles() throws IOException {
+        final ScratchSpace space = new ScratchSpace(directory, Long.MAX_VALUE, 4);
+        ScratchSpace.setDefault(space);
+        final File file;
+        try (Polynomial polynomial = fromString("1 + 2*x")) {
+            file = polynomial.termFile();
+            assertEquals(directory, file.toPath().getParent(), "In the scratch directory");
+            assertEquals(1, space.leasedFiles(), "One file leased");
+            assertTrue(space.usedBytes() > 0, "The terms are charged");
+        }
+        assertEquals(0, space.leasedFiles(), "Returned");
+        assertEquals(0, space.usedBytes(), "Credited");
+        assertEquals(1, space.recycledFiles(), "Kept for reuse");
+        try (Polynomial polynomial = fromString("3*y")) {
+            assertEquals(file, polynomial.termFile(), "The file is reused");
+            assertEquals("3.0*y", polynomial.toString(), "Without the old terms");
+        }
+    }
+
+    @Test
+    void productQuotaAbandonsTheProduct() throws IOException {
+        final ScratchSpace space = new ScratchSpace(directory, Long.MAX_VALUE, 0);
+        ScratchSpace.setDefault(space);
+        try (Polynomial first = fromString("1 + 1*x + 1*x^2 + 1*x^3");
+                Polynomial other = fromString("1 + 1*y + 1*y^2 + 1*y^3")) {
+            final MultiplyOptions options = MultiplyOptions.builder().scratchBytes(64).writeBufferBytes(16)
+                    .build();
+            assertThrows(IOException.class, () -> first.multiply(other, options), "Over the quota");
+            assertEquals(2, space.leasedFiles(), "The partial result is deleted");
+            try (Polynomial product = first.multiply(other)) {
+                assertEquals(16, product.toString().split(" \\+ ").length, "Without quota");
+            }
+        }
+        assertEquals(0, space.usedBytes(), "Everything is credited");
+    }
+
+    @Test
+    void globalQuotaLimitsEveryPolynomial() {
+        final ScratchSpace space = new ScratchSpace(directory, 8, 0);
+        ScratchSpace.setDefault(space);
+        assertThrows(IOException.class, () -> fromString("1 + 2*x"), "A term does not fit");
+        assertEquals(0, space.usedBytes(), "The failed write is not charged");
+    }
+
+    @Test
+    void closeDeletesTheReturnedFiles() throws IOException {
+        final ScratchSpace space = new ScratchSpace(directory, Long.MAX_VALUE, 4);
+        ScratchSpace.setDefault(space);
+        final Polynomial leased = fromString("1 + 1*y");
+        final File recycled;
+        try (Polynomial polynomial = fromString("1 + 2*x")) {
+            recycled = polynomial.termFile();
+        }
+        assertEquals(1, space.recycledFiles(), "Kept for reuse");
+        space.close();
+        assertEquals(0, space.recycledFiles(), "Nothing kept once closed");
+        assertFalse(recycled.exists(), "The returned file is deleted");
+        final File file = leased.termFile();
+        leased.close();
+        assertFalse(file.exists(), "A file returned after the close is deleted");
+    }
+
+    @Test
+    void sortRunsChargeThePolynomialSpace() throws IOException {
+        final ScratchSpace space = new ScratchSpace(directory, Long.MAX_VALUE, 0);
+        final ScratchSpace other = new ScratchSpace(directory.resolve("other"), 0, 0);
+        ScratchSpace.setDefault(space);
+        try (Polynomial polynomial = fromString("1 + 2*x + 3*y + 4*x*y + 5*z")) {
+            ScratchSpace.setDefault(other);
+            // The runs would not fit in the default space, which has no room
+            PolynomialUtils.simplify(polynomial, 2, false);
+            assertEquals("1.0 + 5.0*z + 3.0*y + 2.0*x + 4.0*x*y", polynomial.toString(), "Sorted with runs");
+        } finally {
+            other.close();
+            space.close();
+        }
+    }
+
+    @Test
+    void failedPowerDeletesTheResult() throws IOException {
+        final ScratchSpace space = new ScratchSpace(directory, Long.MAX_VALUE, 0);
+        ScratchSpace.setDefault(space);
+        try (Polynomial step = fromString("1 + 1*x^1000 + 1*x^2000")) {
+            assertThrows(ArithmeticException.class, () -> step.pow(1000), "The exponents overflow");
+            assertEquals(1, space.leasedFiles(), "Only the base is left");
+        }
+        assertEquals(0, space.usedBytes(), "Everything is credited");
+    }
+
+    @Test
+    void failedStepProductDeletesTheIntermediates() {
+        final ScratchSpace space = new ScratchSpace(directory, Long.MAX_VALUE, 0);
+        ScratchSpace.setDefault(space);
+        final List<StepPolynomial> factors = List.of(PolynomialBuilder.step(3, 2, "x"),
+                PolynomialBuilder.step(1, 1 << 19, "y"), PolynomialBuilder.step(1, 1 << 19, "y"));
+        assertThrows(ArithmeticException.class, () -> StepPolynomial.multiply(factors, CoefficientRing.LONG),
+                "The exponents of y overflow");
+        assertEquals(0, space.leasedFiles(), "The product of x is deleted");
+    }
+
+    @Test
+    void wholeTermFileIsCharged() throws IOException {
+        final ScratchSpace space = new ScratchSpace(directory, Long.MAX_VALUE, 0);
+        ScratchSpace.setDefault(space);
+        try (Polynomial polynomial = fromString("1 + 2*x")) {
+            final File file = polynomial.termFile();
+            assertEquals(file.length(), polynomial.lease.charged(), "The header and the variables too");
+            // New variables widen the records of the file
+            polynomial.addTerm("charged1*charged2*charged3*charged4", 3);
+            polynomial.flush();
+            assertEquals(file.length(), polynomial.lease.charged(), "The widened records too");
+            assertEquals(file.length(), space.usedBytes(), "Charged to the space");
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package home.polynomial;
+
+import static home.polynomial.PolynomialBuilder.step;
+import static home.polynomial.PolynomialUtils.simplify;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the symbolic {@link StepPolynomial}.
+ */
+class StepPolynomialTest {
+
+    @Test
+    void expandsOnlyTheSteps() throws IOException {
+        final StepPolynomial factor = step(3, 50, "x");
+        assertEquals(150, factor.degree(), "Degree n·k");
+        assertEquals("1 + 1*x^50 + 1*x^100 + 1*x^150", factor.toPolynomial(CoefficientRing.LONG).toString(),
+                "Sparse expansion");
+        final double[] dense = new double[151];
+        dense[0] = 1;
+        dense[50] = 1;
+        dense[100] = 1;
+        dense[150] = 1;
+        assertArrayEquals(dense, factor.coefficients(), "Dense expansion");
+    }
+
+    @Test
+    void closedFormMatchesSparseProduct() throws IOException {
+        final List<StepPolynomial> factors = List.of(step(3, 2, "x"), step(2, 5, "x"), step(4, 3, "y"),
+                step(1, 7, "x"));
+        Polynomial expected = factors.get(0).toPolynomial(CoefficientRing.LONG);
+        for (final StepPolynomial factor : factors.subList(1, factors.size())) {
+            expected = expected.multiply(factor.toPolynomial(CoefficientRing.LONG),
+                    MultiplyOptions.builder().accumulate(true).build());
+        }
+        final Polynomial actual = StepPolynomial.multiply(factors, CoefficientRing.LONG);
+        simplify(expected);
+        simplify(actual);
+        assertEquals(expected.toString(), actual.toString(), "Same product");
+        assertEquals("1", StepPolynomial.multiply(List.of(), CoefficientRing.LONG).toString(), "Empty product");
+    }
+
+}
@@ -0,0 +1,78 @@
+package home.polynomial;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the open-addressing {@link TermAccumulator}.
+ */
+class TermAccumulatorTest {
+
+    @Test
+    void combinesLikeTermsInInsertionOrder() throws IOException {
+        for (final boolean offHeap : new boolean[] { false, true }) {
+            final TermAccumulator accumulator = new TermAccumulator(CoefficientRing.LONG, offHeap);
+            final Map<Monomial, Long> expected = new LinkedHashMap<>();
+            for (int i = 0; i < 5_000; i++) {
+                // Past a thousand terms the monomials need a second word
+                final Monomial monomial = i < 1_000 ? Monomial.parse("x^" + (i % 700 + 1))
+                        : Monomial.parse("x^" + i % 300 + "*acc1*acc2*acc3^" + i % 7);
+                accumulator.add(monomial, i);
+                expected.merge(monomial, (long) i, Long::sum);
+            }
+            assertEquals(expected.size(), accumulator.size(), "One record per distinct monomial");
+            final TermAccumulator merged = new TermAccumulator(CoefficientRing.LONG, offHeap);
+            merged.add(Monomial.ONE, 1);
+            merged.addAll(accumulator);
+            final List<String> terms = new ArrayList<>();
+            merged.drainTo((monomial, coefficient) -> terms.add(monomial + "=" + coefficient));
+            final List<String> reference = new ArrayList<>();
+            reference.add("=1");
+            expected.forEach((monomial, coefficient) -> reference.add(monomial + "=" + coefficient));
+            assertEquals(reference, terms, "Terms in insertion order, combined");
+            assertEquals(0, merged.size(), "Drained");
+        }
+    }
+
+    @Test
+    void dropsZeroCoefficientsWhenSorted() throws IOException {
+        final TermAccumulator accumulator = new TermAccumulator(CoefficientRing.LONG, true);
+        accumulator.add(Monomial.parse("y"), 2);
+        accumulator.add(Monomial.parse("x"), 3);
+        accumulator.add(Monomial.parse("y"), -2);
+        accumulator.add(Monomial.ONE, 5);
+        final StringBuilder terms = new StringBuilder();
+        accumulator.drainSorted(MonomialOrder.GRLEX,
+                (monomial, coefficient) -> terms.append(monomial).append('=').append(coefficient).append(';'));
+        assertEquals("=5;x=3;", terms.toString(), "Sorted without the cancelled term");
+    }
+
+    @Test
+    void reusedAfterClear() throws IOException {
+        final TermAccumulator accumulator = new TermAccumulator(CoefficientRing.LONG);
+        for (int i = 0; i < 1_000; i++) {
+            accumulator.add(Monomial.parse("x^" + i), 1);
+        }
+        accumulator.clear();
+        for (int round = 0; round < 3; round++) {
+            // Few terms in a large table are unlinked one by one
+            for (int i = 0; i < 20; i++) {
+                accumulator.add(Monomial.parse("x^" + (i * 37 + round)), i);
+                accumulator.add(Monomial.parse("x^" + (i * 37 + round)), 1);
+            }
+            assertEquals(20, accumulator.size(), "Only the terms added since the clear");
+            final List<Long> coefficients = new ArrayList<>();
+            accumulator.drainTo((monomial, coefficient) -> coefficients.add(coefficient));
+            assertEquals(20, coefficients.size(), "Terms of the round");
+            assertEquals(Long.valueOf(20), coefficients.get(19), "Combined after the clear");
+        }
+    }
+
+}
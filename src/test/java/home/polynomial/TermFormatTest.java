@@ -0,0 +1,143 @@
+package home.polynomial;
+
+import static home.polynomial.PolynomialUtils.fromString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the binary {@link TermFormat}, written by {@link TermWriter}
+ * and read by {@link TermReader}.
+ */
+class TermFormatTest {
+
+    @Test
+    void textRoundTrip() throws IOException {
+        final Polynomial polynomial = fromString("1 + 2.5*x^3*y - 4*z^2");
+        final Path text = Files.createTempFile("polynomial", ".txt");
+        try {
+            PolynomialUtils.exportText(polynomial, text);
+            assertEquals(List.of("=1.0", "x^3*y=2.5", "z^2=-4.0"), Files.readAllLines(text), "One line per term");
+            final Polynomial imported = PolynomialUtils.importText(text, MonomialOrder.DEFAULT);
+            assertEquals(polynomial.toString(), imported.toString(), "The imported terms should be the same");
+        } finally {
+            Files.delete(text);
+        }
+    }
+
+    @Test
+    void recordsWidenForNewVariables() throws IOException {
+        final File file = File.createTempFile("polynomial", ".tmp");
+        try {
+            try (TermWriter writer = TermWriter.create(file, CoefficientRing.LONG)) {
+                writer.accept(Monomial.parse("x^2"), 1);
+            }
+            // Interned after the file was created, so they need wider records
+            final String key = "widen1*widen2^2*widen3^3*widen4^4";
+            try (TermWriter writer = TermWriter.append(file, CoefficientRing.LONG)) {
+                writer.accept(Monomial.parse(key), 2);
+                writer.accept(Monomial.ONE, 3);
+            }
+            try (TermReader reader = new TermReader(file)) {
+                final StringBuilder terms = new StringBuilder();
+                while (reader.next()) {
+                    terms.append(reader.monomial()).append('=').append(reader.ring().format(reader.coefficient())).append(';');
+                }
+                assertEquals("x^2=1;" + key + "=2;=3;", terms.toString(), "Every term should survive widening");
+            }
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    @Test
+    void widenFailsOnTruncatedRecords() throws IOException {
+        final File file = File.createTempFile("polynomial", ".tmp");
+        try {
+            try (TermWriter writer = TermWriter.create(file, CoefficientRing.LONG)) {
+                writer.accept(Monomial.parse("x^2"), 1);
+                writer.accept(Monomial.parse("y^2"), 2);
+            }
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(TermFormat.HEADER_BYTES + Long.BYTES);
+            }
+            try (TermWriter writer = TermWriter.append(file, CoefficientRing.LONG)) {
+                assertThrows(EOFException.class, () -> writer.accept(Monomial.parse("eof1*eof2*eof3*eof4"), 3),
+                        "The records to widen are missing");
+            }
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    @Test
+    void compressedFilesAreSmallerAndSeekable() throws IOException {
+        final File plain = File.createTempFile("polynomial", ".tmp");
+        final File compressed = File.createTempFile("polynomial", ".tmp");
+        final int count = 50_000;
+        try {
+            try (TermWriter writer1 = TermWriter.create(plain, CoefficientRing.LONG);
+                    TermWriter writer2 = TermWriter.create(compressed, CoefficientRing.LONG, true)) {
+                for (int i = 0; i < count; i++) {
+                    final Monomial monomial = Monomial.parse("x^" + (i / 7 + 1) + "*y^" + (i % 7 + 1));
+                    writer1.accept(monomial, i % 3 + 1);
+                    writer2.accept(monomial, i % 3 + 1);
+                }
+            }
+            assertTrue(TermFormat.isCompressed(compressed), "Compressed layout");
+            assertTrue(compressed.length() * 5 < plain.length(),
+                    "At least five times smaller: " + compressed.length() + " of " + plain.length());
+            try (TermWriter writer = TermWriter.append(compressed, CoefficientRing.LONG)) {
+                writer.accept(Monomial.ONE, 7);
+            }
+            try (TermReader reader1 = new TermReader(plain); TermReader reader2 = new TermReader(compressed)) {
+                while (reader1.next()) {
+                    assertTrue(reader2.next(), "Same number of terms");
+                    assertEquals(reader1.monomial(), reader2.monomial(), "Same monomial");
+                    assertEquals(reader1.coefficient(), reader2.coefficient(), "Same coefficient");
+                }
+                assertTrue(reader2.next(), "The appended term");
+                assertEquals(Monomial.ONE, reader2.monomial(), "Appended after the blocks");
+                assertEquals(count + 1, reader2.terms(), "Every term is counted");
+                for (final long term : new long[] { 40_000, 3, BlockCodec.BLOCK_TERMS }) {
+                    reader1.seek(term);
+                    reader2.seek(term);
+                    assertTrue(reader1.next() && reader2.next(), "Term " + term);
+                    assertEquals(reader1.monomial(), reader2.monomial(), "Same term after seeking");
+                }
+                reader2.seek(count + 1);
+                assertFalse(reader2.next(), "Past the last term");
+            }
+        } finally {
+            Files.delete(plain.toPath());
+            Files.delete(compressed.toPath());
+        }
+    }
+
+    @Test
+    void compressedProductMatchesPlain() throws IOException {
+        final Polynomial first = fromString("1 + 2*x + 1*y^2 + 3*x^2*y");
+        final Polynomial other = fromString("3 - 1*x*y + 1*z^4");
+        final MultiplyOptions options = MultiplyOptions.builder().accumulate(true).accumulatorTerms(2)
+                .compressed(true).build();
+        final Polynomial product = first.multiply(other, options);
+        assertTrue(TermFormat.isCompressed(product.termFile()), "Compressed result");
+        final Polynomial expected = first.multiply(other, options.toBuilder().compressed(false).build());
+        PolynomialUtils.simplify(product);
+        PolynomialUtils.simplify(expected);
+        assertEquals(expected.toString(), product.toString(), "Same terms");
+    }
+
+}
@@ -0,0 +1,56 @@
+package home.polynomial;
+
+import static home.polynomial.PolynomialUtils.fromString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for the {@link TermSorter} class.
+ */
+class TermSorterTest {
+    @TempDir
+    private Path directory;
+
+    @Test
+    void mergeRunsCombinesLikeTerms() throws IOException {
+        final String terms = "2*x*y + 1*z + 1*y*x + 1 + 4*z - 3*x*y + 2*x^2 + 1*x^2";
+        final Polynomial inMemory = fromString(terms, MonomialOrder.GRLEX);
+        final Polynomial external = fromString(terms, MonomialOrder.GRLEX);
+        PolynomialUtils.simplify(inMemory);
+        // Two terms per run: four runs to merge
+        PolynomialUtils.simplify(external, 2);
+        assertEquals("1.0 + 5.0*z + 3.0*x^2", inMemory.toString(), "Like terms should be combined and sorted");
+        assertEquals(inMemory.toString(), external.toString(), "The k-way merge should match the in-memory result");
+    }
+
+    @Test
+    void mergeInSeveralPasses() throws IOException {
+        final StringBuilder terms = new StringBuilder("1");
+        for (int i = 1; i < 200; i++) {
+            terms.append(" + ").append(i % 7 + 1).append("*x^").append(i % 50).append("*y^").append(i % 3);
+        }
+        final Polynomial polynomial = fromString(terms.toString());
+        final StringBuilder inMemory = new StringBuilder();
+        new TermSorter(polynomial.getOrder(), TermSorter.DEFAULT_RUN_TERMS, polynomial.lease.quota())
+                .sort(polynomial.termFile(), (monomial, coefficient) -> inMemory.append(monomial).append('=')
+                        .append(coefficient).append(';'));
+        final StringBuilder external = new StringBuilder();
+        try (ScratchSpace space = new ScratchSpace(directory, Long.MAX_VALUE, 0)) {
+            // One term per run and three runs at once: several passes
+            new TermSorter(polynomial.getOrder(), 1, false, space.quota(), 3)
+                    .sort(polynomial.termFile(), (monomial, coefficient) -> {
+                        assertTrue(space.leasedFiles() <= 3, "At most the fan-in of runs is open");
+                        external.append(monomial).append('=').append(coefficient).append(';');
+                    });
+            assertEquals(0, space.leasedFiles(), "Every run should be released");
+        }
+        assertEquals(inMemory.toString(), external.toString(), "The passes should match the in-memory result");
+    }
+
+}